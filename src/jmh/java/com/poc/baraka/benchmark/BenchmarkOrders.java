@@ -0,0 +1,57 @@
+package com.poc.baraka.benchmark;
+
+import com.poc.baraka.common.IdGenerator;
+import com.poc.baraka.config.MatchingEngineProperties;
+import com.poc.baraka.dto.OrderDto;
+import com.poc.baraka.engine.BookType;
+import com.poc.baraka.enums.OrderDirectionEnum;
+import com.poc.baraka.helper.MatchingEngineHelper;
+
+import java.math.BigDecimal;
+
+/**
+ * Order and engine factories shared by the benchmarks.
+ *
+ * @author Waqas Ahmed
+ */
+final class BenchmarkOrders {
+
+    static final String TIMESTAMP = "2025-10-17T00:49:02.137585600Z";
+
+    private BenchmarkOrders() {
+    }
+
+    /**
+     * An engine with the given number of shards and prices/amounts on whole cents.
+     */
+    static MatchingEngineHelper engine(int shards, IdGenerator idGenerator, String... assets) {
+        return engine(shards, BookType.SKIP_LIST, idGenerator, assets);
+    }
+
+    static MatchingEngineHelper engine(int shards, BookType bookType, IdGenerator idGenerator, String... assets) {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.setShards(shards);
+        for (String asset : assets) {
+            MatchingEngineProperties.AssetProperties assetProperties = new MatchingEngineProperties.AssetProperties();
+            assetProperties.setPriceScale(2);
+            assetProperties.setQuantityScale(2);
+            assetProperties.setBookType(bookType);
+            properties.getAssets().put(asset, assetProperties);
+        }
+        return new MatchingEngineHelper(properties, idGenerator);
+    }
+
+    /**
+     * @param priceCents price in cents, as the books are set up with two decimals
+     */
+    static OrderDto order(long id, String asset, OrderDirectionEnum direction, long priceCents, long amount) {
+        return OrderDto.builder()
+                .id(id)
+                .timestamp(TIMESTAMP)
+                .asset(asset)
+                .direction(direction.name())
+                .price(BigDecimal.valueOf(priceCents, 2))
+                .amount(BigDecimal.valueOf(amount))
+                .build();
+    }
+}
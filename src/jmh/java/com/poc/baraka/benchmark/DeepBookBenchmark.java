@@ -0,0 +1,73 @@
+package com.poc.baraka.benchmark;
+
+import com.poc.baraka.common.IdGenerator;
+import com.poc.baraka.engine.BookType;
+import com.poc.baraka.enums.OrderDirectionEnum;
+import com.poc.baraka.helper.MatchingEngineHelper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.poc.baraka.benchmark.BenchmarkOrders.engine;
+import static com.poc.baraka.benchmark.BenchmarkOrders.order;
+
+/**
+ * Passive orders placed anywhere in a deep book and canceled again, so the book stays the same size.
+ * Measures level lookup and insertion, and cancel, against many levels and long queues.
+ *
+ * @author Waqas Ahmed
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeepBookBenchmark {
+
+    private static final String ASSET = "BTC";
+    private static final long MID = 1_000_000;
+
+    @Param({"SKIP_LIST", "ARRAY"})
+    BookType bookType;
+
+    @Param({"100", "5000"})
+    int levels;
+
+    @Param({"10"})
+    int ordersPerLevel;
+
+    private MatchingEngineHelper engine;
+    private IdGenerator idGenerator;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        idGenerator = new IdGenerator();
+        engine = engine(1, bookType, idGenerator, ASSET);
+        random = new SplittableRandom(42);
+        for (int level = 1; level <= levels; level++) {
+            for (int i = 0; i < ordersPerLevel; i++) {
+                engine.matchOrder(order(idGenerator.nextId(), ASSET, OrderDirectionEnum.BUY, MID - level, 1));
+                engine.matchOrder(order(idGenerator.nextId(), ASSET, OrderDirectionEnum.SELL, MID + level, 1));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public void placeAndCancelPassive(Blackhole blackhole) {
+        boolean buy = random.nextBoolean();
+        long offset = 1 + random.nextInt(levels);
+        long id = idGenerator.nextId();
+        blackhole.consume(engine.matchOrder(order(id, ASSET, buy ? OrderDirectionEnum.BUY : OrderDirectionEnum.SELL,
+                buy ? MID - offset : MID + offset, 1)));
+        blackhole.consume(engine.cancelOrder(id));
+    }
+}
@@ -0,0 +1,84 @@
+package com.poc.baraka.benchmark;
+
+import com.poc.baraka.common.IdGenerator;
+import com.poc.baraka.enums.OrderDirectionEnum;
+import com.poc.baraka.helper.MatchingEngineHelper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.poc.baraka.benchmark.BenchmarkOrders.engine;
+import static com.poc.baraka.benchmark.BenchmarkOrders.order;
+
+/**
+ * Cancel-heavy market maker flow: a rolling window of quotes around the mid where every new quote
+ * cancels the oldest one, with an occasional taker crossing the spread.
+ *
+ * @author Waqas Ahmed
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MarketMakerBenchmark {
+
+    private static final String ASSET = "ETH";
+    private static final long MID = 300_000;
+    private static final int SPREAD = 20;
+
+    @Param({"1000"})
+    int quotes;
+
+    /**
+     * One taker per this many quote updates.
+     */
+    @Param({"20"})
+    int quotesPerTrade;
+
+    private MatchingEngineHelper engine;
+    private IdGenerator idGenerator;
+    private SplittableRandom random;
+    private long[] window;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        idGenerator = new IdGenerator();
+        engine = engine(1, idGenerator, ASSET);
+        random = new SplittableRandom(42);
+        window = new long[quotes];
+        for (int i = 0; i < quotes; i++) {
+            window[i] = quote();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    private long quote() {
+        boolean buy = random.nextBoolean();
+        long offset = 1 + random.nextInt(SPREAD * 10);
+        long id = idGenerator.nextId();
+        engine.matchOrder(order(id, ASSET, buy ? OrderDirectionEnum.BUY : OrderDirectionEnum.SELL,
+                buy ? MID - offset : MID + offset, 1 + random.nextInt(10)));
+        return id;
+    }
+
+    @Benchmark
+    public void requote(Blackhole blackhole) {
+        blackhole.consume(engine.cancelOrder(window[next]));
+        window[next] = quote();
+        next = (next + 1) % quotes;
+        if (random.nextInt(quotesPerTrade) == 0) {
+            boolean buy = random.nextBoolean();
+            blackhole.consume(engine.matchOrder(order(idGenerator.nextId(), ASSET,
+                    buy ? OrderDirectionEnum.BUY : OrderDirectionEnum.SELL, buy ? MID + SPREAD : MID - SPREAD, 5)));
+        }
+    }
+}
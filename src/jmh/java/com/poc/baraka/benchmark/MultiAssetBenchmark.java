@@ -0,0 +1,58 @@
+package com.poc.baraka.benchmark;
+
+import com.poc.baraka.common.IdGenerator;
+import com.poc.baraka.dto.OrderResponse;
+import com.poc.baraka.enums.OrderDirectionEnum;
+import com.poc.baraka.helper.MatchingEngineHelper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.poc.baraka.benchmark.BenchmarkOrders.engine;
+import static com.poc.baraka.benchmark.BenchmarkOrders.order;
+
+/**
+ * Several client threads trading a mix of assets spread over the shards, with prices drawn around
+ * the mid so that about half the orders trade and the rest rest in the book.
+ *
+ * @author Waqas Ahmed
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class MultiAssetBenchmark {
+
+    private static final String[] ASSETS = {"BTC", "ETH", "SOL", "XRP", "ADA", "DOT", "LTC", "BNB"};
+    private static final long MID = 100_000;
+
+    @Param({"1", "4"})
+    int shards;
+
+    private MatchingEngineHelper engine;
+    private IdGenerator idGenerator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        idGenerator = new IdGenerator();
+        engine = engine(shards, idGenerator, ASSETS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public OrderResponse place() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        boolean buy = random.nextBoolean();
+        long price = MID + random.nextInt(-50, 51);
+        return engine.matchOrder(order(idGenerator.nextId(), ASSETS[random.nextInt(ASSETS.length)],
+                buy ? OrderDirectionEnum.BUY : OrderDirectionEnum.SELL, price, 1 + random.nextInt(5)));
+    }
+}
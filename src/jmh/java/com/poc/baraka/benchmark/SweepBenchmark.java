@@ -0,0 +1,73 @@
+package com.poc.baraka.benchmark;
+
+import com.poc.baraka.common.IdGenerator;
+import com.poc.baraka.dto.OrderResponse;
+import com.poc.baraka.engine.BookType;
+import com.poc.baraka.enums.OrderDirectionEnum;
+import com.poc.baraka.helper.MatchingEngineHelper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.poc.baraka.benchmark.BenchmarkOrders.engine;
+import static com.poc.baraka.benchmark.BenchmarkOrders.order;
+
+/**
+ * One aggressive order sweeping many price levels in a single match. The swept levels are put back
+ * before every invocation, outside the measurement.
+ *
+ * @author Waqas Ahmed
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SweepBenchmark {
+
+    private static final String ASSET = "BTC";
+    private static final long MID = 1_000_000;
+
+    @Param({"SKIP_LIST", "ARRAY"})
+    BookType bookType;
+
+    @Param({"10", "100"})
+    int sweptLevels;
+
+    @Param({"5"})
+    int ordersPerLevel;
+
+    private MatchingEngineHelper engine;
+    private IdGenerator idGenerator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        idGenerator = new IdGenerator();
+        engine = engine(1, bookType, idGenerator, ASSET);
+        // Depth behind the swept levels, never reached by the sweep
+        for (int level = sweptLevels + 1; level <= sweptLevels + 1_000; level++) {
+            engine.matchOrder(order(idGenerator.nextId(), ASSET, OrderDirectionEnum.SELL, MID + level, 1));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void replenish() {
+        for (int level = 1; level <= sweptLevels; level++) {
+            for (int i = 0; i < ordersPerLevel; i++) {
+                engine.matchOrder(order(idGenerator.nextId(), ASSET, OrderDirectionEnum.SELL, MID + level, 1));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public OrderResponse sweep() {
+        return engine.matchOrder(order(idGenerator.nextId(), ASSET, OrderDirectionEnum.BUY, MID + sweptLevels,
+                (long) sweptLevels * ordersPerLevel));
+    }
+}
@@ -19,5 +19,19 @@ public class IdGenerator {
     public long nextId() {
         return counter.getAndIncrement();
     }
+
+    /**
+     * Id the next call to {@link #nextId()} will return.
+     */
+    public long peek() {
+        return counter.get();
+    }
+
+    /**
+     * Makes sure ids already handed out before a restart are never generated again.
+     */
+    public void advanceTo(long nextId) {
+        counter.accumulateAndGet(nextId, Math::max);
+    }
 }
 
@@ -0,0 +1,303 @@
+package com.poc.baraka.config;
+
+import com.poc.baraka.engine.BookType;
+import com.poc.baraka.engine.MatchingAlgorithm;
+import com.poc.baraka.replication.ReplicationPolicy;
+import com.poc.baraka.replication.ReplicationRole;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings of the matching engine, bound from the {@code matching.*} properties.
+ *
+ * @author Waqas Ahmed
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "matching")
+public class MatchingEngineProperties {
+
+    /**
+     * Number of single-writer matching shards. 0 means half of the available cores.
+     */
+    private int shards = 0;
+
+    /**
+     * Slots in each shard's command ring buffer, must be a power of two.
+     */
+    private int ringSize = 4096;
+
+    /**
+     * Most commands a matcher thread drains from its ring in one batch.
+     */
+    private int batchSize = 256;
+
+    /**
+     * Price levels per side in the book views the matcher publishes after each batch, the most that
+     * {@code GET /books/{asset}} returns.
+     */
+    private int viewDepth = 100;
+
+    /**
+     * Per asset overrides, keyed by asset symbol.
+     */
+    private Map<String, AssetProperties> assets = new HashMap<>();
+
+    private Journal journal = new Journal();
+
+    private Snapshot snapshot = new Snapshot();
+
+    private Store store = new Store();
+
+    private MarketData marketData = new MarketData();
+
+    private Gateway gateway = new Gateway();
+
+    private Executions executions = new Executions();
+
+    private Replication replication = new Replication();
+
+    public int resolveShardCount() {
+        return shards > 0 ? shards : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
+    public AssetProperties asset(String asset) {
+        AssetProperties properties = assets.get(asset);
+        return properties != null ? properties : AssetProperties.DEFAULTS;
+    }
+
+    @Getter
+    @Setter
+    public static class Journal {
+
+        /**
+         * Journal accepted commands and replay them at startup.
+         */
+        private boolean enabled = false;
+
+        private String directory = "data/journal";
+
+        /**
+         * Longest a journaled command waits in memory before the group commit writes it.
+         */
+        private long flushIntervalMs = 2;
+
+        /**
+         * Force every group commit to disk, not just to the OS page cache.
+         */
+        private boolean fsync = true;
+
+        /**
+         * Size of each of the two in-memory journal buffers.
+         */
+        private int bufferSize = 1 << 20;
+    }
+
+    @Getter
+    @Setter
+    public static class Snapshot {
+
+        /**
+         * Seconds between periodic snapshots, 0 takes them on demand only. Needs the journal.
+         */
+        private long intervalSeconds = 0;
+
+        private String directory = "data/snapshots";
+
+        /**
+         * Number of snapshot files kept.
+         */
+        private int retain = 2;
+    }
+
+    @Getter
+    @Setter
+    public static class Store {
+
+        /**
+         * Most filled or canceled orders kept in memory before the oldest spill to the archive.
+         */
+        private int maxFinishedOrders = 100_000;
+
+        /**
+         * Seconds a filled or canceled order stays in memory, 0 bounds the cache by size only.
+         */
+        private long finishedTtlSeconds = 600;
+
+        /**
+         * Directory of the on-disk order archive. Empty uses a temporary directory removed at shutdown.
+         */
+        private String archiveDirectory = "";
+    }
+
+    @Getter
+    @Setter
+    public static class MarketData {
+
+        /**
+         * Milliseconds between full depth snapshots on every feed, 0 sends one on subscribing only.
+         */
+        private long snapshotIntervalMs = 5_000;
+
+        /**
+         * Most unsent trade prints kept per subscriber, the oldest are dropped beyond that.
+         */
+        private int maxQueuedTrades = 10_000;
+
+        /**
+         * Latest trades kept per asset for the trade history.
+         */
+        private int recentTrades = 1_000;
+
+        /**
+         * Intervals OHLCV candles are built at, per asset.
+         */
+        private List<Duration> candleIntervals = List.of(Duration.ofMinutes(1), Duration.ofMinutes(5),
+                Duration.ofHours(1));
+
+        /**
+         * Latest candles kept per asset and interval.
+         */
+        private int candles = 500;
+    }
+
+    @Getter
+    @Setter
+    public static class Gateway {
+
+        /**
+         * Accept binary order entry sessions over TCP next to the REST API.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Port the gateway listens on, 0 picks a free one.
+         */
+        private int port = 9091;
+
+        /**
+         * Most unsent bytes kept for a session, a client reading slower than that is disconnected.
+         */
+        private int maxQueuedBytes = 4 << 20;
+
+        /**
+         * Most symbols outside {@code matching.assets} the gateway takes orders for, orders for any further one are rejected.
+         */
+        private int maxSymbols = 256;
+    }
+
+    @Getter
+    @Setter
+    public static class Executions {
+
+        /**
+         * Latest execution reports kept per client of the asynchronous order API, the oldest are dropped beyond that.
+         */
+        private int maxReports = 10_000;
+
+        /**
+         * Longest a poll for execution reports waits, in milliseconds. Keep it under the async request timeout.
+         */
+        private long maxPollMs = 20_000;
+
+        /**
+         * Seconds a client without open orders or polls is kept, its unread reports are dropped after.
+         */
+        private long idleClientSeconds = 600;
+    }
+
+    @Getter
+    @Setter
+    public static class Replication {
+
+        /**
+         * NONE runs alone. A PRIMARY streams its journal to a standby, a REPLICA is that standby and
+         * only serves reads until it is promoted.
+         */
+        private ReplicationRole role = ReplicationRole.NONE;
+
+        /**
+         * Host of the primary, for a replica.
+         */
+        private String host = "localhost";
+
+        /**
+         * Port the primary listens on for its replica, 0 picks a free one.
+         */
+        private int port = 9092;
+
+        /**
+         * ASYNC acknowledges a command without waiting for the replica, SYNC only once the replica has it.
+         */
+        private ReplicationPolicy policy = ReplicationPolicy.ASYNC;
+
+        /**
+         * Longest a SYNC acknowledgement waits for the replica before the primary drops it and goes on alone.
+         */
+        private long syncTimeoutMs = 1_000;
+
+        /**
+         * Most unsent bytes kept for the replica, a replica falling further behind is dropped.
+         */
+        private int maxQueuedBytes = 64 << 20;
+
+        /**
+         * Promote a replica as soon as it loses its primary, instead of waiting for the admin call.
+         */
+        private boolean autoPromote = false;
+    }
+
+    @Getter
+    @Setter
+    public static class AssetProperties {
+
+        static final AssetProperties DEFAULTS = new AssetProperties();
+
+        /**
+         * Shard the asset is pinned to. Negative means hash of the symbol.
+         */
+        private int shard = -1;
+
+        /**
+         * Decimal places of a price tick, prices are matched as whole ticks.
+         */
+        private int priceScale = 8;
+
+        /**
+         * Decimal places of a lot, amounts are matched as whole lots.
+         */
+        private int quantityScale = 8;
+
+        /**
+         * How the price levels are held. ARRAY indexes them directly by tick, for assets whose prices
+         * stay within {@link #priceBand} ticks of each other.
+         */
+        private BookType bookType = BookType.SKIP_LIST;
+
+        /**
+         * Widest span of ticks one side of an ARRAY book holds, rounded up to a power of two.
+         * Orders that would rest outside it are rejected.
+         */
+        private int priceBand = 65_536;
+
+        /**
+         * How an incoming order is shared among the orders resting at a price: FIFO fills the oldest
+         * first, PRO_RATA in proportion to their size.
+         */
+        private MatchingAlgorithm matchingAlgorithm = MatchingAlgorithm.FIFO;
+
+        /**
+         * Smallest amount a PRO_RATA share gives an order, smaller shares go to the queue in time priority.
+         */
+        private BigDecimal minAllocation = BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,55 @@
+package com.poc.baraka.controller;
+
+import com.poc.baraka.dto.ReplicationStatusDto;
+import com.poc.baraka.dto.SnapshotResponse;
+import com.poc.baraka.service.OrderBookService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * @author Waqas Ahmed
+ */
+@RestController
+@RequestMapping("/api/v1/admin")
+@Tag(name = "Admin", description = "Operational endpoints of the matching engine")
+public class EngineAdminController {
+
+    private static final Logger log = LoggerFactory.getLogger(EngineAdminController.class);
+
+    private final OrderBookService orderBookService;
+
+    public EngineAdminController(OrderBookService orderBookService) {
+        this.orderBookService = orderBookService;
+    }
+
+    @Operation(summary = "Take an order book snapshot",
+            description = "Writes a snapshot of every book now, bounding the journal replayed at the next startup")
+    @PostMapping("/snapshots")
+    public ResponseEntity<SnapshotResponse> takeSnapshot() {
+        log.info("POST /admin/snapshots request received");
+        return new ResponseEntity<>(orderBookService.takeSnapshot(), HttpStatus.CREATED);
+    }
+
+    @Operation(summary = "Replication status",
+            description = "Role of this engine, whether its replica is in step and the sequences on both ends")
+    @GetMapping("/replication")
+    public ResponseEntity<ReplicationStatusDto> getReplicationStatus() {
+        return new ResponseEntity<>(orderBookService.getReplicationStatus(), HttpStatus.OK);
+    }
+
+    @Operation(summary = "Promote the standby replica",
+            description = "Stops following the primary and takes orders from the last replicated sequence on")
+    @PostMapping("/replication/promote")
+    public ResponseEntity<ReplicationStatusDto> promoteReplica() {
+        log.info("POST /admin/replication/promote request received");
+        return new ResponseEntity<>(orderBookService.promoteReplica(), HttpStatus.OK);
+    }
+}
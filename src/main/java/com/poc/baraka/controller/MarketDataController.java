@@ -0,0 +1,106 @@
+package com.poc.baraka.controller;
+
+import com.poc.baraka.dto.BookDepthDto;
+import com.poc.baraka.dto.CandleDto;
+import com.poc.baraka.dto.ExecutedTradeDto;
+import com.poc.baraka.dto.TopOfBookDto;
+import com.poc.baraka.marketdata.MarketDataPublisher;
+import com.poc.baraka.marketdata.MarketDataSink;
+import com.poc.baraka.marketdata.MarketDataSubscription;
+import com.poc.baraka.service.OrderBookService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * @author Waqas Ahmed
+ */
+@RestController
+@RequestMapping("/api/v1")
+@Tag(name = "Market data", description = "Book depth, trade history, candles, streaming L2 updates and trade prints")
+public class MarketDataController {
+
+    private static final Logger log = LoggerFactory.getLogger(MarketDataController.class);
+
+    private final MarketDataPublisher marketDataPublisher;
+    private final OrderBookService orderBookService;
+
+    public MarketDataController(MarketDataPublisher marketDataPublisher, OrderBookService orderBookService) {
+        this.marketDataPublisher = marketDataPublisher;
+        this.orderBookService = orderBookService;
+    }
+
+    @Operation(summary = "Read an asset's depth",
+            description = "Aggregated levels per side, best price first, from the view the matcher publishes after "
+                    + "each batch. Reads never wait on matching.")
+    @GetMapping("/books/{asset}")
+    public ResponseEntity<BookDepthDto> getBook(@PathVariable String asset,
+                                                @RequestParam(defaultValue = "20") int depth) {
+        return ResponseEntity.ok(orderBookService.getBook(asset, depth));
+    }
+
+    @Operation(summary = "Read an asset's best bid and ask",
+            description = "Top of the view the matcher publishes after each batch. Reads never wait on matching.")
+    @GetMapping("/books/{asset}/top")
+    public ResponseEntity<TopOfBookDto> getTopOfBook(@PathVariable String asset) {
+        return ResponseEntity.ok(orderBookService.getTopOfBook(asset));
+    }
+
+    @Operation(summary = "Read an asset's latest trades",
+            description = "Newest first, from a ring of the latest trades kept as they are matched.")
+    @GetMapping("/trades/{asset}")
+    public ResponseEntity<List<ExecutedTradeDto>> getTrades(@PathVariable String asset,
+                                                            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(orderBookService.getTrades(asset, limit));
+    }
+
+    @Operation(summary = "Read an asset's OHLCV candles",
+            description = "Oldest first, the last one still open. Candles are built from the fills as they are "
+                    + "matched, at the intervals in matching.market-data.candle-intervals (1m, 5m and 1h by default).")
+    @GetMapping("/candles/{asset}")
+    public ResponseEntity<List<CandleDto>> getCandles(@PathVariable String asset,
+                                                      @RequestParam(defaultValue = "1m") String interval,
+                                                      @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(orderBookService.getCandles(asset, interval, limit));
+    }
+
+    @Operation(summary = "Stream an asset's market data",
+            description = "Server-sent events: a full depth 'snapshot' first and periodically after, then 'level' "
+                    + "updates and 'trade' prints. Every event carries the asset's sequence number as its id.")
+    @GetMapping(path = "/market-data/{asset}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMarketData(@PathVariable String asset) {
+        log.debug("GET /market-data/{} subscription", asset);
+        // No timeout, the stream lasts until the client goes away
+        SseEmitter emitter = new SseEmitter(0L);
+        MarketDataSubscription subscription = marketDataPublisher.subscribe(asset, new MarketDataSink() {
+            @Override
+            public void send(String event, long sequence, Object data) throws IOException {
+                emitter.send(SseEmitter.event()
+                        .name(event)
+                        .id(Long.toString(sequence))
+                        .data(data, MediaType.APPLICATION_JSON));
+            }
+
+            @Override
+            public void close() {
+                emitter.complete();
+            }
+        });
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(error -> subscription.close());
+        return emitter;
+    }
+}
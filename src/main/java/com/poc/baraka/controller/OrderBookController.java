@@ -1,7 +1,14 @@
 package com.poc.baraka.controller;
 
+import com.poc.baraka.dto.AmendOrderRequest;
+import com.poc.baraka.dto.BatchCancelRequest;
+import com.poc.baraka.dto.BatchOrderRequest;
+import com.poc.baraka.dto.BatchResponse;
+import com.poc.baraka.dto.ExecutionReportDto;
+import com.poc.baraka.dto.OrderAckDto;
 import com.poc.baraka.dto.OrderRequest;
 import com.poc.baraka.dto.OrderResponse;
+import com.poc.baraka.metrics.RequestStages;
 import com.poc.baraka.service.OrderBookService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -15,6 +22,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import static com.poc.baraka.utils.JsonUtils.toJSON;
 
 @RestController
@@ -42,21 +52,108 @@ public class OrderBookController {
             })
     @PostMapping("/orders")
     public ResponseEntity<OrderResponse> placeOrder(@Valid @RequestBody OrderRequest orderRequest) {
-        log.info("POST /orders request received: {}", toJSON(orderRequest));
+        RequestStages.markHandled();
+        if (log.isDebugEnabled()) {
+            log.debug("POST /orders request received: {}", toJSON(orderRequest));
+        }
         OrderResponse orderResponse = orderBookService.placeOrder(orderRequest);
         return new ResponseEntity<>(orderResponse, HttpStatus.CREATED);
     }
 
+    /**
+     * Place a limit order without waiting for it to be matched.
+     */
+    @Operation(summary = "Place a new order asynchronously",
+            description = "Checks the order and hands it to the matcher without waiting for it. The response carries "
+                    + "the order id and the client's latest report sequence; the order's outcome and fills follow as "
+                    + "execution reports after that sequence, see GET /executions",
+            responses = {
+                    @ApiResponse(responseCode = "202", description = "Order accepted for matching",
+                            content = @Content(schema = @Schema(implementation = OrderAckDto.class))),
+                    @ApiResponse(responseCode = "400", description = "Invalid request")
+            })
+    @PostMapping("/orders/async")
+    public ResponseEntity<OrderAckDto> placeOrderAsync(@RequestHeader("X-Client-Id") String clientId,
+                                                       @Valid @RequestBody OrderRequest orderRequest) {
+        RequestStages.markHandled();
+        if (log.isDebugEnabled()) {
+            log.debug("POST /orders/async request received from {}: {}", clientId, toJSON(orderRequest));
+        }
+        return new ResponseEntity<>(orderBookService.placeOrderAsync(clientId, orderRequest), HttpStatus.ACCEPTED);
+    }
+
+    /**
+     * Long-poll the execution reports of a client.
+     */
+    @Operation(summary = "Poll a client's execution reports",
+            description = "Returns the client's reports after the given sequence, oldest first. If there are none yet "
+                    + "the call waits up to timeoutMs for the next ones and returns an empty list if nothing came. "
+                    + "A jump in the sequence means older reports were dropped before they were read.")
+    @GetMapping("/executions")
+    public CompletableFuture<ResponseEntity<List<ExecutionReportDto>>> getExecutionReports(
+            @RequestHeader("X-Client-Id") String clientId,
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(defaultValue = "20000") long timeoutMs) {
+        return orderBookService.getExecutionReports(clientId, after, limit, timeoutMs).thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Place several limit orders, validated together and matched as one unit per shard.
+     */
+    @Operation(summary = "Place a batch of limit orders",
+            description = "Validates the whole batch, then matches the orders of each shard back to back with "
+                    + "nothing interleaved, returning one result per order in request order")
+    @PostMapping("/orders/batch")
+    public ResponseEntity<BatchResponse> placeOrders(@Valid @RequestBody BatchOrderRequest batchOrderRequest) {
+        log.debug("POST /orders/batch request received with {} orders", batchOrderRequest.getOrders().size());
+        return ResponseEntity.ok(orderBookService.placeOrders(batchOrderRequest));
+    }
+
+    @Operation(summary = "Cancel a batch of orders",
+            description = "Cancels the orders of each shard back to back, returning one result per id in request order")
+    @PostMapping("/orders/batch-cancel")
+    public ResponseEntity<BatchResponse> cancelOrders(@Valid @RequestBody BatchCancelRequest batchCancelRequest) {
+        log.debug("POST /orders/batch-cancel request received with {} ids", batchCancelRequest.getOrderIds().size());
+        return ResponseEntity.ok(orderBookService.cancelOrders(batchCancelRequest));
+    }
+
+    @Operation(summary = "Cancel every resting order of an asset",
+            description = "Empties the asset's book in one command and returns the canceled orders")
+    @DeleteMapping(path = "/orders", params = "asset")
+    public ResponseEntity<BatchResponse> cancelAllOrders(@RequestParam String asset) {
+        log.debug("DELETE /orders?asset={} request received", asset);
+        return ResponseEntity.ok(orderBookService.cancelAllOrders(asset));
+    }
+
     @DeleteMapping("/orders/{orderId}")
     public ResponseEntity<OrderResponse> cancelOrder(@PathVariable long orderId) {
-        log.info("POST /cancel request received: {}", orderId);
+        log.debug("DELETE /orders/{} request received", orderId);
         OrderResponse orderResponse = orderBookService.cancelOrder(orderId);
         return new ResponseEntity<>(orderResponse, HttpStatus.OK);
     }
 
+    @Operation(summary = "Amend a resting order",
+            description = "Changes the price or amount of a resting order in one engine command, keeping its id. "
+                    + "A smaller amount at the same price keeps its queue priority, a new price or a larger amount "
+                    + "re-queues it and may trade it",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Order amended",
+                            content = @Content(schema = @Schema(implementation = OrderResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Invalid request"),
+                    @ApiResponse(responseCode = "404", description = "Unknown order"),
+                    @ApiResponse(responseCode = "409", description = "Order already filled or canceled")
+            })
+    @PatchMapping("/orders/{orderId}")
+    public ResponseEntity<OrderResponse> amendOrder(@PathVariable long orderId,
+                                                    @Valid @RequestBody AmendOrderRequest amendOrderRequest) {
+        log.debug("PATCH /orders/{} request received", orderId);
+        return ResponseEntity.ok(orderBookService.amendOrder(orderId, amendOrderRequest));
+    }
+
     @GetMapping("/orders/{orderId}")
     public ResponseEntity<OrderResponse> getOrder(@PathVariable long orderId) {
-        log.info("Get /orders/1 request received: {}", orderId);
+        log.debug("GET /orders/{} request received", orderId);
         OrderResponse orderResponse = orderBookService.getOrderById(orderId);
         if (orderResponse == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(OrderResponse.builder().order(null).build());
@@ -0,0 +1,30 @@
+package com.poc.baraka.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.DecimalMin;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+/**
+ * @author Waqas Ahmed
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Request to change the price or amount of a resting order")
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class AmendOrderRequest {
+
+    @Schema(description = "New price, left out to keep it. A new price sends the order to the back of the queue",
+            example = "43250.00")
+    @DecimalMin(value = "0.0", inclusive = false, message = "Price must be greater than 0")
+    BigDecimal price;
+
+    @Schema(description = "New total amount, what already traded included, left out to keep it. "
+            + "A smaller amount keeps the order's place in the queue", example = "0.5")
+    @DecimalMin(value = "0.0", inclusive = false, message = "Amount must be greater than 0")
+    BigDecimal amount;
+}
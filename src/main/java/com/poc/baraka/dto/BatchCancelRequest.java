@@ -0,0 +1,27 @@
+package com.poc.baraka.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+/**
+ * @author Waqas Ahmed
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Request to cancel several orders at once")
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BatchCancelRequest {
+
+    @Schema(description = "Ids of the orders to cancel", example = "[1, 2, 3]")
+    @NotEmpty(message = "Order ids are mandatory")
+    @Size(max = 1000, message = "A batch holds at most 1000 orders")
+    List<@NotNull Long> orderIds;
+}
@@ -0,0 +1,26 @@
+package com.poc.baraka.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * @author Waqas Ahmed
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BatchItemResponse {
+
+    @Schema(description = "Position of the item in the request", example = "0")
+    int index;
+
+    @Schema(description = "Order state after the item was applied, missing if it was rejected")
+    OrderResponse result;
+
+    @Schema(description = "Why the item was rejected, missing if it was applied", example = "Order not found")
+    String error;
+}
@@ -0,0 +1,28 @@
+package com.poc.baraka.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+/**
+ * @author Waqas Ahmed
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Request to place several limit orders at once")
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BatchOrderRequest {
+
+    @Schema(description = "Orders to place, applied in the order given")
+    @NotEmpty(message = "Orders are mandatory")
+    @Size(max = 1000, message = "A batch holds at most 1000 orders")
+    @Valid
+    List<OrderRequest> orders;
+}
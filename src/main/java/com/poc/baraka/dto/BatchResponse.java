@@ -0,0 +1,22 @@
+package com.poc.baraka.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+/**
+ * @author Waqas Ahmed
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BatchResponse {
+
+    @Schema(description = "One result per item, in request order")
+    List<BatchItemResponse> results;
+}
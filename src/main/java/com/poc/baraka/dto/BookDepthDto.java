@@ -0,0 +1,30 @@
+package com.poc.baraka.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+/**
+ * @author Waqas Ahmed
+ */
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BookDepthDto {
+
+    @Schema(description = "Asset symbol", example = "BTC")
+    String asset;
+
+    @Schema(description = "Version of the book view, equal versions are the same book", example = "42")
+    long version;
+
+    @Schema(description = "Buy levels, best price first")
+    List<PriceLevelDto> bids;
+
+    @Schema(description = "Sell levels, best price first")
+    List<PriceLevelDto> asks;
+}
@@ -0,0 +1,39 @@
+package com.poc.baraka.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+/**
+ * @author Waqas Ahmed
+ */
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CandleDto {
+
+    @Schema(description = "Start of the interval in epoch milliseconds", example = "1760662140000")
+    long start;
+
+    @Schema(description = "Price of the first trade", example = "10.0")
+    BigDecimal open;
+
+    @Schema(description = "Highest price traded", example = "10.5")
+    BigDecimal high;
+
+    @Schema(description = "Lowest price traded", example = "9.5")
+    BigDecimal low;
+
+    @Schema(description = "Price of the last trade", example = "10.25")
+    BigDecimal close;
+
+    @Schema(description = "Amount traded", example = "42.5")
+    BigDecimal volume;
+
+    @Schema(description = "Number of trades", example = "17")
+    int trades;
+}
@@ -0,0 +1,30 @@
+package com.poc.baraka.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+/**
+ * @author Waqas Ahmed
+ */
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class DepthSnapshotDto {
+
+    @Schema(description = "Asset symbol", example = "BTC")
+    String asset;
+
+    @Schema(description = "Sequence of the last update included, apply only updates after it", example = "42")
+    long sequence;
+
+    @Schema(description = "Buy levels, best price first")
+    List<PriceLevelDto> bids;
+
+    @Schema(description = "Sell levels, best price first")
+    List<PriceLevelDto> asks;
+}
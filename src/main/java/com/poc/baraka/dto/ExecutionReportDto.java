@@ -0,0 +1,48 @@
+package com.poc.baraka.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+/**
+ * @author Waqas Ahmed
+ */
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ExecutionReportDto {
+
+    @Schema(description = "Sequence of the report, counting up per client from 1", example = "42")
+    long sequence;
+
+    @Schema(description = "Id of the order", example = "1024")
+    long orderId;
+
+    @Schema(description = "Asset symbol", example = "BTC")
+    String asset;
+
+    @Schema(description = "NEW, TRADE, FILLED, CANCELED or REJECTED", example = "TRADE")
+    String type;
+
+    @Schema(description = "Trade price, only on a TRADE", example = "10.0")
+    BigDecimal price;
+
+    @Schema(description = "Traded amount, only on a TRADE", example = "1.5")
+    BigDecimal amount;
+
+    @Schema(description = "Id of the order traded with, only on a TRADE", example = "7")
+    Long counterOrderId;
+
+    @Schema(description = "Amount still open on the order", example = "0.5")
+    BigDecimal pendingAmount;
+
+    @Schema(description = "Why the order was rejected, only on a REJECTED", example = "Price is outside the band")
+    String reason;
+
+    @Schema(description = "Time of the report in epoch milliseconds", example = "1760662142137")
+    long timestamp;
+}
@@ -0,0 +1,36 @@
+package com.poc.baraka.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+/**
+ * @author Waqas Ahmed
+ */
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class LevelUpdateDto {
+
+    @Schema(description = "Asset symbol", example = "BTC")
+    String asset;
+
+    @Schema(description = "Sequence number of the update within the asset's feed", example = "43")
+    long sequence;
+
+    @Schema(description = "Side of the level", example = "BUY")
+    String side;
+
+    @Schema(description = "Price of the level", example = "10.0")
+    BigDecimal price;
+
+    @Schema(description = "New total amount at the price, 0 removes the level", example = "100.0")
+    BigDecimal amount;
+
+    @Schema(description = "New number of orders at the price", example = "3")
+    int orders;
+}
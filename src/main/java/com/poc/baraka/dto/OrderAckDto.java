@@ -0,0 +1,27 @@
+package com.poc.baraka.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * @author Waqas Ahmed
+ */
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Schema(description = "Acknowledgement of an order accepted for matching, its outcome follows as execution reports")
+public class OrderAckDto {
+
+    @Schema(description = "Id assigned to the order", example = "1024")
+    long orderId;
+
+    @Schema(description = "Client the execution reports of the order go to", example = "desk-1")
+    String clientId;
+
+    @Schema(description = "Latest report sequence of the client when the order was accepted, the order's reports "
+            + "come after it", example = "41")
+    long sequence;
+}
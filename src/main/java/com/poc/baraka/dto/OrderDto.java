@@ -39,6 +39,19 @@ public class OrderDto {
     @Schema(description = "Order direction", example = "SELL or Buy")
     String direction;
 
+    @Schema(description = "Order type, LIMIT or MARKET", example = "LIMIT")
+    String type;
+
+    @Schema(description = "Time in force, GTC, IOC or FOK", example = "GTC")
+    String timeInForce;
+
+    @Schema(description = "Account that placed the order", example = "42")
+    Long accountId;
+
+    @Schema(description = "Self-trade prevention, CANCEL_NEWEST, CANCEL_OLDEST or DECREMENT_BOTH",
+            example = "CANCEL_NEWEST")
+    String selfTradePrevention;
+
     @Schema(description = "Pending Amount", example = "90.0")
     BigDecimal pendingAmount;
 
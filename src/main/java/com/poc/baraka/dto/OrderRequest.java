@@ -1,11 +1,15 @@
 package com.poc.baraka.dto;
 
 import com.poc.baraka.enums.OrderDirectionEnum;
+import com.poc.baraka.enums.OrderTypeEnum;
+import com.poc.baraka.enums.SelfTradePreventionEnum;
+import com.poc.baraka.enums.TimeInForceEnum;
 import com.poc.baraka.validator.EnumValidator;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.Size;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
@@ -19,7 +23,7 @@ import java.math.BigDecimal;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Schema(description = "Request to place a limit order")
+@Schema(description = "Request to place a limit or market order")
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class OrderRequest {
 
@@ -28,8 +32,7 @@ public class OrderRequest {
     @Size(min = 3, max = 5, message = "Asset symbol must be between 3 and 5 characters")
     String asset;
 
-    @Schema(description = "Price", example = "43250.00")
-    @NotNull(message = "Price is mandatory")
+    @Schema(description = "Price, mandatory for a limit order and left out for a market order", example = "43250.00")
     @DecimalMin(value = "0.0", inclusive = false, message = "Price must be greater than 0")
     BigDecimal price;
 
@@ -42,4 +45,26 @@ public class OrderRequest {
     @NotNull(message = "Direction is mandatory")
     @EnumValidator(enumClass = OrderDirectionEnum.class, message = "Direction must be BUY or SELL")
     String direction;
+
+    @Schema(description = "Order type, LIMIT if left out", example = "LIMIT")
+    @EnumValidator(enumClass = OrderTypeEnum.class, message = "Type must be LIMIT or MARKET")
+    @Builder.Default
+    String type = OrderTypeEnum.LIMIT.name();
+
+    @Schema(description = "Time in force, GTC if left out. A market order never rests, so GTC means IOC for it",
+            example = "GTC")
+    @EnumValidator(enumClass = TimeInForceEnum.class, message = "Time in force must be GTC, IOC or FOK")
+    @Builder.Default
+    String timeInForce = TimeInForceEnum.GTC.name();
+
+    @Schema(description = "Account placing the order. Orders of one account never trade with each other", example = "42")
+    @Positive(message = "Account id must be greater than 0")
+    Long accountId;
+
+    @Schema(description = "What happens instead when the order meets a resting order of its own account, "
+            + "CANCEL_NEWEST if left out", example = "CANCEL_NEWEST")
+    @EnumValidator(enumClass = SelfTradePreventionEnum.class,
+            message = "Self-trade prevention must be CANCEL_NEWEST, CANCEL_OLDEST or DECREMENT_BOTH")
+    @Builder.Default
+    String selfTradePrevention = SelfTradePreventionEnum.CANCEL_NEWEST.name();
 }
@@ -0,0 +1,27 @@
+package com.poc.baraka.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+/**
+ * @author Waqas Ahmed
+ */
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class PriceLevelDto {
+
+    @Schema(description = "Price of the level", example = "10.0")
+    BigDecimal price;
+
+    @Schema(description = "Total amount resting at the price", example = "100.0")
+    BigDecimal amount;
+
+    @Schema(description = "Number of orders resting at the price", example = "3")
+    int orders;
+}
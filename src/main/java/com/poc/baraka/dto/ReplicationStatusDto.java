@@ -0,0 +1,35 @@
+package com.poc.baraka.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * @author Waqas Ahmed
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ReplicationStatusDto {
+
+    @Schema(description = "Configured role", example = "REPLICA")
+    String role;
+
+    @Schema(description = "Acknowledgement policy of the primary", example = "ASYNC")
+    String policy;
+
+    @Schema(description = "Whether this engine takes orders, true on a primary and on a promoted replica")
+    boolean primary;
+
+    @Schema(description = "Whether a replica follows the primary's stream right now")
+    boolean inStep;
+
+    @Schema(description = "Last journaled sequence on a primary, last applied one on a replica", example = "1024")
+    long sequence;
+
+    @Schema(description = "Last sequence the replica acknowledged, on a primary with a replica in step", example = "1020")
+    Long acknowledgedSequence;
+}
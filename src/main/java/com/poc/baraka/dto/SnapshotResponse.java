@@ -0,0 +1,20 @@
+package com.poc.baraka.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * @author Waqas Ahmed
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SnapshotResponse {
+
+    @Schema(description = "Snapshot file written", example = "snapshot-00000000000000001024.bin")
+    String file;
+}
@@ -0,0 +1,28 @@
+package com.poc.baraka.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * @author Waqas Ahmed
+ */
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TopOfBookDto {
+
+    @Schema(description = "Asset symbol", example = "BTC")
+    String asset;
+
+    @Schema(description = "Version of the book view, equal versions are the same book", example = "42")
+    long version;
+
+    @Schema(description = "Best buy level, null if there is no bid")
+    PriceLevelDto bid;
+
+    @Schema(description = "Best sell level, null if there is no ask")
+    PriceLevelDto ask;
+}
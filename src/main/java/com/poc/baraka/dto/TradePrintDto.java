@@ -0,0 +1,42 @@
+package com.poc.baraka.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+/**
+ * @author Waqas Ahmed
+ */
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TradePrintDto {
+
+    @Schema(description = "Asset symbol", example = "BTC")
+    String asset;
+
+    @Schema(description = "Sequence number of the trade within the asset's feed", example = "44")
+    long sequence;
+
+    @Schema(description = "Trade price", example = "10.0")
+    BigDecimal price;
+
+    @Schema(description = "Traded amount", example = "1.5")
+    BigDecimal amount;
+
+    @Schema(description = "Side of the incoming order that took liquidity", example = "BUY")
+    String aggressorSide;
+
+    @Schema(description = "Id of the buy order", example = "7")
+    long buyOrderId;
+
+    @Schema(description = "Id of the sell order", example = "3")
+    long sellOrderId;
+
+    @Schema(description = "Time of the trade in epoch milliseconds", example = "1760662142137")
+    long timestamp;
+}
@@ -0,0 +1,168 @@
+package com.poc.baraka.engine;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Levels held in a ring of slots indexed directly by price in ticks, for assets whose prices stay in a
+ * known band. A lookup is one array read and the best price is a cursor, with a bitmap of non-empty
+ * slots to move the cursor to the next level when the best one empties.
+ * <p>
+ * A price goes to slot {@code price & mask}. As long as the occupied prices span fewer ticks than
+ * there are slots, every slot holds at most one price, so the band moves with the book without
+ * copying anything: only the span of the occupied levels is bounded, not where it sits.
+ *
+ * @author Waqas Ahmed
+ */
+final class ArrayBookSide implements BookSide {
+
+    private final boolean buy;
+    private final PriceLevel[] slots;
+    private final long[] occupied;
+    private final int mask;
+
+    // Lowest and highest price with a level, only meaningful while size > 0
+    private long low;
+    private long high;
+    private volatile int size;
+
+    /**
+     * @param buy   true for the bid side, best price is the highest
+     * @param ticks widest span of prices the side holds, rounded up to a power of two of at least 64
+     */
+    ArrayBookSide(boolean buy, int ticks) {
+        int capacity = Math.max(64, Integer.highestOneBit(Math.max(1, ticks - 1)) << 1);
+        this.buy = buy;
+        this.slots = new PriceLevel[capacity];
+        this.occupied = new long[capacity >>> 6];
+        this.mask = capacity - 1;
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public PriceLevel best() {
+        return size == 0 ? null : slots[slot(buy ? high : low)];
+    }
+
+    @Override
+    public PriceLevel get(long price) {
+        if (size == 0 || price < low || price > high) {
+            return null;
+        }
+        return slots[slot(price)];
+    }
+
+    @Override
+    public boolean accepts(long price) {
+        return size == 0 || Math.max(high, price) - Math.min(low, price) < slots.length;
+    }
+
+    @Override
+    public void add(PriceLevel level) {
+        long price = level.price;
+        if (!accepts(price)) {
+            throw new IllegalStateException("Price " + price + " is outside the band of " + slots.length
+                    + " ticks held from " + low + " to " + high);
+        }
+        int slot = slot(price);
+        slots[slot] = level;
+        occupied[slot >>> 6] |= 1L << slot;
+        if (size == 0) {
+            low = price;
+            high = price;
+        } else {
+            low = Math.min(low, price);
+            high = Math.max(high, price);
+        }
+        size++;
+    }
+
+    @Override
+    public void remove(PriceLevel level) {
+        long price = level.price;
+        int slot = slot(price);
+        slots[slot] = null;
+        occupied[slot >>> 6] &= ~(1L << slot);
+        size--;
+        if (size == 0) {
+            return;
+        }
+        if (price == low) {
+            low = nextUp(price + 1);
+        } else if (price == high) {
+            high = nextDown(price - 1);
+        }
+    }
+
+    /**
+     * Lowest occupied price from {@code price} up, there must be one at or below {@link #high}.
+     */
+    private long nextUp(long price) {
+        while (true) {
+            int slot = slot(price);
+            int bit = slot & 63;
+            long word = occupied[slot >>> 6] & (-1L << bit);
+            if (word != 0) {
+                return price + Long.numberOfTrailingZeros(word) - bit;
+            }
+            price += 64 - bit;
+        }
+    }
+
+    /**
+     * Highest occupied price from {@code price} down, there must be one at or above {@link #low}.
+     */
+    private long nextDown(long price) {
+        while (true) {
+            int slot = slot(price);
+            int bit = slot & 63;
+            long word = occupied[slot >>> 6] & (-1L >>> (63 - bit));
+            if (word != 0) {
+                return price - bit + 63 - Long.numberOfLeadingZeros(word);
+            }
+            price -= bit + 1;
+        }
+    }
+
+    private int slot(long price) {
+        return (int) price & mask;
+    }
+
+    @Override
+    public Iterator<PriceLevel> iterator() {
+        return new Iterator<>() {
+            private int left = size;
+            private long price = buy ? high : low;
+
+            @Override
+            public boolean hasNext() {
+                return left > 0;
+            }
+
+            @Override
+            public PriceLevel next() {
+                if (left == 0) {
+                    throw new NoSuchElementException();
+                }
+                price = buy ? nextDown(price) : nextUp(price);
+                PriceLevel level = slots[slot(price)];
+                price += buy ? -1 : 1;
+                left--;
+                return level;
+            }
+        };
+    }
+}
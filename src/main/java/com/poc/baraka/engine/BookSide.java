@@ -0,0 +1,33 @@
+package com.poc.baraka.engine;
+
+/**
+ * The price levels of one side of an {@link OrderBook}, iterated best price first. Only the book's
+ * matcher thread changes a side; level counts may be sampled from other threads.
+ *
+ * @author Waqas Ahmed
+ */
+interface BookSide extends Iterable<PriceLevel> {
+
+    boolean isEmpty();
+
+    int size();
+
+    /**
+     * @return the level with the best price, or null if the side is empty
+     */
+    PriceLevel best();
+
+    /**
+     * @return the level at the price, or null if there is none
+     */
+    PriceLevel get(long price);
+
+    /**
+     * Whether a level at the price can be added, for sides that only hold a bounded price range.
+     */
+    boolean accepts(long price);
+
+    void add(PriceLevel level);
+
+    void remove(PriceLevel level);
+}
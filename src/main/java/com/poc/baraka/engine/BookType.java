@@ -0,0 +1,17 @@
+package com.poc.baraka.engine;
+
+/**
+ * How the price levels of an asset's book are held.
+ *
+ * @author Waqas Ahmed
+ */
+public enum BookType {
+    /**
+     * Sorted map of levels, any price range.
+     */
+    SKIP_LIST,
+    /**
+     * Levels indexed directly by price within a bounded band of ticks, see {@link ArrayBookSide}.
+     */
+    ARRAY
+}
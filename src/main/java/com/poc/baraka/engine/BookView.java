@@ -0,0 +1,89 @@
+package com.poc.baraka.engine;
+
+/**
+ * Immutable copy of the top levels of a book, published by the matcher thread after each batch of
+ * commands. Readers on any thread get a consistent view through one volatile read and never touch
+ * the live book, so reads do not contend with matching however many there are.
+ * <p>
+ * Levels are kept in engine units, best price first, and only converted to decimals by the reader.
+ *
+ * @author Waqas Ahmed
+ */
+public final class BookView {
+
+    private final String asset;
+    private final long version;
+    private final int priceScale;
+    private final int quantityScale;
+    private final long[] bidPrices;
+    private final long[] bidQuantities;
+    private final int[] bidOrders;
+    private final long[] askPrices;
+    private final long[] askQuantities;
+    private final int[] askOrders;
+
+    BookView(String asset, long version, int priceScale, int quantityScale, long[] bidPrices, long[] bidQuantities,
+             int[] bidOrders, long[] askPrices, long[] askQuantities, int[] askOrders) {
+        this.asset = asset;
+        this.version = version;
+        this.priceScale = priceScale;
+        this.quantityScale = quantityScale;
+        this.bidPrices = bidPrices;
+        this.bidQuantities = bidQuantities;
+        this.bidOrders = bidOrders;
+        this.askPrices = askPrices;
+        this.askQuantities = askQuantities;
+        this.askOrders = askOrders;
+    }
+
+    public String getAsset() {
+        return asset;
+    }
+
+    /**
+     * Increases with every view of the book published, a reader seeing the same version saw the same book.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getPriceScale() {
+        return priceScale;
+    }
+
+    public int getQuantityScale() {
+        return quantityScale;
+    }
+
+    public int getBidLevels() {
+        return bidPrices.length;
+    }
+
+    public int getAskLevels() {
+        return askPrices.length;
+    }
+
+    public long getBidPrice(int level) {
+        return bidPrices[level];
+    }
+
+    public long getBidQuantity(int level) {
+        return bidQuantities[level];
+    }
+
+    public int getBidOrders(int level) {
+        return bidOrders[level];
+    }
+
+    public long getAskPrice(int level) {
+        return askPrices[level];
+    }
+
+    public long getAskQuantity(int level) {
+        return askQuantities[level];
+    }
+
+    public int getAskOrders(int level) {
+        return askOrders[level];
+    }
+}
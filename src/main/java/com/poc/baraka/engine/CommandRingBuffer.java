@@ -0,0 +1,137 @@
+package com.poc.baraka.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pre-allocated multi-producer, single-consumer ring of {@link OrderCommand}s, in the style of the
+ * LMAX Disruptor. Producers claim a sequence with a single atomic increment, fill the slot in place
+ * and publish it; the one consumer drains every contiguously published slot as a batch.
+ * <p>
+ * When the ring is full producers wait for the consumer, which gives natural back pressure.
+ *
+ * @author Waqas Ahmed
+ */
+public class CommandRingBuffer {
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 10;
+    private static final long PARK_NANOS = 1_000_000L;
+    private static final long VIRTUAL_PARK_NANOS = 10_000L;
+
+    public interface Handler {
+        void onCommand(OrderCommand command, long sequence, boolean endOfBatch);
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final OrderCommand[] slots;
+    // Sequence last published into each slot, -1 until first use
+    private final AtomicLong claimSequence = new AtomicLong();
+    private final AtomicLongArray published;
+    // Next sequence the consumer will read, everything below it is free for producers
+    private final AtomicLong consumerSequence = new AtomicLong();
+
+    private volatile Thread consumer;
+    private volatile boolean consumerParked;
+
+    public CommandRingBuffer(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring size must be a power of two: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.slots = new OrderCommand[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new OrderCommand();
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Claims the next sequence, waiting while the ring is full.
+     */
+    public long claim() {
+        long sequence = claimSequence.getAndIncrement();
+        int idle = 0;
+        while (sequence - capacity >= consumerSequence.get()) {
+            idle = idle(idle);
+        }
+        return sequence;
+    }
+
+    public OrderCommand get(long sequence) {
+        return slots[(int) sequence & mask];
+    }
+
+    /**
+     * Makes a claimed and filled slot visible to the consumer.
+     */
+    public void publish(long sequence) {
+        published.set((int) sequence & mask, sequence);
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Handles every published command up to {@code maxBatch}, on the calling (consumer) thread.
+     *
+     * @return number of commands handled
+     */
+    public int drain(Handler handler, int maxBatch) {
+        long next = consumerSequence.get();
+        long available = next;
+        while (available - next < maxBatch && published.get((int) available & mask) == available) {
+            available++;
+        }
+        for (long sequence = next; sequence < available; sequence++) {
+            handler.onCommand(slots[(int) sequence & mask], sequence, sequence == available - 1);
+        }
+        consumerSequence.set(available);
+        return (int) (available - next);
+    }
+
+    /**
+     * Parks the consumer until a producer publishes, or at most a millisecond.
+     */
+    public void awaitCommands() {
+        consumer = Thread.currentThread();
+        consumerParked = true;
+        if (published.get((int) consumerSequence.get() & mask) != consumerSequence.get()) {
+            LockSupport.parkNanos(this, PARK_NANOS);
+        }
+        consumerParked = false;
+    }
+
+    public boolean isEmpty() {
+        return claimSequence.get() == consumerSequence.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Spins, then yields, then parks. A virtual thread skips the spinning, it would hold on to a
+     * carrier that other request threads need.
+     */
+    private static int idle(int idle) {
+        if (Thread.currentThread().isVirtual()) {
+            if (idle < YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(VIRTUAL_PARK_NANOS);
+            }
+        } else if (idle < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (idle < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(1_000L);
+        }
+        return idle + 1;
+    }
+}
@@ -0,0 +1,45 @@
+package com.poc.baraka.engine;
+
+import java.util.List;
+
+/**
+ * Hands every callback to several listeners, in order.
+ *
+ * @author Waqas Ahmed
+ */
+public class CompositeOrderBookListener implements OrderBookListener {
+
+    private final OrderBookListener[] listeners;
+
+    public CompositeOrderBookListener(List<OrderBookListener> listeners) {
+        this.listeners = listeners.toArray(OrderBookListener[]::new);
+    }
+
+    @Override
+    public void onOrderFilled(OrderBook book, OrderEntry order) {
+        for (OrderBookListener listener : listeners) {
+            listener.onOrderFilled(book, order);
+        }
+    }
+
+    @Override
+    public void onOrderCanceled(OrderBook book, OrderEntry order) {
+        for (OrderBookListener listener : listeners) {
+            listener.onOrderCanceled(book, order);
+        }
+    }
+
+    @Override
+    public void onLevelChanged(OrderBook book, boolean buy, PriceLevel level) {
+        for (OrderBookListener listener : listeners) {
+            listener.onLevelChanged(book, buy, level);
+        }
+    }
+
+    @Override
+    public void onTrade(OrderBook book, OrderEntry incoming, OrderEntry resting, long quantity) {
+        for (OrderBookListener listener : listeners) {
+            listener.onTrade(book, incoming, resting, quantity);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.poc.baraka.engine;
+
+/**
+ * Fills a level from the front of its queue, each order in full before the next one trades.
+ *
+ * @author Waqas Ahmed
+ */
+final class FifoMatchingPolicy implements MatchingPolicy {
+
+    @Override
+    public void match(PriceLevel level, long quantity, LevelFills fills) {
+        long left = quantity;
+        while (left > 0 && level.head != null) {
+            OrderEntry resting = level.head;
+            left = fills.fill(resting, Math.min(left, resting.pending));
+        }
+    }
+}
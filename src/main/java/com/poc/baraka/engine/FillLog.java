@@ -0,0 +1,110 @@
+package com.poc.baraka.engine;
+
+import com.poc.baraka.dto.TradeDto;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.poc.baraka.utils.DecimalUtils.fromUnits;
+
+/**
+ * Trades of one order, kept as references into the book's {@link TradeLog} so a fill allocates nothing
+ * and a trade is only stored once for both of its orders. It is the order's
+ * {@link com.poc.baraka.dto.OrderDto#getTrades() trade list}: a {@link TradeDto} is only created when
+ * the list is read, at the API boundary or when the order is written to disk.
+ * <p>
+ * Only the matcher thread of the order's shard appends. Readers on other threads see a consistent
+ * prefix, as the size is published after the fields of a fill.
+ *
+ * @author Waqas Ahmed
+ */
+public final class FillLog extends AbstractList<TradeDto> {
+
+    private final List<TradeDto> restored;
+    private final boolean buy;
+    private final int priceScale;
+    private final int quantityScale;
+    private TradeLog.Chunk[] chunks;
+    private int[] slots;
+    // Amount left on the order after its latest fill or amend
+    private long leaves;
+    private volatile int count;
+
+    /**
+     * @param restored trades the order already had, e.g. from a snapshot, kept ahead of the new ones
+     * @param buy      side of the order, the counter order of a trade is on the other one
+     */
+    FillLog(List<TradeDto> restored, boolean buy, int priceScale, int quantityScale) {
+        this.restored = restored.isEmpty() ? List.of() : List.copyOf(restored);
+        this.buy = buy;
+        this.priceScale = priceScale;
+        this.quantityScale = quantityScale;
+        this.chunks = new TradeLog.Chunk[1];
+        this.slots = new int[1];
+    }
+
+    /**
+     * Records a fill already appended to the trade log.
+     */
+    void add(TradeLog.Chunk chunk, int slot, long leaves) {
+        int n = count;
+        if (n == slots.length) {
+            chunks = Arrays.copyOf(chunks, n * 2);
+            slots = Arrays.copyOf(slots, n * 2);
+        }
+        chunks[n] = chunk;
+        slots[n] = slot;
+        this.leaves = leaves;
+        count = n + 1;
+    }
+
+    /**
+     * Amount left on the order after its latest fill or amend, in lots, or -1 if it had no fill since
+     * it was loaded.
+     */
+    public long lastLeaves() {
+        return count == 0 ? -1 : leaves;
+    }
+
+    /**
+     * Corrects the amount left after the latest fill once the order was amended.
+     */
+    void amendLeaves(long leaves) {
+        int n = count;
+        this.leaves = leaves;
+        // Publishes the write like a new fill would
+        count = n;
+    }
+
+    public int getQuantityScale() {
+        return quantityScale;
+    }
+
+    @Override
+    public TradeDto get(int index) {
+        if (index < restored.size()) {
+            return restored.get(index);
+        }
+        int n = count;
+        int fill = index - restored.size();
+        if (fill < 0 || fill >= n) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        TradeLog.Chunk chunk = chunks[fill];
+        int slot = slots[fill];
+        return TradeDto.builder()
+                .orderId(buy ? chunk.sellers[slot] : chunk.buyers[slot])
+                .price(BigDecimal.valueOf(chunk.prices[slot], priceScale)
+                        .setScale(chunk.priceDisplayScale(slot), RoundingMode.UNNECESSARY))
+                .amount(fromUnits(chunk.quantities[slot], quantityScale, chunk.amountDisplayScale(slot)))
+                .build();
+    }
+
+    @Override
+    public int size() {
+        return restored.size() + count;
+    }
+}
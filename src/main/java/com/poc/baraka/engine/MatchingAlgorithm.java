@@ -0,0 +1,25 @@
+package com.poc.baraka.engine;
+
+/**
+ * How an asset's book shares an incoming order among the orders resting at a price, see
+ * {@link MatchingPolicy}.
+ *
+ * @author Waqas Ahmed
+ */
+public enum MatchingAlgorithm {
+    /**
+     * Price-time priority, the oldest order at a price fills first.
+     */
+    FIFO,
+    /**
+     * In proportion to the size of the orders at a price, see {@link ProRataMatchingPolicy}.
+     */
+    PRO_RATA;
+
+    /**
+     * @param minAllocation for {@link #PRO_RATA}, the smallest share given to an order, in lots
+     */
+    public MatchingPolicy policy(long minAllocation) {
+        return this == PRO_RATA ? new ProRataMatchingPolicy(minAllocation) : MatchingPolicy.FIFO;
+    }
+}
@@ -0,0 +1,49 @@
+package com.poc.baraka.engine;
+
+/**
+ * How an incoming order is shared out among the orders resting at one price level. The book walks the
+ * levels best price first and hands each crossing level to the asset's policy, which only decides who
+ * trades how much there; the trades themselves, self-trade prevention and level upkeep stay with the book.
+ *
+ * @author Waqas Ahmed
+ */
+public interface MatchingPolicy {
+
+    /**
+     * Price-time priority: the level fills from the front of its queue.
+     */
+    MatchingPolicy FIFO = new FifoMatchingPolicy();
+
+    /**
+     * Trades the incoming order against the level until one of them runs out: when it returns, either
+     * the level is empty or nothing is left of the incoming order.
+     * <p>
+     * A fill can take its resting order out of the level, so a policy reads an order's
+     * {@link OrderEntry#getNext() next} link before filling it.
+     *
+     * @param quantity what is left of the incoming order, in lots
+     */
+    void match(PriceLevel level, long quantity, LevelFills fills);
+
+    /**
+     * Whether a level always fills from the front of its queue, so an order taking only part of it
+     * never meets the orders behind where it stops. A fill or kill check relies on it to stop early.
+     */
+    default boolean fillsInTimeOrder() {
+        return true;
+    }
+
+    /**
+     * Trades of the incoming order, handed to a policy by the book.
+     */
+    interface LevelFills {
+
+        /**
+         * Trades up to the quantity between the incoming order and the resting one. An order of the
+         * incoming order's own account is not traded with but has the self-trade prevention applied.
+         *
+         * @return what is left of the incoming order after it, 0 once it is done or canceled
+         */
+        long fill(OrderEntry resting, long quantity);
+    }
+}
@@ -0,0 +1,570 @@
+package com.poc.baraka.engine;
+
+import com.poc.baraka.dto.OrderResponse;
+import com.poc.baraka.exception.InvalidOrderException;
+import com.poc.baraka.journal.BookSnapshot;
+import com.poc.baraka.journal.OrderJournal;
+import com.poc.baraka.metrics.EngineMetrics;
+import com.poc.baraka.metrics.Stage;
+import com.poc.baraka.store.OrderStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A single-writer matching shard. Every asset is pinned to exactly one shard and all work on its
+ * order book runs on the shard's own matcher thread, so books need no locking and independent assets
+ * match in parallel.
+ * <p>
+ * Request threads never touch a book. They publish place/cancel/amend commands into the shard's
+ * {@link CommandRingBuffer} and wait on the command's completion handle; the matcher thread drains
+ * the ring in batches.
+ *
+ * @author Waqas Ahmed
+ */
+public class MatchingShard implements CommandRingBuffer.Handler {
+
+    private static final Logger log = LoggerFactory.getLogger(MatchingShard.class);
+
+    private static final int SPIN_TRIES = 1_000;
+
+    private final int index;
+    private final Function<String, OrderBook> bookFactory;
+    private final OrderStore orders;
+    private final OrderJournal journal;
+    private final OrderJournal.Appender appender;
+    private final EngineMetrics metrics;
+    private final CommandRingBuffer ring;
+    private final int batchSize;
+    private final int viewDepth;
+    private final Thread matcher;
+
+    private volatile boolean running = true;
+
+    // Only changed by the matcher thread. Other threads only look books up to read their published view.
+    private final Map<String, OrderBook> books = new ConcurrentHashMap<>();
+    // The same books, walked after every batch without allocating an iterator
+    private final List<OrderBook> bookList = new ArrayList<>();
+    // Last record of the drained batch the replica must ack before the held completions run, 0 if none
+    private long unreplicated;
+    private final List<Runnable> held = new ArrayList<>();
+
+    /**
+     * @param viewDepth price levels per side copied into the {@link BookView} published after each batch
+     */
+    public MatchingShard(int index, Function<String, OrderBook> bookFactory, OrderStore orders,
+                         OrderJournal journal, EngineMetrics metrics, int ringSize, int batchSize, int viewDepth) {
+        this.index = index;
+        this.bookFactory = bookFactory;
+        this.orders = orders;
+        this.journal = journal;
+        this.appender = journal != null ? journal.appender() : null;
+        this.metrics = metrics;
+        this.ring = new CommandRingBuffer(ringSize);
+        this.batchSize = batchSize;
+        this.viewDepth = viewDepth;
+        this.matcher = new Thread(this::run, "matching-shard-" + index);
+        this.matcher.setDaemon(true);
+        this.matcher.start();
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public CompletableFuture<OrderResponse> place(OrderEntry order) {
+        return place(order, false);
+    }
+
+    /**
+     * @param replay true when the command comes from the journal and must not be journaled again
+     */
+    public CompletableFuture<OrderResponse> place(OrderEntry order, boolean replay) {
+        return place(order, replay, new CompletableFuture<>());
+    }
+
+    /**
+     * Places the order with a completion handle of the caller's. Callbacks added to it beforehand run
+     * on the matcher thread, ahead of any later command of this shard.
+     */
+    public CompletableFuture<OrderResponse> place(OrderEntry order, CompletableFuture<OrderResponse> completion) {
+        return place(order, false, completion);
+    }
+
+    private CompletableFuture<OrderResponse> place(OrderEntry order, boolean replay,
+                                                   CompletableFuture<OrderResponse> completion) {
+        long sequence = claim();
+        OrderCommand command = ring.get(sequence);
+        command.type = OrderCommand.Type.PLACE;
+        command.asset = order.getOrder().getAsset();
+        command.order = order;
+        command.replay = replay;
+        command.completion = completion;
+        publish(sequence);
+        return completion;
+    }
+
+    /**
+     * Completes with the canceled order, or with null if the order was no longer resting.
+     */
+    public CompletableFuture<OrderResponse> cancel(String asset, long orderId) {
+        return cancel(asset, orderId, false);
+    }
+
+    public CompletableFuture<OrderResponse> cancel(String asset, long orderId, boolean replay) {
+        return cancel(asset, orderId, replay, new CompletableFuture<>());
+    }
+
+    /**
+     * Cancels with a completion handle of the caller's, see {@link #place(OrderEntry, CompletableFuture)}.
+     */
+    public CompletableFuture<OrderResponse> cancel(String asset, long orderId, CompletableFuture<OrderResponse> completion) {
+        return cancel(asset, orderId, false, completion);
+    }
+
+    private CompletableFuture<OrderResponse> cancel(String asset, long orderId, boolean replay,
+                                                    CompletableFuture<OrderResponse> completion) {
+        long sequence = claim();
+        OrderCommand command = ring.get(sequence);
+        command.type = OrderCommand.Type.CANCEL;
+        command.asset = asset;
+        command.orderId = orderId;
+        command.replay = replay;
+        command.completion = completion;
+        publish(sequence);
+        return completion;
+    }
+
+    /**
+     * Amends a resting order, see {@link OrderBook#amend}. Completes with the amended order, or with
+     * null if the order was no longer resting.
+     */
+    public CompletableFuture<OrderResponse> amend(String asset, long orderId, BigDecimal price, BigDecimal amount) {
+        return amend(asset, orderId, price, amount, false);
+    }
+
+    public CompletableFuture<OrderResponse> amend(String asset, long orderId, BigDecimal price, BigDecimal amount,
+                                                  boolean replay) {
+        CompletableFuture<OrderResponse> completion = new CompletableFuture<>();
+        long sequence = claim();
+        OrderCommand command = ring.get(sequence);
+        command.type = OrderCommand.Type.AMEND;
+        command.asset = asset;
+        command.orderId = orderId;
+        command.price = price;
+        command.amount = amount;
+        command.replay = replay;
+        command.completion = completion;
+        publish(sequence);
+        return completion;
+    }
+
+    /**
+     * Applies the commands, built with {@link OrderCommand#place} and {@link OrderCommand#cancel}, as
+     * one unit: no other command runs in between. Results come back in the same order, null for a
+     * cancel of an order that was no longer resting.
+     */
+    public CompletableFuture<List<OrderResponse>> batch(List<OrderCommand> commands) {
+        CompletableFuture<List<OrderResponse>> completion = new CompletableFuture<>();
+        long sequence = claim();
+        OrderCommand command = ring.get(sequence);
+        command.type = OrderCommand.Type.BATCH;
+        command.batch = commands;
+        command.batchCompletion = completion;
+        publish(sequence);
+        return completion;
+    }
+
+    /**
+     * Cancels every order resting in the asset's book, completing with the canceled orders.
+     */
+    public CompletableFuture<List<OrderResponse>> cancelAll(String asset) {
+        CompletableFuture<List<OrderResponse>> completion = new CompletableFuture<>();
+        long sequence = claim();
+        OrderCommand command = ring.get(sequence);
+        command.type = OrderCommand.Type.CANCEL_ALL;
+        command.asset = asset;
+        command.batchCompletion = completion;
+        publish(sequence);
+        return completion;
+    }
+
+    /**
+     * Loads orders of a snapshot into the asset's book, in the order given, and continues its trade ids.
+     */
+    public CompletableFuture<OrderResponse> restore(String asset, long lastTradeId, List<OrderEntry> orders) {
+        CompletableFuture<OrderResponse> completion = new CompletableFuture<>();
+        long sequence = claim();
+        OrderCommand command = ring.get(sequence);
+        command.type = OrderCommand.Type.RESTORE;
+        command.asset = asset;
+        command.restored = orders;
+        command.lastTradeId = lastTradeId;
+        command.completion = completion;
+        publish(sequence);
+        return completion;
+    }
+
+    /**
+     * Copies the shard's books once the matcher reaches this point in its command stream. Matching
+     * only pauses for the copy, writing it out is left to the caller.
+     */
+    public CompletableFuture<List<BookSnapshot>> snapshot() {
+        CompletableFuture<List<BookSnapshot>> snapshot = new CompletableFuture<>();
+        long sequence = claim();
+        OrderCommand command = ring.get(sequence);
+        command.type = OrderCommand.Type.SNAPSHOT;
+        command.snapshot = snapshot;
+        publish(sequence);
+        return snapshot;
+    }
+
+    private long claim() {
+        if (!running) {
+            throw new IllegalStateException("Matching shard " + index + " is shut down");
+        }
+        return ring.claim();
+    }
+
+    private void publish(long sequence) {
+        ring.get(sequence).publishedAt = System.nanoTime();
+        ring.publish(sequence);
+    }
+
+    private void run() {
+        int idle = 0;
+        while (running || !ring.isEmpty()) {
+            if (ring.drain(this, batchSize) > 0) {
+                idle = 0;
+            } else if (idle < SPIN_TRIES) {
+                idle++;
+                Thread.onSpinWait();
+            } else {
+                ring.awaitCommands();
+            }
+        }
+        log.info("Matching shard {} stopped", index);
+    }
+
+    @Override
+    public void onCommand(OrderCommand command, long sequence, boolean endOfBatch) {
+        switch (command.type) {
+            case SNAPSHOT -> {
+                CompletableFuture<List<BookSnapshot>> snapshot = command.snapshot;
+                command.clear();
+                snapshot.complete(snapshotBooks());
+            }
+            case BATCH, CANCEL_ALL -> onBatch(command, sequence);
+            default -> onSingle(command, sequence);
+        }
+        if (endOfBatch) {
+            releaseHeld();
+            publishViews();
+        }
+    }
+
+    /**
+     * Completes a command, or holds the completion until the replica has the records of this drained
+     * batch. Once one completion is held, every later one is too, so they still complete in order.
+     */
+    private <T> void complete(CompletableFuture<T> completion, T result) {
+        if (unreplicated > 0) {
+            held.add(() -> completion.complete(result));
+        } else {
+            completion.complete(result);
+        }
+    }
+
+    private void fail(CompletableFuture<?> completion, Throwable error) {
+        if (unreplicated > 0) {
+            held.add(() -> completion.completeExceptionally(error));
+        } else {
+            completion.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Waits once for the replica to ack the last record journaled in this drained batch, then completes
+     * the commands held for it.
+     */
+    private void releaseHeld() {
+        if (unreplicated == 0) {
+            return;
+        }
+        journal.awaitReplicated(unreplicated);
+        unreplicated = 0;
+        for (int i = 0; i < held.size(); i++) {
+            held.get(i).run();
+        }
+        held.clear();
+    }
+
+    /**
+     * Copy of a result as it stands now, for a held completion: a later command of the batch may still
+     * cancel the stored order.
+     */
+    private static OrderResponse frozen(OrderResponse response) {
+        return response != null && response.getOrder() != null
+                ? OrderResponse.builder().order(response.getOrder()).canceled(response.isCanceled()).build()
+                : response;
+    }
+
+    /**
+     * Latest view of the asset's book published by this shard, or null if the shard has no such book.
+     * Safe to call from any thread; the view trails the book by at most one batch of commands.
+     */
+    public BookView view(String asset) {
+        OrderBook book = books.get(asset);
+        return book != null ? book.getView() : null;
+    }
+
+    private void publishViews() {
+        for (int i = 0; i < bookList.size(); i++) {
+            bookList.get(i).publishView(viewDepth);
+        }
+    }
+
+    private OrderBook book(String asset) {
+        OrderBook book = books.get(asset);
+        if (book == null) {
+            book = bookFactory.apply(asset);
+            bookList.add(book);
+            books.put(asset, book);
+        }
+        return book;
+    }
+
+    private void onSingle(OrderCommand command, long sequence) {
+        CompletableFuture<OrderResponse> completion = command.completion;
+        long startedAt = System.nanoTime();
+        boolean replay = command.replay;
+        try {
+            OrderResponse response = apply(command, replay);
+            if (!replay) {
+                metrics.record(Stage.QUEUE, startedAt - command.publishedAt);
+                record(command.type, startedAt);
+            }
+            command.clear();
+            complete(completion, unreplicated > 0 ? frozen(response) : response);
+        } catch (InvalidOrderException e) {
+            // Rejected before it was journaled, nothing changed
+            command.clear();
+            fail(completion, e);
+        } catch (RuntimeException e) {
+            log.error("Matching shard {} failed on command {}", index, sequence, e);
+            command.clear();
+            fail(completion, e);
+        }
+    }
+
+    /**
+     * Applies every command of a batch before the next command of the ring, so nothing interleaves
+     * with it. A failing item does not stop the rest, its result is null, and a rejected one keeps the
+     * reason on the item.
+     */
+    private void onBatch(OrderCommand command, long sequence) {
+        CompletableFuture<List<OrderResponse>> completion = command.batchCompletion;
+        metrics.record(Stage.QUEUE, System.nanoTime() - command.publishedAt);
+        try {
+            List<OrderResponse> responses;
+            if (command.type == OrderCommand.Type.CANCEL_ALL) {
+                responses = cancelResting(command.asset);
+            } else {
+                responses = new ArrayList<>(command.batch.size());
+                for (OrderCommand item : command.batch) {
+                    long startedAt = System.nanoTime();
+                    try {
+                        responses.add(apply(item, false));
+                        record(item.type, startedAt);
+                    } catch (InvalidOrderException e) {
+                        // Rejected before it was journaled, nothing changed
+                        item.rejection = e.getMessage();
+                        responses.add(null);
+                    } catch (RuntimeException e) {
+                        log.error("Matching shard {} failed on an item of batch {}", index, sequence, e);
+                        responses.add(null);
+                    }
+                }
+            }
+            command.clear();
+            complete(completion, responses);
+        } catch (RuntimeException e) {
+            log.error("Matching shard {} failed on command {}", index, sequence, e);
+            command.clear();
+            fail(completion, e);
+        }
+    }
+
+    private OrderResponse apply(OrderCommand command, boolean replay) {
+        OrderBook book = book(command.asset);
+        if (!replay) {
+            switch (command.type) {
+                case PLACE -> book.checkPrice(command.order);
+                case AMEND -> book.checkAmend(command.orderId, command.price);
+                default -> {
+                    // Cancels and restores add no price
+                }
+            }
+        }
+        if (journal != null && !replay) {
+            journal(book, command);
+        }
+        return switch (command.type) {
+            case PLACE -> place(book, command.order, replay);
+            case CANCEL -> cancel(book, command.orderId, replay);
+            case AMEND -> amend(book, command, replay);
+            case RESTORE -> restore(book, command.lastTradeId, command.restored);
+            default -> throw new IllegalStateException("Not a single command: " + command.type);
+        };
+    }
+
+    /**
+     * Journals the command ahead of applying it, only buffering it; the journal flushes on its own thread.
+     * With synchronous replication the command's completion is held until the replica has the record.
+     */
+    private void journal(OrderBook book, OrderCommand command) {
+        long sequence = switch (command.type) {
+            case PLACE -> appender.appendPlace(book, command.order);
+            case CANCEL -> appender.appendCancel(command.asset, command.orderId);
+            case AMEND -> appender.appendAmend(book, command.orderId, command.price, command.amount);
+            // Restores come from a snapshot, they are not commands of their own
+            default -> 0;
+        };
+        if (sequence > 0 && journal.isReplicatedSynchronously()) {
+            unreplicated = sequence;
+        }
+    }
+
+    private void record(OrderCommand.Type type, long startedAt) {
+        switch (type) {
+            case PLACE -> metrics.record(Stage.MATCH, System.nanoTime() - startedAt);
+            case CANCEL -> metrics.record(Stage.CANCEL, System.nanoTime() - startedAt);
+            case AMEND -> metrics.record(Stage.AMEND, System.nanoTime() - startedAt);
+            default -> {
+                // Restores run once at startup, they would only skew the timers
+            }
+        }
+    }
+
+    private OrderResponse place(OrderBook book, OrderEntry order, boolean replay) {
+        int tradesBefore = order.getOrder().getTrades().size();
+        OrderResponse response = book.match(order);
+        if (order.getPending() > 0) {
+            orders.putLive(response);
+        } else {
+            orders.putFinished(response);
+        }
+        if (!replay) {
+            metrics.orderPlaced(order.getOrder().getTrades().size() - tradesBefore);
+        }
+        return response;
+    }
+
+    /**
+     * @return the canceled order, or null if it was no longer resting in the book
+     */
+    private OrderResponse cancel(OrderBook book, long orderId, boolean replay) {
+        // Looked up first, the book's listener moves a canceled order out of the live ones
+        OrderResponse response = orders.getLive(orderId);
+        if (!book.cancel(orderId)) {
+            return null;
+        }
+        response.getOrder().setPendingAmount(BigDecimal.ZERO);
+        response.setCanceled(true);
+        orders.finish(orderId);
+        if (!replay) {
+            metrics.orderCanceled();
+        }
+        return response;
+    }
+
+    /**
+     * @return the amended order, or null if it was no longer resting in the book
+     */
+    private OrderResponse amend(OrderBook book, OrderCommand command, boolean replay) {
+        long orderId = command.orderId;
+        OrderResponse stored = orders.getLive(orderId);
+        int tradesBefore = stored != null ? stored.getOrder().getTrades().size() : 0;
+        OrderResponse response = book.amend(orderId, command.price, command.amount);
+        if (response == null) {
+            return null;
+        }
+        if (response.isCanceled()) {
+            stored.setCanceled(true);
+        }
+        if (response.getOrder().getPendingAmount().signum() == 0) {
+            orders.finish(orderId);
+        }
+        if (!replay) {
+            metrics.orderAmended(stored.getOrder().getTrades().size() - tradesBefore);
+        }
+        return stored;
+    }
+
+    /**
+     * Cancels every resting order of the asset, journaling each cancel on its own so a replay needs
+     * nothing new.
+     */
+    private List<OrderResponse> cancelResting(String asset) {
+        OrderBook book = books.get(asset);
+        if (book == null) {
+            return List.of();
+        }
+        long[] orderIds = book.restingOrderIds();
+        List<OrderResponse> responses = new ArrayList<>(orderIds.length);
+        for (long orderId : orderIds) {
+            long startedAt = System.nanoTime();
+            if (journal != null) {
+                long journaled = appender.appendCancel(asset, orderId);
+                if (journal.isReplicatedSynchronously()) {
+                    unreplicated = journaled;
+                }
+            }
+            responses.add(cancel(book, orderId, false));
+            record(OrderCommand.Type.CANCEL, startedAt);
+        }
+        return responses;
+    }
+
+    private OrderResponse restore(OrderBook book, long lastTradeId, List<OrderEntry> restored) {
+        book.resumeTradeIds(lastTradeId);
+        for (OrderEntry order : restored) {
+            book.restore(order);
+            orders.putLive(OrderResponse.builder().order(order.getOrder()).build());
+        }
+        return null;
+    }
+
+    private List<BookSnapshot> snapshotBooks() {
+        // Every record journaled so far that belongs to this shard is already applied
+        long sequence = journal != null ? journal.getSequence() : 0;
+        List<BookSnapshot> snapshots = new ArrayList<>(books.size());
+        for (OrderBook book : books.values()) {
+            snapshots.add(new BookSnapshot(book.getAsset(), sequence, book.getPriceScale(), book.getQuantityScale(),
+                    book.getLastTradeId(), book.snapshotOrders()));
+        }
+        return snapshots;
+    }
+
+    /**
+     * Stops accepting commands, lets the matcher drain what is already queued and waits for it.
+     */
+    public void shutdown() {
+        running = false;
+        try {
+            matcher.join(5_000L);
+            if (matcher.isAlive()) {
+                log.warn("Matching shard {} did not drain in time", index);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,589 @@
+package com.poc.baraka.engine;
+
+import com.poc.baraka.common.LongObjectHashMap;
+import com.poc.baraka.dto.OrderDto;
+import com.poc.baraka.dto.OrderResponse;
+import com.poc.baraka.dto.TradeDto;
+import com.poc.baraka.enums.SelfTradePreventionEnum;
+import com.poc.baraka.enums.TimeInForceEnum;
+import com.poc.baraka.exception.InvalidOrderException;
+import com.poc.baraka.journal.OrderSnapshot;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static com.poc.baraka.utils.DecimalUtils.fromUnits;
+import static com.poc.baraka.utils.DecimalUtils.toUnits;
+
+/**
+ * Order book of a single asset. Only ever touched by the matching shard the asset is pinned to,
+ * so it does no locking of its own.
+ * <p>
+ * Prices and amounts are matched as scaled {@code long} units, see {@link OrderEntry}. Decimals are
+ * only created when a trade or a pending amount is reported back on the order.
+ *
+ * @author Waqas Ahmed
+ */
+public class OrderBook {
+
+    private static final int MAX_FREE_LEVELS = 256;
+
+    private final String asset;
+    private final int priceScale;
+    private final int quantityScale;
+    private final MatchingPolicy matchingPolicy;
+    private final OrderBookListener listener;
+
+    // Buy levels, highest price first
+    private final BookSide bids;
+    // Sell levels, lowest price first
+    private final BookSide asks;
+
+    // Every trade of the book, written once for both orders
+    private final TradeLog tradeLog = new TradeLog();
+
+    // Emptied levels kept for reuse, so a price coming and going allocates no new level
+    private final Deque<PriceLevel> freeLevels = new ArrayDeque<>();
+
+    // Resting orders by id, for constant time cancels without boxing the id
+    private final LongObjectHashMap<OrderEntry> orderIndex = new LongObjectHashMap<>();
+
+    // Order being matched and whether self-trade prevention canceled it, for the policy's fills
+    private final MatchingPolicy.LevelFills levelFills = this::fillResting;
+    private OrderEntry incoming;
+    private boolean selfTradeCanceled;
+
+    // Set when a level changed since the last view was published
+    private boolean changed = true;
+    private long viewVersion;
+    private volatile BookView view;
+
+    public OrderBook(String asset, int priceScale, int quantityScale) {
+        this(asset, priceScale, quantityScale, OrderBookListener.NONE);
+    }
+
+    public OrderBook(String asset, int priceScale, int quantityScale, OrderBookListener listener) {
+        this(asset, priceScale, quantityScale, BookType.SKIP_LIST, 0, listener);
+    }
+
+    /**
+     * @param priceBand for an {@link BookType#ARRAY} book, the widest span of ticks each side holds
+     */
+    public OrderBook(String asset, int priceScale, int quantityScale, BookType bookType, int priceBand,
+                     OrderBookListener listener) {
+        this(asset, priceScale, quantityScale, bookType, priceBand, MatchingPolicy.FIFO, listener);
+    }
+
+    /**
+     * @param priceBand      for an {@link BookType#ARRAY} book, the widest span of ticks each side holds
+     * @param matchingPolicy how an incoming order is shared among the orders resting at a price
+     */
+    public OrderBook(String asset, int priceScale, int quantityScale, BookType bookType, int priceBand,
+                     MatchingPolicy matchingPolicy, OrderBookListener listener) {
+        this.asset = asset;
+        this.priceScale = priceScale;
+        this.quantityScale = quantityScale;
+        this.matchingPolicy = matchingPolicy;
+        this.listener = listener;
+        this.bids = bookType == BookType.ARRAY ? new ArrayBookSide(true, priceBand) : new SkipListBookSide(true);
+        this.asks = bookType == BookType.ARRAY ? new ArrayBookSide(false, priceBand) : new SkipListBookSide(false);
+    }
+
+    public String getAsset() {
+        return asset;
+    }
+
+    public int getPriceScale() {
+        return priceScale;
+    }
+
+    public int getQuantityScale() {
+        return quantityScale;
+    }
+
+    public int getBidLevels() {
+        return bids.size();
+    }
+
+    public int getAskLevels() {
+        return asks.size();
+    }
+
+    public int getRestingOrders() {
+        return orderIndex.size();
+    }
+
+    /**
+     * Id of the book's latest trade, 0 before the first one. Matcher thread only.
+     */
+    public long getLastTradeId() {
+        return tradeLog.lastTradeId();
+    }
+
+    /**
+     * Continues trade ids after those of a snapshot, before the book trades again.
+     */
+    public void resumeTradeIds(long lastTradeId) {
+        tradeLog.resume(lastTradeId);
+    }
+
+    /**
+     * Matches an incoming order against the book in one pass. A GTC remainder rests; an IOC or FOK
+     * remainder is dropped and the order reported as canceled. A FOK order that cannot fill completely
+     * is killed before it trades, so it leaves the book exactly as it was. An order that meets a resting
+     * order of its own account applies its {@link SelfTradePreventionEnum self-trade prevention} there.
+     */
+    public OrderResponse match(OrderEntry order) {
+        long entered = order.pending;
+        boolean canceled = false;
+        if (order.timeInForce != TimeInForceEnum.FOK || canFill(order)) {
+            canceled = order.buy ? matchBuyOrder(order) : matchSellOrder(order);
+        }
+        boolean expired = canceled || (order.pending > 0 && order.timeInForce != TimeInForceEnum.GTC);
+        if (expired) {
+            order.pending = 0;
+        }
+        OrderDto dto = order.order;
+        BigDecimal enteredAmount = dto.getPendingAmount() != null ? dto.getPendingAmount() : dto.getAmount();
+        // An order that did not trade keeps the decimal it came with
+        dto.setPendingAmount(order.pending == entered && enteredAmount.scale() >= 0 ? enteredAmount : pendingAmount(order));
+        return OrderResponse.builder().order(order.order).canceled(expired).build();
+    }
+
+    /**
+     * Whether the opposite side holds enough at acceptable prices to fill the whole order, summed
+     * from the level totals without touching any order. An order with an account walks the orders
+     * instead, as its own ones do not trade with it. Unless the policy fills in time order, it walks
+     * the last level to its end, as its own orders anywhere there can be met.
+     */
+    private boolean canFill(OrderEntry order) {
+        long needed = order.pending;
+        boolean wholeLevel = !matchingPolicy.fillsInTimeOrder();
+        for (PriceLevel level : order.buy ? asks : bids) {
+            if (order.buy ? order.price < level.price : order.price > level.price) {
+                break;
+            }
+            if (order.account == 0) {
+                needed -= level.totalQuantity;
+            } else {
+                for (OrderEntry resting = level.head; resting != null && (needed > 0 || wholeLevel);
+                     resting = resting.next) {
+                    if (resting.account != order.account) {
+                        needed -= resting.pending;
+                    } else if (order.selfTradePrevention == SelfTradePreventionEnum.CANCEL_NEWEST) {
+                        return false;
+                    } else if (order.selfTradePrevention == SelfTradePreventionEnum.DECREMENT_BOTH) {
+                        // Taken off the order without a trade, so it can no longer fill completely
+                        return false;
+                    }
+                }
+            }
+            if (needed <= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the buy order was canceled by self-trade prevention
+     */
+    private boolean matchBuyOrder(OrderEntry buyOrder) {
+        incoming = buyOrder;
+        selfTradeCanceled = false;
+        // Until there is pending amount and we have seller left
+        while (buyOrder.pending > 0 && !asks.isEmpty()) {
+            PriceLevel sellQueue = asks.best();
+
+            // Price not acceptable, in case buyer want to buy at very low rate
+            if (buyOrder.price < sellQueue.price) break;
+
+            if (!sellQueue.isEmpty()) {
+                matchingPolicy.match(sellQueue, buyOrder.pending, levelFills);
+            }
+            // A level left with orders means the buy order is done
+            if (!sellQueue.isEmpty()) break;
+            dropLevel(asks, sellQueue);
+        }
+        incoming = null;
+
+        // Add remaining BUY order to order book if partially filled, unless it is immediate only
+        if (buyOrder.pending > 0 && buyOrder.timeInForce == TimeInForceEnum.GTC) {
+            rest(bids, buyOrder);
+        }
+        return selfTradeCanceled;
+    }
+
+    /**
+     * @return true if the sell order was canceled by self-trade prevention
+     */
+    private boolean matchSellOrder(OrderEntry sellOrder) {
+        incoming = sellOrder;
+        selfTradeCanceled = false;
+        // Until there is pending amount and we have buyer left
+        while (sellOrder.pending > 0 && !bids.isEmpty()) {
+            PriceLevel buyQueue = bids.best();
+
+            // Price not acceptable, in case seller want to sell at very high rate
+            if (sellOrder.price > buyQueue.price) break;
+
+            if (!buyQueue.isEmpty()) {
+                matchingPolicy.match(buyQueue, sellOrder.pending, levelFills);
+            }
+            if (!buyQueue.isEmpty()) break;
+            dropLevel(bids, buyQueue);
+        }
+        incoming = null;
+
+        // Add remaining SELL order to order book if partially filled, unless it is immediate only
+        if (sellOrder.pending > 0 && sellOrder.timeInForce == TimeInForceEnum.GTC) {
+            rest(asks, sellOrder);
+        }
+        return selfTradeCanceled;
+    }
+
+    /**
+     * Fill of the order being matched against a resting order, as handed out by the matching policy.
+     * Orders of one account never trade with each other, the incoming order's self-trade prevention
+     * applies instead.
+     */
+    private long fillResting(OrderEntry resting, long quantity) {
+        OrderEntry order = incoming;
+        if (order.account != 0 && order.account == resting.account) {
+            selfTradeCanceled = preventSelfTrade(order, resting);
+            return order.pending;
+        }
+        long tradedAmount = Math.min(quantity, Math.min(order.pending, resting.pending));
+        if (tradedAmount <= 0) {
+            return order.pending;
+        }
+        PriceLevel level = resting.level;
+        recordTrade(order, resting, tradedAmount);
+
+        // Remove fully filled resting order
+        if (resting.pending == 0) {
+            unlink(resting);
+        }
+        levelChanged(resting.buy, level);
+        return order.pending;
+    }
+
+    /**
+     * Applies the incoming order's self-trade prevention to a resting order of the same account it
+     * met at the best level. Nothing trades. The caller drops the level if it was emptied.
+     *
+     * @return true if the incoming order is canceled, it must neither match further nor rest
+     */
+    private boolean preventSelfTrade(OrderEntry incoming, OrderEntry resting) {
+        switch (incoming.selfTradePrevention) {
+            case CANCEL_NEWEST -> {
+                incoming.pending = 0;
+                return true;
+            }
+            case CANCEL_OLDEST -> cancelResting(resting);
+            case DECREMENT_BOTH -> {
+                long decrement = Math.min(incoming.pending, resting.pending);
+                incoming.pending -= decrement;
+                leavesChanged(incoming);
+                PriceLevel level = resting.level;
+                level.fill(resting, decrement);
+                if (resting.pending == 0) {
+                    cancelResting(resting);
+                } else {
+                    leavesChanged(resting);
+                    levelChanged(resting.buy, level);
+                }
+                return incoming.pending == 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Takes a resting order out of the book as canceled by the matcher.
+     */
+    private void cancelResting(OrderEntry order) {
+        PriceLevel level = order.level;
+        level.remove(order);
+        orderIndex.remove(order.getId());
+        order.pending = 0;
+        order.order.setPendingAmount(pendingAmount(order));
+        levelChanged(order.buy, level);
+        listener.onOrderCanceled(this, order);
+    }
+
+    /**
+     * Brings the reported pending amount of an order in step after it changed without a fill.
+     */
+    private void leavesChanged(OrderEntry order) {
+        if (order.fills != null) {
+            order.fills.amendLeaves(order.pending);
+        } else {
+            order.order.setPendingAmount(pendingAmount(order));
+        }
+    }
+
+    /**
+     * Puts an order back at the end of its price level without matching it, used when loading a
+     * snapshot whose orders are already in priority order.
+     */
+    public void restore(OrderEntry order) {
+        rest(order.buy ? bids : asks, order);
+        order.order.setPendingAmount(pendingAmount(order));
+    }
+
+    /**
+     * Copies every resting order, bids then asks, best price first and in time priority.
+     */
+    public List<OrderSnapshot> snapshotOrders() {
+        List<OrderSnapshot> orders = new ArrayList<>(orderIndex.size());
+        for (BookSide side : List.of(bids, asks)) {
+            for (PriceLevel level : side) {
+                for (OrderEntry order = level.head; order != null; order = order.next) {
+                    OrderDto dto = order.order;
+                    orders.add(new OrderSnapshot(dto.getId(), dto.getTimestamp(), order.buy, dto.getPrice(),
+                            dto.getAmount(), order.pending, List.copyOf(dto.getTrades()), order.account,
+                            order.selfTradePrevention));
+                }
+            }
+        }
+        return orders;
+    }
+
+    public long[] restingOrderIds() {
+        long[] orderIds = new long[orderIndex.size()];
+        int i = 0;
+        for (BookSide side : List.of(bids, asks)) {
+            for (PriceLevel level : side) {
+                for (OrderEntry order = level.head; order != null; order = order.next) {
+                    orderIds[i++] = order.getId();
+                }
+            }
+        }
+        return orderIds;
+    }
+
+    /**
+     * Log of the order's fills, swapped in for its trade list on the first fill so orders that never
+     * trade do not pay for one.
+     */
+    private FillLog fills(OrderEntry order) {
+        if (order.fills == null) {
+            order.fills = new FillLog(order.order.getTrades(), order.buy, priceScale, quantityScale);
+            order.order.setTrades(order.fills);
+        }
+        return order.fills;
+    }
+
+    private void rest(BookSide side, OrderEntry order) {
+        PriceLevel level = side.get(order.price);
+        if (level == null) {
+            level = freeLevels.isEmpty() ? new PriceLevel(order.price) : freeLevels.pop().reset(order.price);
+            side.add(level);
+        }
+        level.add(order);
+        orderIndex.put(order.getId(), order);
+        levelChanged(order.buy, level);
+    }
+
+    /**
+     * Takes an empty level out of the book and keeps it for reuse by the next new price.
+     */
+    private void dropLevel(BookSide side, PriceLevel level) {
+        side.remove(level);
+        if (freeLevels.size() < MAX_FREE_LEVELS) {
+            freeLevels.push(level);
+        }
+    }
+
+    private void unlink(OrderEntry order) {
+        order.level.remove(order);
+        orderIndex.remove(order.getId());
+        order.order.setPendingAmount(pendingAmount(order));
+        listener.onOrderFilled(this, order);
+    }
+
+    private void levelChanged(boolean buy, PriceLevel level) {
+        changed = true;
+        listener.onLevelChanged(this, buy, level);
+    }
+
+    /**
+     * Publishes a new {@link BookView} of the top levels if the book changed since the last one.
+     * Matcher thread only.
+     */
+    public void publishView(int depth) {
+        if (!changed) {
+            return;
+        }
+        changed = false;
+        int bidLevels = Math.min(depth, bids.size());
+        int askLevels = Math.min(depth, asks.size());
+        long[] bidPrices = new long[bidLevels];
+        long[] bidQuantities = new long[bidLevels];
+        int[] bidOrders = new int[bidLevels];
+        long[] askPrices = new long[askLevels];
+        long[] askQuantities = new long[askLevels];
+        int[] askOrders = new int[askLevels];
+        copyLevels(bids, bidPrices, bidQuantities, bidOrders);
+        copyLevels(asks, askPrices, askQuantities, askOrders);
+        view = new BookView(asset, ++viewVersion, priceScale, quantityScale, bidPrices, bidQuantities, bidOrders,
+                askPrices, askQuantities, askOrders);
+    }
+
+    private static void copyLevels(BookSide side, long[] prices, long[] quantities, int[] orders) {
+        int i = 0;
+        for (PriceLevel level : side) {
+            if (i == prices.length) {
+                break;
+            }
+            prices[i] = level.price;
+            quantities[i] = level.totalQuantity;
+            orders[i] = level.orderCount;
+            i++;
+        }
+    }
+
+    /**
+     * Latest published view of the book, safe to read from any thread. Null until the first publish.
+     */
+    public BookView getView() {
+        return view;
+    }
+
+    /**
+     * Fills both orders by the traded amount at the resting order's price and logs the trade on both
+     * of them. Nothing is allocated: the trades only become {@link TradeDto}s when they are read, and
+     * the resting order's pending amount is brought up to date when it leaves the book.
+     */
+    private void recordTrade(OrderEntry incoming, OrderEntry resting, long tradedAmount) {
+        incoming.pending -= tradedAmount;
+        resting.level.fill(resting, tradedAmount);
+
+        int priceDisplayScale = resting.order.getPrice().scale();
+        int amountDisplayScale = Math.max(incoming.order.getAmount().scale(), resting.order.getAmount().scale());
+        int slot = incoming.buy
+                ? tradeLog.append(incoming.getId(), resting.getId(), resting.price, tradedAmount, incoming.timestamp,
+                priceDisplayScale, amountDisplayScale)
+                : tradeLog.append(resting.getId(), incoming.getId(), resting.price, tradedAmount, incoming.timestamp,
+                priceDisplayScale, amountDisplayScale);
+        TradeLog.Chunk chunk = tradeLog.chunk();
+        fills(incoming).add(chunk, slot, incoming.pending);
+        fills(resting).add(chunk, slot, resting.pending);
+        listener.onTrade(this, incoming, resting, tradedAmount);
+    }
+
+    private BigDecimal pendingAmount(OrderEntry order) {
+        return fromUnits(order.pending, quantityScale, order.order.getAmount().scale());
+    }
+
+    /**
+     * Rejects an order that could not rest at its price because its side holds a bounded band of
+     * prices. Checked before the order is journaled, orders that never rest pass.
+     */
+    public void checkPrice(OrderEntry order) {
+        if (order.timeInForce == TimeInForceEnum.GTC && !(order.buy ? bids : asks).accepts(order.price)) {
+            throw new InvalidOrderException("Price is outside the price band of " + asset);
+        }
+    }
+
+    /**
+     * Rejects an amend to a price the order's side could not hold, see {@link #checkPrice(OrderEntry)}.
+     */
+    public void checkAmend(long orderId, BigDecimal price) {
+        OrderEntry order = orderIndex.get(orderId);
+        if (order != null && price != null
+                && !(order.buy ? bids : asks).accepts(toUnits(price, priceScale, "Price"))) {
+            throw new InvalidOrderException("Price is outside the price band of " + asset);
+        }
+    }
+
+    /**
+     * Amends a resting order in one step instead of a cancel and a new order, keeping its id. Cutting
+     * the amount at the same price keeps its place in the queue. A new price or a larger amount sends
+     * it to the back of the queue at its price, matching it first if it now crosses the book.
+     *
+     * @param price  new price, or null to keep it
+     * @param amount new total amount, what already traded included, or null to keep it. An order
+     *               cut to what already traded or less leaves the book as canceled.
+     * @return the amended order, or null if it was not resting in the book. An order that leaves the
+     *         book is reported to the listener as canceled or filled, like one a match takes out.
+     */
+    public OrderResponse amend(long orderId, BigDecimal price, BigDecimal amount) {
+        OrderEntry order = orderIndex.get(orderId);
+        if (order == null) {
+            return null;
+        }
+        OrderDto dto = order.order;
+        long newPrice = price != null ? toUnits(price, priceScale, "Price") : order.price;
+        long leaves = order.pending;
+        if (amount != null) {
+            long filled = toUnits(dto.getAmount(), quantityScale, "Amount") - order.pending;
+            leaves = toUnits(amount, quantityScale, "Amount") - filled;
+            dto.setAmount(amount);
+        }
+        if (price != null) {
+            dto.setPrice(price);
+        }
+
+        if (leaves <= 0) {
+            cancel(orderId);
+            return OrderResponse.builder().order(dto).canceled(true).build();
+        }
+        if (newPrice == order.price && leaves <= order.pending) {
+            PriceLevel level = order.level;
+            level.fill(order, order.pending - leaves);
+            levelChanged(order.buy, level);
+            dto.setPendingAmount(pendingAmount(order));
+            if (order.fills != null) {
+                order.fills.amendLeaves(leaves);
+            }
+            return OrderResponse.builder().order(dto).build();
+        }
+        orderIndex.remove(orderId);
+        unrest(order);
+        order.price = newPrice;
+        order.pending = leaves;
+        dto.setPendingAmount(pendingAmount(order));
+        if (order.fills != null) {
+            order.fills.amendLeaves(leaves);
+        }
+        OrderResponse response = match(order);
+        // Filled or canceled by self-trade prevention as the aggressor instead of resting again
+        if (order.pending == 0) {
+            if (response.isCanceled()) {
+                listener.onOrderCanceled(this, order);
+            } else {
+                listener.onOrderFilled(this, order);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Removes a resting order from its price level in constant time, dropping the level once it is
+     * empty, and reports it to the listener as canceled.
+     *
+     * @return true if the order was still resting in the book
+     */
+    public boolean cancel(long orderId) {
+        OrderEntry order = orderIndex.remove(orderId);
+        if (order == null) {
+            return false;
+        }
+        unrest(order);
+        order.pending = 0;
+        order.order.setPendingAmount(pendingAmount(order));
+        listener.onOrderCanceled(this, order);
+        return true;
+    }
+
+    private void unrest(OrderEntry order) {
+        PriceLevel level = order.level;
+        level.remove(order);
+        levelChanged(order.buy, level);
+        if (level.isEmpty()) {
+            dropLevel(order.buy ? bids : asks, level);
+        }
+    }
+}
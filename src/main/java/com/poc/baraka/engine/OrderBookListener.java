@@ -0,0 +1,41 @@
+package com.poc.baraka.engine;
+
+/**
+ * Callbacks from an {@link OrderBook} as it changes. They run on the matcher thread of the book's
+ * shard, in the middle of matching, so they must be quick, must not block and must copy whatever
+ * they keep: levels and entries go on changing after the call.
+ *
+ * @author Waqas Ahmed
+ */
+public interface OrderBookListener {
+
+    OrderBookListener NONE = new OrderBookListener() {
+    };
+
+    /**
+     * A resting order was filled completely and left the book, also as the aggressor after an amend
+     * re-priced it.
+     */
+    default void onOrderFilled(OrderBook book, OrderEntry order) {
+    }
+
+    /**
+     * A resting order was canceled and left the book: by a cancel command, by an amend cutting it to
+     * what already traded, or by the matcher to prevent a self-trade.
+     */
+    default void onOrderCanceled(OrderBook book, OrderEntry order) {
+    }
+
+    /**
+     * Quantity or order count of a price level changed. An empty level has left the book.
+     */
+    default void onLevelChanged(OrderBook book, boolean buy, PriceLevel level) {
+    }
+
+    /**
+     * The incoming order traded against a resting order, at the resting order's price. The trade is
+     * already logged, {@link OrderBook#getLastTradeId()} is its id.
+     */
+    default void onTrade(OrderBook book, OrderEntry incoming, OrderEntry resting, long quantity) {
+    }
+}
@@ -0,0 +1,111 @@
+package com.poc.baraka.engine;
+
+import com.poc.baraka.dto.OrderResponse;
+import com.poc.baraka.journal.BookSnapshot;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A slot of the {@link CommandRingBuffer}. Slots are allocated once with the ring and reused, producers
+ * fill them in place and the matcher thread clears them once the command is done.
+ *
+ * @author Waqas Ahmed
+ */
+public class OrderCommand {
+
+    public enum Type {
+        PLACE,
+        CANCEL,
+        /**
+         * Changes the price or amount of a resting order.
+         */
+        AMEND,
+        /**
+         * Puts orders loaded from a snapshot back into a book.
+         */
+        RESTORE,
+        /**
+         * Copies every book of the shard at this point in the command stream.
+         */
+        SNAPSHOT,
+        /**
+         * Several place/cancel commands applied back to back, as one unit of the command stream.
+         */
+        BATCH,
+        /**
+         * Cancels every order resting in one book.
+         */
+        CANCEL_ALL
+    }
+
+    Type type;
+    String asset;
+    OrderEntry order;
+    long orderId;
+    // New price and amount of an amend, null to keep them
+    BigDecimal price;
+    BigDecimal amount;
+    // Set while rebuilding from the journal, such commands are not journaled again
+    boolean replay;
+    CompletableFuture<OrderResponse> completion;
+    List<OrderEntry> restored;
+    // Latest trade id of the restored book
+    long lastTradeId;
+    CompletableFuture<List<BookSnapshot>> snapshot;
+    List<OrderCommand> batch;
+    CompletableFuture<List<OrderResponse>> batchCompletion;
+    // System.nanoTime() when the producer published the slot
+    long publishedAt;
+    // Why the matcher rejected this item of a batch, null if it was applied
+    String rejection;
+
+    void clear() {
+        type = null;
+        asset = null;
+        order = null;
+        orderId = 0;
+        price = null;
+        amount = null;
+        replay = false;
+        completion = null;
+        restored = null;
+        lastTradeId = 0;
+        snapshot = null;
+        batch = null;
+        batchCompletion = null;
+        publishedAt = 0;
+        rejection = null;
+    }
+
+    /**
+     * Why the matcher rejected this item of a batch, such as a price outside the book's band, or null
+     * if it was applied. Read once the batch completed.
+     */
+    public String getRejection() {
+        return rejection;
+    }
+
+    /**
+     * A place command to go into a {@link Type#BATCH}, not into a ring slot.
+     */
+    public static OrderCommand place(OrderEntry order) {
+        OrderCommand command = new OrderCommand();
+        command.type = Type.PLACE;
+        command.asset = order.getOrder().getAsset();
+        command.order = order;
+        return command;
+    }
+
+    /**
+     * A cancel command to go into a {@link Type#BATCH}, not into a ring slot.
+     */
+    public static OrderCommand cancel(String asset, long orderId) {
+        OrderCommand command = new OrderCommand();
+        command.type = Type.CANCEL;
+        command.asset = asset;
+        command.orderId = orderId;
+        return command;
+    }
+}
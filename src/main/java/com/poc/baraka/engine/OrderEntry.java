@@ -0,0 +1,109 @@
+package com.poc.baraka.engine;
+
+import com.poc.baraka.dto.OrderDto;
+import com.poc.baraka.enums.SelfTradePreventionEnum;
+import com.poc.baraka.enums.TimeInForceEnum;
+
+import java.time.Instant;
+
+/**
+ * Engine side view of an order. Price and amounts are held as scaled {@code long} units so the match
+ * loop never touches {@link java.math.BigDecimal}; the wrapped {@link OrderDto} is only updated with
+ * converted values when the order's state is reported back.
+ * <p>
+ * A market order is entered at {@link #marketPrice(boolean) the far end of the price range} with an
+ * immediate time in force, so it crosses every level and never rests.
+ * <p>
+ * The account is a plain {@code long}, 0 for none, so the match loop spots a self-trade with one
+ * comparison.
+ *
+ * @author Waqas Ahmed
+ */
+public class OrderEntry {
+
+    final OrderDto order;
+    final boolean buy;
+    long price;
+    final TimeInForceEnum timeInForce;
+    final long account;
+    final SelfTradePreventionEnum selfTradePrevention;
+    // Epoch millis the order was entered at, its trades as the incoming order are stamped with it
+    final long timestamp;
+    long pending;
+    FillLog fills;
+
+    // Intrusive links, only set while the order rests in the book
+    PriceLevel level;
+    OrderEntry prev;
+    OrderEntry next;
+
+    public OrderEntry(OrderDto order, boolean buy, long price, long pending) {
+        this(order, buy, price, pending, TimeInForceEnum.GTC);
+    }
+
+    public OrderEntry(OrderDto order, boolean buy, long price, long pending, TimeInForceEnum timeInForce) {
+        this(order, buy, price, pending, timeInForce, 0, SelfTradePreventionEnum.CANCEL_NEWEST);
+    }
+
+    public OrderEntry(OrderDto order, boolean buy, long price, long pending, TimeInForceEnum timeInForce,
+                      long account, SelfTradePreventionEnum selfTradePrevention) {
+        this.order = order;
+        this.buy = buy;
+        this.price = price;
+        this.pending = pending;
+        this.timeInForce = timeInForce;
+        this.account = account;
+        this.selfTradePrevention = selfTradePrevention;
+        this.timestamp = order.getTimestamp() != null ? Instant.parse(order.getTimestamp()).toEpochMilli() : 0;
+    }
+
+    /**
+     * Limit price of a market order: any ask is acceptable to a buy, any bid to a sell.
+     */
+    public static long marketPrice(boolean buy) {
+        return buy ? Long.MAX_VALUE : Long.MIN_VALUE;
+    }
+
+    public OrderDto getOrder() {
+        return order;
+    }
+
+    public long getId() {
+        return order.getId();
+    }
+
+    public boolean isBuy() {
+        return buy;
+    }
+
+    public long getPrice() {
+        return price;
+    }
+
+    public TimeInForceEnum getTimeInForce() {
+        return timeInForce;
+    }
+
+    public long getAccount() {
+        return account;
+    }
+
+    public SelfTradePreventionEnum getSelfTradePrevention() {
+        return selfTradePrevention;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getPending() {
+        return pending;
+    }
+
+    /**
+     * Order behind this one at its price level, null at the back or when it does not rest.
+     */
+    public OrderEntry getNext() {
+        return next;
+    }
+}
@@ -0,0 +1,94 @@
+package com.poc.baraka.engine;
+
+/**
+ * All orders resting at one price, in time priority. The orders themselves are the links of an
+ * intrusive doubly-linked list, so an order can be unlinked in constant time given its entry.
+ *
+ * @author Waqas Ahmed
+ */
+public class PriceLevel {
+
+    long price;
+    OrderEntry head;
+    OrderEntry tail;
+    int orderCount;
+    long totalQuantity;
+
+    public PriceLevel(long price) {
+        this.price = price;
+    }
+
+    /**
+     * Readies an emptied level for reuse at another price.
+     */
+    PriceLevel reset(long price) {
+        this.price = price;
+        return this;
+    }
+
+    public long getPrice() {
+        return price;
+    }
+
+    public OrderEntry getHead() {
+        return head;
+    }
+
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    public long getTotalQuantity() {
+        return totalQuantity;
+    }
+
+    public boolean isEmpty() {
+        return head == null;
+    }
+
+    /**
+     * Appends the order at the back of the queue.
+     */
+    void add(OrderEntry order) {
+        order.level = this;
+        order.prev = tail;
+        order.next = null;
+        if (tail == null) {
+            head = order;
+        } else {
+            tail.next = order;
+        }
+        tail = order;
+        orderCount++;
+        totalQuantity += order.pending;
+    }
+
+    /**
+     * Unlinks the order from wherever it is in the queue.
+     */
+    void remove(OrderEntry order) {
+        if (order.prev == null) {
+            head = order.next;
+        } else {
+            order.prev.next = order.next;
+        }
+        if (order.next == null) {
+            tail = order.prev;
+        } else {
+            order.next.prev = order.prev;
+        }
+        order.prev = null;
+        order.next = null;
+        order.level = null;
+        orderCount--;
+        totalQuantity -= order.pending;
+    }
+
+    /**
+     * Takes a filled amount off a resting order, keeping the level total in step.
+     */
+    void fill(OrderEntry order, long amount) {
+        order.pending -= amount;
+        totalQuantity -= amount;
+    }
+}
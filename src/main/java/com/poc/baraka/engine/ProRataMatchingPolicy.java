@@ -0,0 +1,66 @@
+package com.poc.baraka.engine;
+
+import java.math.BigInteger;
+
+/**
+ * Shares an incoming order that does not take the whole level among its orders in proportion to their
+ * size: each one gets {@code quantity * pending / total} lots, rounded down. A share below the minimum
+ * allocation is not given, and what rounding and the minimum leave over goes to the queue in time
+ * priority, as {@link FifoMatchingPolicy} would.
+ * <p>
+ * The shares are worked out against the level's running total as it stood when the order came in, in
+ * one pass down the queue, so nothing is sorted or copied. An order that takes the whole level fills
+ * every order in full either way.
+ *
+ * @author Waqas Ahmed
+ */
+final class ProRataMatchingPolicy implements MatchingPolicy {
+
+    private final long minAllocation;
+
+    /**
+     * @param minAllocation smallest share given to a resting order, in lots
+     */
+    ProRataMatchingPolicy(long minAllocation) {
+        this.minAllocation = Math.max(1, minAllocation);
+    }
+
+    @Override
+    public void match(PriceLevel level, long quantity, LevelFills fills) {
+        long total = level.totalQuantity;
+        long left = quantity;
+        if (quantity < total) {
+            OrderEntry resting = level.head;
+            while (resting != null && left > 0) {
+                // Filling an order can unlink it, its share is read before
+                OrderEntry next = resting.next;
+                long share = share(resting.pending, quantity, total);
+                if (share >= minAllocation) {
+                    left = fills.fill(resting, Math.min(share, left));
+                }
+                resting = next;
+            }
+        }
+        FIFO.match(level, left, fills);
+    }
+
+    /**
+     * A share can go to any order of the level, however far back in the queue.
+     */
+    @Override
+    public boolean fillsInTimeOrder() {
+        return false;
+    }
+
+    /**
+     * {@code pending * quantity / total} rounded down, both factors being at most the total.
+     */
+    static long share(long pending, long quantity, long total) {
+        long product = pending * quantity;
+        if (Math.multiplyHigh(pending, quantity) == 0 && product >= 0) {
+            return product / total;
+        }
+        return BigInteger.valueOf(pending).multiply(BigInteger.valueOf(quantity))
+                .divide(BigInteger.valueOf(total)).longValue();
+    }
+}
@@ -0,0 +1,63 @@
+package com.poc.baraka.engine;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Levels in a skip list sorted best price first. Holds any price, at a logarithmic cost per lookup.
+ *
+ * @author Waqas Ahmed
+ */
+final class SkipListBookSide implements BookSide {
+
+    private final NavigableMap<Long, PriceLevel> levels;
+
+    /**
+     * @param buy true for the bid side, sorted highest price first
+     */
+    SkipListBookSide(boolean buy) {
+        this.levels = buy ? new ConcurrentSkipListMap<>(Comparator.reverseOrder()) : new ConcurrentSkipListMap<>();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return levels.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return levels.size();
+    }
+
+    @Override
+    public PriceLevel best() {
+        return levels.isEmpty() ? null : levels.get(levels.firstKey());
+    }
+
+    @Override
+    public PriceLevel get(long price) {
+        return levels.get(price);
+    }
+
+    @Override
+    public boolean accepts(long price) {
+        return true;
+    }
+
+    @Override
+    public void add(PriceLevel level) {
+        levels.put(level.price, level);
+    }
+
+    @Override
+    public void remove(PriceLevel level) {
+        levels.remove(level.price);
+    }
+
+    @Override
+    public Iterator<PriceLevel> iterator() {
+        return levels.values().iterator();
+    }
+}
@@ -0,0 +1,99 @@
+package com.poc.baraka.engine;
+
+/**
+ * Columnar log of the trades of one book. Every trade is written once, as {@code long} columns of a
+ * fixed size chunk, and both orders of the trade only keep a reference to its slot in their
+ * {@link FillLog}. Trade ids count up per book from 1, in matching order.
+ * <p>
+ * The log only holds on to the chunk being filled. A full chunk stays reachable for as long as an
+ * order that traded in it does, in the order store or its finished cache, and is collected after.
+ * <p>
+ * Only the matcher thread of the book's shard appends. A slot is complete before the fill logs that
+ * point to it publish their new size, so readers of a fill log always see whole trades.
+ *
+ * @author Waqas Ahmed
+ */
+final class TradeLog {
+
+    static final int CHUNK_SIZE = 1024;
+
+    private Chunk chunk;
+    private long nextTradeId = 1;
+
+    /**
+     * Appends a trade to the current chunk, starting a new one when it is full.
+     *
+     * @return slot of the trade in {@link #chunk()}
+     */
+    int append(long buyOrderId, long sellOrderId, long price, long quantity, long time, int priceDisplayScale,
+               int amountDisplayScale) {
+        Chunk c = chunk;
+        if (c == null || c.size == CHUNK_SIZE) {
+            c = new Chunk(nextTradeId);
+            chunk = c;
+        }
+        int slot = c.size++;
+        c.buyers[slot] = buyOrderId;
+        c.sellers[slot] = sellOrderId;
+        c.prices[slot] = price;
+        c.quantities[slot] = quantity;
+        c.times[slot] = time;
+        c.scales[slot] = ((long) priceDisplayScale << 32) | (amountDisplayScale & 0xFFFFFFFFL);
+        nextTradeId++;
+        return slot;
+    }
+
+    /**
+     * Chunk the latest trade went to.
+     */
+    Chunk chunk() {
+        return chunk;
+    }
+
+    /**
+     * Id of the latest trade, 0 before the first one.
+     */
+    long lastTradeId() {
+        return nextTradeId - 1;
+    }
+
+    /**
+     * Continues the ids after a snapshot, only before the first trade of the book.
+     */
+    void resume(long lastTradeId) {
+        nextTradeId = lastTradeId + 1;
+    }
+
+    /**
+     * Up to {@link #CHUNK_SIZE} consecutive trades, one array per field.
+     */
+    static final class Chunk {
+
+        final long firstTradeId;
+        final long[] buyers = new long[CHUNK_SIZE];
+        final long[] sellers = new long[CHUNK_SIZE];
+        final long[] prices = new long[CHUNK_SIZE];
+        final long[] quantities = new long[CHUNK_SIZE];
+        // Epoch millis of the incoming order
+        final long[] times = new long[CHUNK_SIZE];
+        // Display scales of price and amount, as the orders were entered
+        final long[] scales = new long[CHUNK_SIZE];
+        private int size;
+
+        private Chunk(long firstTradeId) {
+            this.firstTradeId = firstTradeId;
+        }
+
+        long tradeId(int slot) {
+            return firstTradeId + slot;
+        }
+
+        int priceDisplayScale(int slot) {
+            return (int) (scales[slot] >> 32);
+        }
+
+        int amountDisplayScale(int slot) {
+            return (int) scales[slot];
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.poc.baraka.enums;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * What an execution report tells about its order: NEW once it rests in the book, TRADE for every fill,
+ * then one of FILLED, CANCELED or REJECTED when it is done.
+ */
+@Schema(description = "Type of an execution report", allowableValues = {"NEW", "TRADE", "FILLED", "CANCELED", "REJECTED"})
+public enum ExecutionTypeEnum {
+    NEW,
+    TRADE,
+    FILLED,
+    CANCELED,
+    REJECTED;
+}
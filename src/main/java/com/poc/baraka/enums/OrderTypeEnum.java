@@ -0,0 +1,9 @@
+package com.poc.baraka.enums;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Type of the order", allowableValues = {"LIMIT", "MARKET"})
+public enum OrderTypeEnum {
+    LIMIT,
+    MARKET;
+}
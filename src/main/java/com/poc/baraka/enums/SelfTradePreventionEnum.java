@@ -0,0 +1,16 @@
+package com.poc.baraka.enums;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * What the matcher does when an incoming order meets a resting order of the same account, instead
+ * of trading: CANCEL_NEWEST cancels the rest of the incoming order, CANCEL_OLDEST cancels the resting
+ * order and matching goes on, DECREMENT_BOTH takes the smaller amount off both without a trade.
+ */
+@Schema(description = "Self-trade prevention of the order", allowableValues = {"CANCEL_NEWEST", "CANCEL_OLDEST",
+        "DECREMENT_BOTH"})
+public enum SelfTradePreventionEnum {
+    CANCEL_NEWEST,
+    CANCEL_OLDEST,
+    DECREMENT_BOTH;
+}
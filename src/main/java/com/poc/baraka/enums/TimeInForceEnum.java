@@ -0,0 +1,14 @@
+package com.poc.baraka.enums;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * How long an order stays in the book: GTC rests until filled or canceled, IOC fills what it can and
+ * drops the rest, FOK fills completely or not at all.
+ */
+@Schema(description = "Time in force of the order", allowableValues = {"GTC", "IOC", "FOK"})
+public enum TimeInForceEnum {
+    GTC,
+    IOC,
+    FOK;
+}
@@ -0,0 +1,14 @@
+package com.poc.baraka.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * @author Waqas Ahmed
+ */
+@ResponseStatus(code = HttpStatus.BAD_REQUEST)
+public class InvalidOrderException extends RuntimeException {
+    public InvalidOrderException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.poc.baraka.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when an order reaches a standby replica, which takes none until it is promoted.
+ *
+ * @author Waqas Ahmed
+ */
+@ResponseStatus(code = HttpStatus.SERVICE_UNAVAILABLE)
+public class NotPrimaryException extends RuntimeException {
+    public NotPrimaryException(String message) {
+        super(message);
+    }
+}
@@ -75,6 +75,26 @@ public class RestErrorHandler {
                 .entity();
     }
 
+    @ExceptionHandler(InvalidOrderException.class)
+    public ResponseEntity<RestResponse> handleInvalidOrderException(InvalidOrderException ex, WebRequest request) {
+        log.warn(ex.getMessage());
+        return RestResponse.builder()
+                .status(HttpStatus.BAD_REQUEST)
+                .message(ex.getMessage())
+                .path(getPath(request))
+                .entity();
+    }
+
+    @ExceptionHandler(NotPrimaryException.class)
+    public ResponseEntity<RestResponse> handleNotPrimaryException(NotPrimaryException ex, WebRequest request) {
+        log.warn(ex.getMessage());
+        return RestResponse.builder()
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .message(ex.getMessage())
+                .path(getPath(request))
+                .entity();
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<RestResponse> handleAllExceptions(Exception ex, WebRequest request) {
         log.error("Unhandled exception", ex);
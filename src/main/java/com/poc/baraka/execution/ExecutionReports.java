@@ -0,0 +1,373 @@
+package com.poc.baraka.execution;
+
+import com.poc.baraka.config.MatchingEngineProperties;
+import com.poc.baraka.dto.ExecutionReportDto;
+import com.poc.baraka.dto.OrderResponse;
+import com.poc.baraka.engine.OrderBook;
+import com.poc.baraka.engine.OrderBookListener;
+import com.poc.baraka.engine.OrderEntry;
+import com.poc.baraka.enums.ExecutionTypeEnum;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.poc.baraka.utils.DecimalUtils.fromUnits;
+
+/**
+ * Execution reports of the orders placed through the asynchronous order API, kept per client until it
+ * polls for them. An order gets a NEW report once it rests, a TRADE report per fill and a last FILLED,
+ * CANCELED or REJECTED one; reports are built on the matcher thread as the fills happen.
+ * <p>
+ * Every client has its own report sequence and keeps its latest {@code maxReports} reports in a ring
+ * that grows up to that size as reports come in, a client polling too slowly sees a jump in the
+ * sequence. A client without open orders or polls is forgotten after the idle timeout.
+ *
+ * @author Waqas Ahmed
+ */
+@Component
+public class ExecutionReports implements OrderBookListener {
+
+    private static final int INITIAL_REPORTS = 16;
+
+    private final MatchingEngineProperties properties;
+    private final int maxReports;
+    private final long maxPollMs;
+    private final long idleMillis;
+    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+    private final Map<Long, Tracked> orders = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong(System.currentTimeMillis());
+
+    public ExecutionReports(MatchingEngineProperties properties) {
+        this.properties = properties;
+        this.maxReports = Math.max(1, properties.getExecutions().getMaxReports());
+        this.maxPollMs = properties.getExecutions().getMaxPollMs();
+        this.idleMillis = TimeUnit.SECONDS.toMillis(properties.getExecutions().getIdleClientSeconds());
+    }
+
+    /**
+     * Tracks a new order of the client, before the order is published to its shard. Its NEW, FILLED,
+     * CANCELED or REJECTED report goes out when the completion handle is completed, which the matcher
+     * does before the order can trade as a resting order.
+     *
+     * @return the client's latest report sequence, the reports of the order all come after it
+     */
+    public long track(String clientId, OrderEntry order, CompletableFuture<OrderResponse> completion) {
+        long now = System.currentTimeMillis();
+        sweep(now);
+        Client client = clients.compute(clientId, (id, existing) -> {
+            Client c = existing != null ? existing : new Client();
+            c.opened(now);
+            return c;
+        });
+        Tracked tracked = new Tracked(client);
+        orders.put(order.getId(), tracked);
+        completion.whenComplete((response, error) -> placed(tracked, order, response, error));
+        return client.lastSequence();
+    }
+
+    /**
+     * Stops tracking an order that never reached its shard, nothing is reported for it.
+     */
+    public void release(long orderId) {
+        Tracked tracked = orders.remove(orderId);
+        if (tracked != null) {
+            tracked.client.closed(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Reports of the client after the given sequence, oldest first. If there are none yet, the future
+     * completes with the next ones or with an empty list once the timeout, capped at {@code maxPollMs},
+     * is over. A client only becomes known with its first order, polls of an unknown one get an empty
+     * list right away.
+     */
+    public CompletableFuture<List<ExecutionReportDto>> poll(String clientId, long after, int limit, long timeoutMs) {
+        long now = System.currentTimeMillis();
+        sweep(now);
+        Client client = clients.computeIfPresent(clientId, (id, existing) -> {
+            existing.touch(now);
+            return existing;
+        });
+        if (client == null) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        return client.poll(after, limit, Math.min(timeoutMs, maxPollMs));
+    }
+
+    int size() {
+        return orders.size();
+    }
+
+    int clientCount() {
+        return clients.size();
+    }
+
+    @Override
+    public void onTrade(OrderBook book, OrderEntry incoming, OrderEntry resting, long quantity) {
+        Tracked taker = orders.get(incoming.getId());
+        if (taker != null) {
+            // Fills on entry come ahead of the placement report
+            taker.client.append(trade(book, incoming, resting, resting.getPrice(), quantity));
+        }
+        Tracked maker = orders.get(resting.getId());
+        if (maker != null) {
+            maker.restingFill(trade(book, resting, incoming, resting.getPrice(), quantity), resting.getPending() + quantity);
+        }
+    }
+
+    @Override
+    public void onOrderFilled(OrderBook book, OrderEntry order) {
+        finish(order, ExecutionTypeEnum.FILLED);
+    }
+
+    /**
+     * Reports a resting order canceled, whichever way it was canceled.
+     */
+    @Override
+    public void onOrderCanceled(OrderBook book, OrderEntry order) {
+        finish(order, ExecutionTypeEnum.CANCELED);
+    }
+
+    private void finish(OrderEntry order, ExecutionTypeEnum type) {
+        Tracked tracked = orders.remove(order.getId());
+        if (tracked == null) {
+            return;
+        }
+        tracked.report(done(order.getId(), order.getOrder().getAsset(), type));
+        if (tracked.placed) {
+            tracked.client.closed(System.currentTimeMillis());
+        } else {
+            tracked.finished = true;
+        }
+    }
+
+    /**
+     * Reports how the placement of an order ended, on the matcher thread, then what it did since as a
+     * resting order if its completion was held for synchronous replication.
+     */
+    private void placed(Tracked tracked, OrderEntry order, OrderResponse response, Throwable error) {
+        Client client = tracked.client;
+        tracked.placed = true;
+        long leaves = tracked.placedLeaves >= 0 ? tracked.placedLeaves : order.getPending();
+        String asset = order.getOrder().getAsset();
+        ExecutionReportDto.ExecutionReportDtoBuilder report;
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            report = ExecutionReportDto.builder()
+                    .orderId(order.getId())
+                    .asset(asset)
+                    .type(ExecutionTypeEnum.REJECTED.name())
+                    .reason(cause.getMessage());
+        } else if (response.isCanceled()) {
+            report = done(order.getId(), asset, ExecutionTypeEnum.CANCELED);
+        } else if (leaves == 0) {
+            report = done(order.getId(), asset, ExecutionTypeEnum.FILLED);
+        } else {
+            client.append(ExecutionReportDto.builder()
+                    .orderId(order.getId())
+                    .asset(asset)
+                    .type(ExecutionTypeEnum.NEW.name())
+                    .pendingAmount(fromUnits(leaves, properties.asset(asset).getQuantityScale(), 0)));
+            if (tracked.held != null) {
+                tracked.held.forEach(client::append);
+                tracked.held = null;
+            }
+            if (tracked.finished) {
+                client.closed(System.currentTimeMillis());
+            }
+            return;
+        }
+        orders.remove(order.getId());
+        client.append(report);
+        client.closed(System.currentTimeMillis());
+    }
+
+    private static ExecutionReportDto.ExecutionReportDtoBuilder trade(OrderBook book, OrderEntry order,
+                                                                      OrderEntry counter, long price, long quantity) {
+        return ExecutionReportDto.builder()
+                .orderId(order.getId())
+                .asset(book.getAsset())
+                .type(ExecutionTypeEnum.TRADE.name())
+                .price(fromUnits(price, book.getPriceScale(), 0))
+                .amount(fromUnits(quantity, book.getQuantityScale(), 0))
+                .counterOrderId(counter.getId())
+                .pendingAmount(fromUnits(order.getPending(), book.getQuantityScale(), 0));
+    }
+
+    private static ExecutionReportDto.ExecutionReportDtoBuilder done(long orderId, String asset, ExecutionTypeEnum type) {
+        return ExecutionReportDto.builder()
+                .orderId(orderId)
+                .asset(asset)
+                .type(type.name())
+                .pendingAmount(BigDecimal.ZERO);
+    }
+
+    /**
+     * Forgets idle clients, at most twice per idle timeout.
+     */
+    private void sweep(long now) {
+        long last = lastSweep.get();
+        if (now - last < idleMillis / 2 || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        for (String clientId : clients.keySet()) {
+            clients.computeIfPresent(clientId, (id, client) -> client.isIdle(now) ? null : client);
+        }
+    }
+
+    /**
+     * Report ring and pending polls of one client. Reports are appended by the matcher threads of the
+     * shards its orders are on and read by the polling request threads, all under the client's lock.
+     */
+    private final class Client {
+
+        ExecutionReportDto[] reports = new ExecutionReportDto[Math.min(INITIAL_REPORTS, maxReports)];
+        final List<Waiter> waiters = new ArrayList<>();
+        long lastSequence;
+        int openOrders;
+        long lastUsed;
+
+        synchronized long lastSequence() {
+            return lastSequence;
+        }
+
+        synchronized void opened(long now) {
+            openOrders++;
+            lastUsed = now;
+        }
+
+        synchronized void closed(long now) {
+            openOrders--;
+            lastUsed = now;
+        }
+
+        synchronized void touch(long now) {
+            lastUsed = now;
+        }
+
+        synchronized boolean isIdle(long now) {
+            return openOrders == 0 && waiters.isEmpty() && now - lastUsed > idleMillis;
+        }
+
+        void append(ExecutionReportDto.ExecutionReportDtoBuilder report) {
+            List<Waiter> ready;
+            List<List<ExecutionReportDto>> results;
+            synchronized (this) {
+                if (lastSequence >= reports.length && reports.length < maxReports) {
+                    grow();
+                }
+                lastSequence++;
+                reports[(int) (lastSequence % reports.length)] = report.sequence(lastSequence)
+                        .timestamp(System.currentTimeMillis())
+                        .build();
+                if (waiters.isEmpty()) {
+                    return;
+                }
+                ready = new ArrayList<>(waiters.size());
+                results = new ArrayList<>(waiters.size());
+                // A poll from further ahead, e.g. of a client that restarted, keeps waiting
+                for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+                    Waiter waiter = it.next();
+                    if (waiter.after < lastSequence) {
+                        ready.add(waiter);
+                        results.add(read(waiter.after, waiter.limit));
+                        it.remove();
+                    }
+                }
+            }
+            // Completing a poll dispatches its response, which is kept out of the lock
+            for (int i = 0; i < ready.size(); i++) {
+                ready.get(i).future.complete(results.get(i));
+            }
+        }
+
+        CompletableFuture<List<ExecutionReportDto>> poll(long after, int limit, long timeoutMs) {
+            Waiter waiter;
+            synchronized (this) {
+                if (after < lastSequence || timeoutMs <= 0) {
+                    return CompletableFuture.completedFuture(read(after, limit));
+                }
+                waiter = new Waiter(after, limit, new CompletableFuture<>());
+                waiters.add(waiter);
+            }
+            waiter.future.completeOnTimeout(List.of(), timeoutMs, TimeUnit.MILLISECONDS);
+            waiter.future.whenComplete((result, error) -> {
+                synchronized (this) {
+                    waiters.remove(waiter);
+                    lastUsed = System.currentTimeMillis();
+                }
+            });
+            return waiter.future;
+        }
+
+        /**
+         * Doubles a full ring, up to {@code maxReports}, keeping every report.
+         */
+        private void grow() {
+            ExecutionReportDto[] grown = new ExecutionReportDto[(int) Math.min((long) reports.length * 2, maxReports)];
+            for (long sequence = lastSequence - reports.length + 1; sequence <= lastSequence; sequence++) {
+                grown[(int) (sequence % grown.length)] = reports[(int) (sequence % reports.length)];
+            }
+            reports = grown;
+        }
+
+        private List<ExecutionReportDto> read(long after, int limit) {
+            long from = Math.max(Math.max(after, 0), lastSequence - reports.length) + 1;
+            long to = Math.min(lastSequence, from + limit - 1);
+            List<ExecutionReportDto> result = new ArrayList<>((int) Math.max(0, to - from + 1));
+            for (long sequence = from; sequence <= to; sequence++) {
+                result.add(reports[(int) (sequence % reports.length)]);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * An order of a client. Once it is published only the matcher thread of its shard touches it.
+     */
+    private static final class Tracked {
+
+        final Client client;
+        // Reports of the order as a resting one, held until its placement is reported. That only happens
+        // when its completion was held for synchronous replication.
+        List<ExecutionReportDto.ExecutionReportDtoBuilder> held;
+        boolean placed;
+        boolean finished;
+        // Amount left on the order once placed, taken from its first fill as a resting order before that
+        long placedLeaves = -1;
+
+        Tracked(Client client) {
+            this.client = client;
+        }
+
+        void restingFill(ExecutionReportDto.ExecutionReportDtoBuilder trade, long leavesBefore) {
+            if (!placed && placedLeaves < 0) {
+                placedLeaves = leavesBefore;
+            }
+            report(trade);
+        }
+
+        void report(ExecutionReportDto.ExecutionReportDtoBuilder report) {
+            if (placed) {
+                client.append(report);
+                return;
+            }
+            if (held == null) {
+                held = new ArrayList<>();
+            }
+            held.add(report);
+        }
+    }
+
+    private record Waiter(long after, int limit, CompletableFuture<List<ExecutionReportDto>> future) {
+    }
+}
@@ -0,0 +1,394 @@
+package com.poc.baraka.gateway;
+
+import com.poc.baraka.common.IdGenerator;
+import com.poc.baraka.config.MatchingEngineProperties;
+import com.poc.baraka.dto.OrderDto;
+import com.poc.baraka.dto.OrderResponse;
+import com.poc.baraka.engine.OrderEntry;
+import com.poc.baraka.enums.OrderDirectionEnum;
+import com.poc.baraka.enums.OrderTypeEnum;
+import com.poc.baraka.enums.SelfTradePreventionEnum;
+import com.poc.baraka.enums.TimeInForceEnum;
+import com.poc.baraka.helper.MatchingEngineHelper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static com.poc.baraka.gateway.GatewayProtocol.*;
+import static com.poc.baraka.utils.DecimalUtils.fromUnits;
+
+/**
+ * Low latency order entry over plain TCP, next to the REST API. Messages use the fixed binary layout
+ * of {@link GatewayProtocol} and are decoded straight into engine orders in ticks and lots, with no
+ * JSON, bean validation or request DTO on the way.
+ * <p>
+ * A single selector thread accepts, reads and writes every session. Commands are handed to the
+ * shards without waiting: acks and fills are queued from the matcher threads and written out by the
+ * selector thread. Orders of a session that disconnects stay in the book.
+ *
+ * @author Waqas Ahmed
+ */
+@Component
+public class BinaryOrderGateway {
+
+    private static final Logger log = LoggerFactory.getLogger(BinaryOrderGateway.class);
+
+    private final MatchingEngineProperties properties;
+    private final IdGenerator idGenerator;
+    private final MatchingEngineHelper matchingEngine;
+    private final ExecutionRouter router;
+    private final int maxQueuedBytes;
+    private final int maxSymbols;
+    private final Queue<GatewaySession> pendingFlushes = new ConcurrentLinkedQueue<>();
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    // Only accessed from the selector thread, symbols by their 8 raw bytes
+    private final Map<Long, String> symbols = new HashMap<>();
+    // Symbols in the cache that are not configured assets
+    private int unconfiguredSymbols;
+
+    public BinaryOrderGateway(MatchingEngineProperties properties, IdGenerator idGenerator,
+                              MatchingEngineHelper matchingEngine, ExecutionRouter router) {
+        this.properties = properties;
+        this.idGenerator = idGenerator;
+        this.matchingEngine = matchingEngine;
+        this.router = router;
+        MatchingEngineProperties.Gateway settings = properties.getGateway();
+        this.maxQueuedBytes = settings.getMaxQueuedBytes();
+        this.maxSymbols = settings.getMaxSymbols();
+        if (!settings.isEnabled()) {
+            this.selector = null;
+            this.server = null;
+            this.thread = null;
+            return;
+        }
+        try {
+            this.selector = Selector.open();
+            this.server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(settings.getPort()));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the order gateway on port " + settings.getPort(), e);
+        }
+        this.thread = new Thread(this::run, "order-gateway");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        log.info("Binary order gateway listening on port {}", getPort());
+    }
+
+    /**
+     * Port the gateway listens on, or -1 if it is disabled.
+     */
+    public int getPort() {
+        try {
+            return server != null ? ((InetSocketAddress) server.getLocalAddress()).getPort() : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                selector.select();
+                GatewaySession pending;
+                while ((pending = pendingFlushes.poll()) != null) {
+                    flush(pending);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    GatewaySession session = (GatewaySession) key.attachment();
+                    if (key.isValid() && key.isWritable()) {
+                        flush(session);
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        read(session);
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    log.error("Order gateway selector failed", e);
+                }
+            } catch (RuntimeException e) {
+                log.error("Order gateway failed", e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new GatewaySession(channel, key, maxQueuedBytes, this::scheduleFlush));
+        log.debug("Gateway session opened from {}", channel.getRemoteAddress());
+    }
+
+    private void scheduleFlush(GatewaySession session) {
+        pendingFlushes.add(session);
+        selector.wakeup();
+    }
+
+    private void flush(GatewaySession session) {
+        if (session.isClosed()) {
+            return;
+        }
+        try {
+            boolean done = session.flush();
+            session.key.interestOps(done ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            close(session, e.getMessage());
+        }
+    }
+
+    /**
+     * Reads what the socket has and handles every complete frame, keeping a partial one for later.
+     */
+    private void read(GatewaySession session) {
+        ByteBuffer in = session.in;
+        try {
+            if (session.channel.read(in) < 0) {
+                close(session, "closed by client");
+                return;
+            }
+        } catch (IOException e) {
+            close(session, e.getMessage());
+            return;
+        }
+        in.flip();
+        while (in.remaining() >= HEADER_LENGTH) {
+            int offset = in.position();
+            int length = in.getShort(offset) & 0xFFFF;
+            if (length < HEADER_LENGTH) {
+                close(session, "bad frame length " + length);
+                return;
+            }
+            if (in.remaining() < length) {
+                break;
+            }
+            handle(session, in, offset, length);
+            in.position(offset + length);
+        }
+        in.compact();
+    }
+
+    private void handle(GatewaySession session, ByteBuffer in, int offset, int length) {
+        byte templateId = in.get(offset + 2);
+        if (in.get(offset + 3) != VERSION) {
+            session.send(reject(0, -1, REJECT_INVALID_MESSAGE));
+        } else if (templateId == NEW_ORDER && length == NEW_ORDER_LENGTH) {
+            onNewOrder(session, in, offset);
+        } else if (templateId == CANCEL && length == CANCEL_LENGTH) {
+            onCancel(session, in, offset);
+        } else {
+            session.send(reject(length >= HEADER_LENGTH + 8 ? in.getLong(offset + HEADER_LENGTH) : 0, -1,
+                    REJECT_INVALID_MESSAGE));
+        }
+    }
+
+    private void onNewOrder(GatewaySession session, ByteBuffer in, int offset) {
+        long clientOrderId = in.getLong(offset + 4);
+        String asset = symbol(in, offset + 12);
+        byte side = in.get(offset + 20);
+        byte type = in.get(offset + 21);
+        byte timeInForce = in.get(offset + 22);
+        long price = in.getLong(offset + 23);
+        long quantity = in.getLong(offset + 31);
+        long account = in.getLong(offset + 39);
+        byte selfTradePrevention = in.get(offset + 47);
+        boolean market = type == TYPE_MARKET;
+        if (asset == null || (side != SIDE_BUY && side != SIDE_SELL) || (type != TYPE_LIMIT && !market)
+                || timeInForce < TIF_GTC || timeInForce > TIF_FOK || (market ? price != 0 : price <= 0)
+                || quantity <= 0 || account < 0 || selfTradePrevention < STP_CANCEL_NEWEST
+                || selfTradePrevention > STP_DECREMENT_BOTH) {
+            session.send(reject(clientOrderId, -1, REJECT_INVALID_ORDER));
+            return;
+        }
+
+        MatchingEngineProperties.AssetProperties scales = properties.asset(asset);
+        boolean buy = side == SIDE_BUY;
+        TimeInForceEnum tif = TimeInForceEnum.values()[timeInForce];
+        SelfTradePreventionEnum stp = SelfTradePreventionEnum.values()[selfTradePrevention];
+        // A market order never rests
+        if (market && tif == TimeInForceEnum.GTC) {
+            tif = TimeInForceEnum.IOC;
+        }
+        OrderDto order = OrderDto.builder()
+                .id(idGenerator.nextId())
+                .timestamp(Instant.now().toString())
+                .asset(asset)
+                .direction((buy ? OrderDirectionEnum.BUY : OrderDirectionEnum.SELL).name())
+                .type((market ? OrderTypeEnum.MARKET : OrderTypeEnum.LIMIT).name())
+                .timeInForce(tif.name())
+                .accountId(account != 0 ? account : null)
+                .selfTradePrevention(stp.name())
+                .price(market ? null : fromUnits(price, scales.getPriceScale(), 0))
+                .amount(fromUnits(quantity, scales.getQuantityScale(), 0))
+                .build();
+        OrderEntry entry = new OrderEntry(order, buy, market ? OrderEntry.marketPrice(buy) : price, quantity, tif,
+                account, stp);
+
+        ExecutionRouter.Owner owner = router.register(order.getId(), session, clientOrderId);
+        CompletableFuture<OrderResponse> completion = new CompletableFuture<>();
+        // Runs on the matcher thread. Held for synchronous replication, the order may already have traded as a
+        // resting one, the router keeps those fills until the ack is out
+        completion.whenComplete((response, error) -> {
+            if (error != null) {
+                router.release(order.getId());
+                session.send(reject(clientOrderId, order.getId(), REJECT_ENGINE_ERROR));
+                return;
+            }
+            // A good till canceled order only ends up canceled by self-trade prevention
+            byte status = !response.isCanceled() ? STATUS_ACCEPTED
+                    : entry.getTimeInForce() == TimeInForceEnum.GTC ? STATUS_CANCELED : STATUS_EXPIRED;
+            // A finished order is forgotten before its ack goes out, so nothing is left routed once the client has it
+            if (entry.getPending() == 0) {
+                router.release(order.getId());
+            }
+            owner.acknowledge(ack(clientOrderId, order.getId(), status, owner.placedLeaves(entry.getPending())));
+        });
+        try {
+            matchingEngine.placeOrder(entry, completion);
+        } catch (RuntimeException e) {
+            completion.completeExceptionally(e);
+        }
+    }
+
+    private void onCancel(GatewaySession session, ByteBuffer in, int offset) {
+        long clientOrderId = in.getLong(offset + 4);
+        long orderId = in.getLong(offset + 12);
+        // Order ids are sequential, a session may only cancel the open orders it entered itself
+        ExecutionRouter.Owner owner = router.owner(orderId);
+        if (owner == null || owner.session != session) {
+            session.send(reject(clientOrderId, orderId, REJECT_UNKNOWN_ORDER));
+            return;
+        }
+        // The router acks the cancel as the order leaves the book
+        owner.cancelRequested(clientOrderId);
+        CompletableFuture<OrderResponse> completion = new CompletableFuture<>();
+        completion.whenComplete((response, error) -> {
+            if (error != null || response == null) {
+                owner.cancelFailed();
+                session.send(reject(clientOrderId, orderId, error != null ? REJECT_ENGINE_ERROR : REJECT_UNKNOWN_ORDER));
+            }
+        });
+        try {
+            if (!matchingEngine.cancelOrder(orderId, completion)) {
+                completion.complete(null);
+            }
+        } catch (RuntimeException e) {
+            completion.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Symbol at the offset, looked up by its raw bytes so a known symbol costs no allocation. Every
+     * configured asset is taken, but only the first {@code maxSymbols} others, so a client cannot grow
+     * the cache and the books without bound.
+     *
+     * @return null if it is empty, not plain letters and digits, or one unconfigured symbol too many
+     */
+    private String symbol(ByteBuffer in, int offset) {
+        long raw = in.getLong(offset);
+        String symbol = symbols.get(raw);
+        if (symbol != null) {
+            return symbol;
+        }
+        byte[] bytes = new byte[SYMBOL_LENGTH];
+        in.get(offset, bytes);
+        int length = 0;
+        while (length < SYMBOL_LENGTH && bytes[length] != 0) {
+            if (!Character.isLetterOrDigit(bytes[length])) {
+                return null;
+            }
+            length++;
+        }
+        for (int i = length; i < SYMBOL_LENGTH; i++) {
+            if (bytes[i] != 0) {
+                return null;
+            }
+        }
+        if (length == 0) {
+            return null;
+        }
+        symbol = new String(bytes, 0, length, StandardCharsets.US_ASCII);
+        if (!properties.getAssets().containsKey(symbol)) {
+            if (unconfiguredSymbols >= maxSymbols) {
+                return null;
+            }
+            unconfiguredSymbols++;
+        }
+        symbols.put(raw, symbol);
+        return symbol;
+    }
+
+    private void close(GatewaySession session, String reason) {
+        if (session.isClosed()) {
+            return;
+        }
+        log.debug("Gateway session closed: {}", reason);
+        router.releaseAll(session);
+        session.close();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(1_000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof GatewaySession session) {
+                close(session, "gateway shutting down");
+            }
+        }
+        try {
+            server.close();
+            selector.close();
+        } catch (IOException e) {
+            log.warn("Failed to close the order gateway", e);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.poc.baraka.gateway;
+
+import com.poc.baraka.engine.OrderBook;
+import com.poc.baraka.engine.OrderBookListener;
+import com.poc.baraka.engine.OrderEntry;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends fills of orders entered through the {@link BinaryOrderGateway} back to the session that
+ * entered them, straight from the matching loop.
+ * <p>
+ * Fills of an order are held until its acknowledgement has gone out, so a client always sees the ack
+ * first; fills after it go out as they happen. With synchronous replication a resting order can
+ * already trade before its held acknowledgement goes out.
+ *
+ * @author Waqas Ahmed
+ */
+@Component
+public class ExecutionRouter implements OrderBookListener {
+
+    private final Map<Long, Owner> owners = new ConcurrentHashMap<>();
+
+    /**
+     * Records the session of a new order, before the order is published to its shard.
+     */
+    Owner register(long orderId, GatewaySession session, long clientOrderId) {
+        Owner owner = new Owner(session, clientOrderId);
+        owners.put(orderId, owner);
+        return owner;
+    }
+
+    Owner owner(long orderId) {
+        return owners.get(orderId);
+    }
+
+    void release(long orderId) {
+        owners.remove(orderId);
+    }
+
+    /**
+     * Forgets a closed session's orders. They stay in the book, only their fills are no longer sent.
+     */
+    void releaseAll(GatewaySession session) {
+        owners.values().removeIf(owner -> owner.session == session);
+    }
+
+    int size() {
+        return owners.size();
+    }
+
+    @Override
+    public void onTrade(OrderBook book, OrderEntry incoming, OrderEntry resting, long quantity) {
+        Owner taker = owners.get(incoming.getId());
+        if (taker != null) {
+            taker.send(GatewayProtocol.fill(incoming.getId(), resting.getId(), resting.getPrice(), quantity,
+                    incoming.getPending()));
+        }
+        Owner maker = owners.get(resting.getId());
+        if (maker != null) {
+            maker.restingFill(resting.getPending() + quantity);
+            maker.send(GatewayProtocol.fill(resting.getId(), incoming.getId(), resting.getPrice(), quantity,
+                    resting.getPending()));
+        }
+    }
+
+    @Override
+    public void onOrderFilled(OrderBook book, OrderEntry order) {
+        owners.remove(order.getId());
+    }
+
+    /**
+     * Tells the session a resting order of its own was canceled, by its own cancel request or any
+     * other way, such as through the REST API or to prevent a self-trade.
+     */
+    @Override
+    public void onOrderCanceled(OrderBook book, OrderEntry order) {
+        Owner owner = owners.remove(order.getId());
+        if (owner != null) {
+            long clientOrderId = owner.cancelRequested ? owner.cancelClientOrderId : owner.clientOrderId;
+            owner.send(GatewayProtocol.ack(clientOrderId, order.getId(), GatewayProtocol.STATUS_CANCELED, 0));
+        }
+    }
+
+    /**
+     * Session and client id of an order. The held fills are only touched by the matcher thread of
+     * the order's shard.
+     */
+    static final class Owner {
+
+        final GatewaySession session;
+        final long clientOrderId;
+        private List<ByteBuffer> held;
+        private boolean acknowledged;
+        // Amount left on the order once placed, taken from its first fill as a resting order before the ack
+        private long placedLeaves = -1;
+        // Client id of the session's own cancel request, which its cancel ack answers
+        private volatile long cancelClientOrderId;
+        private volatile boolean cancelRequested;
+
+        private Owner(GatewaySession session, long clientOrderId) {
+            this.session = session;
+            this.clientOrderId = clientOrderId;
+        }
+
+        private void send(ByteBuffer message) {
+            if (acknowledged) {
+                session.send(message);
+                return;
+            }
+            if (held == null) {
+                held = new ArrayList<>();
+            }
+            held.add(message);
+        }
+
+        /**
+         * Has the cancel ack answer the session's cancel request instead of the order itself. Called
+         * before the cancel is published to the order's shard.
+         */
+        void cancelRequested(long clientOrderId) {
+            cancelClientOrderId = clientOrderId;
+            cancelRequested = true;
+        }
+
+        void cancelFailed() {
+            cancelRequested = false;
+        }
+
+        private void restingFill(long leavesBefore) {
+            if (!acknowledged && placedLeaves < 0) {
+                placedLeaves = leavesBefore;
+            }
+        }
+
+        /**
+         * Amount left on the order right after it was placed, which is what its acknowledgement reports.
+         *
+         * @param leaves amount left on it now
+         */
+        long placedLeaves(long leaves) {
+            return placedLeaves >= 0 ? placedLeaves : leaves;
+        }
+
+        /**
+         * Sends the acknowledgement, then the fills held back for it.
+         */
+        void acknowledge(ByteBuffer ack) {
+            acknowledged = true;
+            session.send(ack);
+            if (held != null) {
+                held.forEach(session::send);
+                held = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.poc.baraka.gateway;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Fixed layout binary messages of the order entry gateway, in the style of SBE: every field sits at a
+ * fixed offset, integers are little-endian, prices are whole ticks and quantities whole lots of the
+ * asset's configured scales, so they go into the engine without any parsing.
+ * <p>
+ * Every message starts with a 4 byte header: the frame length including the header ({@code uint16}),
+ * the template id ({@code uint8}) and the schema version ({@code uint8}).
+ *
+ * <pre>
+ * NEW_ORDER (1)  clientOrderId i64 | symbol char[8] | side u8 (1 buy, 2 sell) | type u8 (1 limit, 2 market)
+ *                | timeInForce u8 (0 GTC, 1 IOC, 2 FOK) | price i64 | quantity i64 | account i64
+ *                | selfTradePrevention u8 (0 cancel newest, 1 cancel oldest, 2 decrement both)
+ * CANCEL    (2)  clientOrderId i64 | orderId i64
+ * ACK     (101)  clientOrderId i64 | orderId i64 | status u8 | leavesQuantity i64
+ * REJECT  (102)  clientOrderId i64 | orderId i64 | reason u8
+ * FILL    (103)  orderId i64 | counterOrderId i64 | price i64 | quantity i64 | leavesQuantity i64
+ * </pre>
+ * The symbol is ASCII, padded with zero bytes. A market order has a price of 0. An order whose remainder
+ * was not left in the book, IOC, FOK and market orders, is acked as expired with nothing leaving.
+ * An account of 0 is none. A resting order canceled to prevent a self-trade gets an unsolicited ACK
+ * with status canceled.
+ *
+ * @author Waqas Ahmed
+ */
+public final class GatewayProtocol {
+
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    public static final byte VERSION = 3;
+    public static final int HEADER_LENGTH = 4;
+    public static final int SYMBOL_LENGTH = 8;
+
+    public static final byte NEW_ORDER = 1;
+    public static final byte CANCEL = 2;
+    public static final byte ACK = 101;
+    public static final byte REJECT = 102;
+    public static final byte FILL = 103;
+
+    public static final int NEW_ORDER_LENGTH = HEADER_LENGTH + 8 + SYMBOL_LENGTH + 1 + 1 + 1 + 8 + 8 + 8 + 1;
+    public static final int CANCEL_LENGTH = HEADER_LENGTH + 8 + 8;
+    public static final int ACK_LENGTH = HEADER_LENGTH + 8 + 8 + 1 + 8;
+    public static final int REJECT_LENGTH = HEADER_LENGTH + 8 + 8 + 1;
+    public static final int FILL_LENGTH = HEADER_LENGTH + 8 + 8 + 8 + 8 + 8;
+
+    public static final byte SIDE_BUY = 1;
+    public static final byte SIDE_SELL = 2;
+
+    public static final byte TYPE_LIMIT = 1;
+    public static final byte TYPE_MARKET = 2;
+
+    public static final byte TIF_GTC = 0;
+    public static final byte TIF_IOC = 1;
+    public static final byte TIF_FOK = 2;
+
+    public static final byte STP_CANCEL_NEWEST = 0;
+    public static final byte STP_CANCEL_OLDEST = 1;
+    public static final byte STP_DECREMENT_BOTH = 2;
+
+    public static final byte STATUS_ACCEPTED = 0;
+    public static final byte STATUS_CANCELED = 1;
+    public static final byte STATUS_EXPIRED = 2;
+
+    public static final byte REJECT_INVALID_MESSAGE = 1;
+    public static final byte REJECT_INVALID_ORDER = 2;
+    public static final byte REJECT_UNKNOWN_ORDER = 3;
+    public static final byte REJECT_ENGINE_ERROR = 4;
+
+    private GatewayProtocol() {
+    }
+
+    /**
+     * A good till canceled limit order.
+     */
+    public static ByteBuffer newOrder(long clientOrderId, String symbol, byte side, long price, long quantity) {
+        return newOrder(clientOrderId, symbol, side, TYPE_LIMIT, TIF_GTC, price, quantity);
+    }
+
+    public static ByteBuffer newOrder(long clientOrderId, String symbol, byte side, byte type, byte timeInForce,
+                                      long price, long quantity) {
+        return newOrder(clientOrderId, symbol, side, type, timeInForce, price, quantity, 0, STP_CANCEL_NEWEST);
+    }
+
+    public static ByteBuffer newOrder(long clientOrderId, String symbol, byte side, byte type, byte timeInForce,
+                                      long price, long quantity, long account, byte selfTradePrevention) {
+        ByteBuffer frame = frame(NEW_ORDER, NEW_ORDER_LENGTH).putLong(clientOrderId);
+        for (int i = 0; i < SYMBOL_LENGTH; i++) {
+            frame.put(i < symbol.length() ? (byte) symbol.charAt(i) : 0);
+        }
+        return frame.put(side).put(type).put(timeInForce).putLong(price).putLong(quantity)
+                .putLong(account).put(selfTradePrevention).flip();
+    }
+
+    public static ByteBuffer cancel(long clientOrderId, long orderId) {
+        return frame(CANCEL, CANCEL_LENGTH).putLong(clientOrderId).putLong(orderId).flip();
+    }
+
+    public static ByteBuffer ack(long clientOrderId, long orderId, byte status, long leavesQuantity) {
+        return frame(ACK, ACK_LENGTH).putLong(clientOrderId).putLong(orderId).put(status).putLong(leavesQuantity).flip();
+    }
+
+    public static ByteBuffer reject(long clientOrderId, long orderId, byte reason) {
+        return frame(REJECT, REJECT_LENGTH).putLong(clientOrderId).putLong(orderId).put(reason).flip();
+    }
+
+    public static ByteBuffer fill(long orderId, long counterOrderId, long price, long quantity, long leavesQuantity) {
+        return frame(FILL, FILL_LENGTH).putLong(orderId).putLong(counterOrderId).putLong(price).putLong(quantity)
+                .putLong(leavesQuantity).flip();
+    }
+
+    private static ByteBuffer frame(byte templateId, int length) {
+        return ByteBuffer.allocate(length).order(BYTE_ORDER).putShort((short) length).put(templateId).put(VERSION);
+    }
+}
@@ -0,0 +1,97 @@
+package com.poc.baraka.gateway;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * One client connection of the {@link BinaryOrderGateway}. Reads and writes happen on the gateway's
+ * selector thread only; matcher threads just queue outbound frames and ask for a flush.
+ *
+ * @author Waqas Ahmed
+ */
+final class GatewaySession {
+
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    final SocketChannel channel;
+    final SelectionKey key;
+    final ByteBuffer in = ByteBuffer.allocateDirect(READ_BUFFER_SIZE).order(GatewayProtocol.BYTE_ORDER);
+
+    private final int maxQueuedBytes;
+    private final Consumer<GatewaySession> flushScheduler;
+    private final Queue<ByteBuffer> out = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedBytes = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private volatile boolean overflowed;
+    private volatile boolean closed;
+
+    GatewaySession(SocketChannel channel, SelectionKey key, int maxQueuedBytes, Consumer<GatewaySession> flushScheduler) {
+        this.channel = channel;
+        this.key = key;
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.flushScheduler = flushScheduler;
+    }
+
+    /**
+     * Queues a frame for the client, from any thread. A client that lets too much pile up is cut off
+     * on the next flush instead of growing the queue without bound.
+     */
+    void send(ByteBuffer frame) {
+        if (closed || overflowed) {
+            return;
+        }
+        if (queuedBytes.addAndGet(frame.remaining()) > maxQueuedBytes) {
+            overflowed = true;
+        } else {
+            out.add(frame);
+        }
+        if (flushScheduled.compareAndSet(false, true)) {
+            flushScheduler.accept(this);
+        }
+    }
+
+    /**
+     * Writes queued frames until they are all out or the socket buffer is full.
+     *
+     * @return true if nothing is left to write
+     */
+    boolean flush() throws IOException {
+        flushScheduled.set(false);
+        if (overflowed) {
+            throw new IOException("Client is not reading, " + queuedBytes.get() + " bytes queued");
+        }
+        ByteBuffer frame;
+        while ((frame = out.peek()) != null) {
+            int written = channel.write(frame);
+            queuedBytes.addAndGet(-written);
+            if (frame.hasRemaining()) {
+                return false;
+            }
+            out.poll();
+        }
+        return true;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void close() {
+        closed = true;
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing left to do with a connection that is going away
+        }
+        out.clear();
+    }
+}
@@ -1,221 +1,759 @@
 package com.poc.baraka.helper;
 
+import com.poc.baraka.common.IdGenerator;
+import com.poc.baraka.config.MatchingEngineProperties;
+import com.poc.baraka.dto.BatchItemResponse;
 import com.poc.baraka.dto.OrderDto;
 import com.poc.baraka.dto.OrderResponse;
-import com.poc.baraka.dto.TradeDto;
+import com.poc.baraka.engine.CompositeOrderBookListener;
+import com.poc.baraka.engine.BookView;
+import com.poc.baraka.engine.FillLog;
+import com.poc.baraka.engine.MatchingShard;
+import com.poc.baraka.engine.OrderBook;
+import com.poc.baraka.engine.OrderBookListener;
+import com.poc.baraka.engine.OrderCommand;
+import com.poc.baraka.engine.OrderEntry;
 import com.poc.baraka.enums.OrderDirectionEnum;
+import com.poc.baraka.enums.OrderTypeEnum;
+import com.poc.baraka.enums.SelfTradePreventionEnum;
+import com.poc.baraka.enums.TimeInForceEnum;
+import com.poc.baraka.exception.InvalidOrderException;
+import com.poc.baraka.exception.NotPrimaryException;
+import com.poc.baraka.journal.BookSnapshot;
+import com.poc.baraka.journal.EngineSnapshot;
+import com.poc.baraka.journal.OrderJournal;
+import com.poc.baraka.journal.OrderSnapshot;
+import com.poc.baraka.journal.SnapshotStore;
+import com.poc.baraka.metrics.EngineMetrics;
+import com.poc.baraka.replication.ReplicationRole;
+import com.poc.baraka.store.OrderArchive;
+import com.poc.baraka.store.OrderStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.*;
+
+import static com.poc.baraka.utils.DecimalUtils.fromUnits;
+import static com.poc.baraka.utils.DecimalUtils.toUnits;
 
 /**
+ * Routes orders to the matching shard their asset is pinned to. Each shard owns the order books of
+ * its assets, so different assets match in parallel while each book keeps a single writer.
+ * <p>
+ * Calls are handed to the shard's matcher thread through its ring buffer; the calling thread only
+ * waits on the command's completion handle and never contends for a lock.
+ *
  * @author Waqas Ahmed
  */
 @Service
 public class MatchingEngineHelper {
     private static final Logger log = LoggerFactory.getLogger(MatchingEngineHelper.class);
 
-    // Buy orders sorted highest price first
-    private final NavigableMap<BigDecimal, Queue<OrderDto>> buyOrdersMap = new ConcurrentSkipListMap<>(Comparator.reverseOrder());
-    // Sell orders sorted lowest price first
-    private final NavigableMap<BigDecimal, Queue<OrderDto>> sellOrdersMap = new ConcurrentSkipListMap<>();
+    private final MatchingEngineProperties properties;
+    private final MatchingShard[] shards;
+    private final OrderJournal journal;
+    private final SnapshotStore snapshotStore;
+    private final ScheduledExecutorService snapshotExecutor;
+    private final IdGenerator idGenerator;
+    private final EngineMetrics metrics;
+    private final OrderStore orderStore;
+    private final OrderBookListener bookListener;
+    // Only a standby replica has a replayer, fed by the primary's stream until it is promoted
+    private final Replayer replica;
+    private volatile boolean primary;
+
+    public MatchingEngineHelper() {
+        this(new MatchingEngineProperties());
+    }
 
-    // Order storage
-    private final Map<Long, OrderResponse> allOrders = new ConcurrentHashMap<>();
+    public MatchingEngineHelper(MatchingEngineProperties properties) {
+        this(properties, new IdGenerator());
+    }
 
-    public synchronized OrderResponse matchOrder(OrderDto order) {
-        log.info("matchOrder(..) called");
-        OrderResponse response;
-        if (OrderDirectionEnum.valueOf(order.getDirection().toUpperCase()) == OrderDirectionEnum.BUY) {
-            response = matchBuyOrder(order);
-        } else {
-            response = matchSellOrder(order);
+    public MatchingEngineHelper(MatchingEngineProperties properties, IdGenerator idGenerator) {
+        this(properties, idGenerator, new EngineMetrics(new SimpleMeterRegistry()), List.of());
+    }
+
+    /**
+     * @param listeners order book listeners, such as the market data feed, called on the matcher threads
+     */
+    @Autowired
+    public MatchingEngineHelper(MatchingEngineProperties properties, IdGenerator idGenerator, EngineMetrics metrics,
+                                List<OrderBookListener> listeners) {
+        this.properties = properties;
+        this.idGenerator = idGenerator;
+        this.metrics = metrics;
+        this.journal = openJournal(properties.getJournal());
+        this.orderStore = openOrderStore(properties.getStore(), journal != null);
+        List<OrderBookListener> bookListeners = new ArrayList<>();
+        bookListeners.add(new OrderBookListener() {
+            @Override
+            public void onOrderFilled(OrderBook book, OrderEntry order) {
+                orderStore.finish(order.getId());
+            }
+
+            @Override
+            public void onOrderCanceled(OrderBook book, OrderEntry order) {
+                OrderResponse live = orderStore.getLive(order.getId());
+                if (live != null) {
+                    live.setCanceled(true);
+                }
+                orderStore.finish(order.getId());
+            }
+        });
+        bookListeners.addAll(listeners);
+        this.bookListener = new CompositeOrderBookListener(bookListeners);
+        this.snapshotStore = journal != null ? openSnapshotStore(properties.getSnapshot()) : null;
+        this.shards = new MatchingShard[properties.resolveShardCount()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new MatchingShard(i, this::newBook, orderStore, journal, metrics,
+                    properties.getRingSize(), properties.getBatchSize(), properties.getViewDepth());
         }
+        this.snapshotExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order-book-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.primary = properties.getReplication().getRole() != ReplicationRole.REPLICA;
+        this.replica = primary ? null : new Replayer();
+        // A replica gets its state from the primary, its journal only starts once it is promoted
+        if (journal != null && primary) {
+            recover();
+            scheduleSnapshots();
+        }
+        log.info("Matching engine started with {} shards{}", shards.length, primary ? "" : " as a standby replica");
+    }
 
-        allOrders.put(response.getOrder().getId(), response);
+    private OrderBook newBook(String asset) {
+        MatchingEngineProperties.AssetProperties assetProperties = properties.asset(asset);
+        OrderBook book = new OrderBook(asset, assetProperties.getPriceScale(), assetProperties.getQuantityScale(),
+                assetProperties.getBookType(), assetProperties.getPriceBand(),
+                assetProperties.getMatchingAlgorithm().policy(toUnits(assetProperties.getMinAllocation(),
+                        assetProperties.getQuantityScale(), "Minimum allocation")), bookListener);
+        metrics.bindBook(book);
+        return book;
+    }
 
-        return response;
+    /**
+     * The archive outlives a restart only when the journal does, otherwise order ids start over.
+     */
+    private static OrderStore openOrderStore(MatchingEngineProperties.Store settings, boolean durable) {
+        try {
+            OrderArchive archive = settings.getArchiveDirectory().isBlank() ? OrderArchive.temporary()
+                    : new OrderArchive(Path.of(settings.getArchiveDirectory()), durable);
+            return new OrderStore(settings.getMaxFinishedOrders(),
+                    TimeUnit.SECONDS.toMillis(settings.getFinishedTtlSeconds()), archive);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the order archive", e);
+        }
     }
-    private OrderResponse matchBuyOrder(OrderDto buyOrder) {
-        // Initialize pendingAmount if not set
-        if (buyOrder.getPendingAmount() == null) {
-            buyOrder.setPendingAmount(buyOrder.getAmount());
+
+    private static OrderJournal openJournal(MatchingEngineProperties.Journal settings) {
+        if (!settings.isEnabled()) {
+            return null;
         }
+        try {
+            return OrderJournal.open(Path.of(settings.getDirectory()), settings.getBufferSize(),
+                    settings.getFlushIntervalMs(), settings.isFsync());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the order journal in " + settings.getDirectory(), e);
+        }
+    }
 
-        OrderResponse response = OrderResponse.builder()
-                .order(OrderDto.builder()
-                        .id(buyOrder.getId())
-                        .direction(buyOrder.getDirection())
-                        .asset(buyOrder.getAsset())
-                        .timestamp(buyOrder.getTimestamp())
-                        .build())
-                .build();
+    private static SnapshotStore openSnapshotStore(MatchingEngineProperties.Snapshot settings) {
+        try {
+            return new SnapshotStore(Path.of(settings.getDirectory()), settings.getRetain());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the snapshot directory " + settings.getDirectory(), e);
+        }
+    }
 
-        // Until there is pending amount and we have seller left
-        while (buyOrder.getPendingAmount().compareTo(BigDecimal.ZERO) > 0 && !sellOrdersMap.isEmpty()) {
-            BigDecimal bestAskPrice = sellOrdersMap.firstKey();
+    /**
+     * Loads the newest snapshot into the books, then runs the journaled commands after it through the
+     * shards again and moves the id generator past the highest id seen.
+     */
+    private void recover() {
+        long startedAt = System.currentTimeMillis();
+        Replayer replayer = new Replayer();
+        try {
+            EngineSnapshot snapshot = snapshotStore.loadLatest().orElse(null);
+            if (snapshot != null) {
+                replayer.restore(snapshot);
+            }
+            journal.replay(replayer.replayFrom, replayer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replay the order journal", e);
+        }
+        replayer.catchUp();
+        log.info("Recovered from sequence {} replaying {} journaled commands in {} ms, next order id {}",
+                replayer.replayFrom, replayer.replayed, System.currentTimeMillis() - startedAt, replayer.maxId + 1);
+    }
 
-            // Price not acceptable, in case buyer want to buy at very low rate
-            if (buyOrder.getPrice().compareTo(bestAskPrice) < 0) break;
+    /**
+     * Runs journaled commands through the shards again, on top of the snapshot they follow. Used for
+     * the journal at startup and for the stream of the primary on a replica. Not thread safe, one
+     * thread feeds it.
+     */
+    private final class Replayer implements OrderJournal.Visitor {
+
+        private final Map<MatchingShard, CompletableFuture<OrderResponse>> lastCommands = new HashMap<>();
+        private final Map<String, Long> bookSequences = new HashMap<>();
+        private long replayFrom;
+        // Read by status calls on other threads
+        private volatile long lastSequence;
+        private long maxId = -1;
+        private long replayed;
+
+        /**
+         * Loads the snapshot's books, the commands after it follow.
+         */
+        void restore(EngineSnapshot snapshot) {
+            replayFrom = snapshot.getReplayFrom();
+            lastSequence = replayFrom;
+            maxId = Math.max(maxId, snapshot.getNextId() - 1);
+            for (BookSnapshot book : snapshot.getBooks()) {
+                bookSequences.put(book.getAsset(), book.getSequence());
+                MatchingShard shard = shardFor(book.getAsset());
+                List<OrderEntry> orders = new ArrayList<>(book.getOrders().size());
+                for (OrderSnapshot order : book.getOrders()) {
+                    orders.add(toEntry(book, order));
+                    maxId = Math.max(maxId, order.getId());
+                }
+                lastCommands.put(shard, shard.restore(book.getAsset(), book.getLastTradeId(), orders));
+            }
+        }
 
-            Queue<OrderDto> sellQueue = sellOrdersMap.get(bestAskPrice);
-            if (sellQueue == null || sellQueue.isEmpty()) {
-                sellOrdersMap.remove(bestAskPrice);
-                continue;
+        /**
+         * Whether the command is already in its book's snapshot, books copy at slightly different points.
+         */
+        private boolean covered(long sequence, String asset) {
+            lastSequence = Math.max(lastSequence, sequence);
+            return sequence <= bookSequences.getOrDefault(asset, replayFrom);
+        }
+
+        @Override
+        public void onPlace(long sequence, OrderDto order) {
+            maxId = Math.max(maxId, order.getId());
+            if (covered(sequence, order.getAsset())) {
+                return;
+            }
+            try {
+                MatchingShard shard = shardFor(order.getAsset());
+                lastCommands.put(shard, shard.place(toEntry(order), true));
+                replayed++;
+            } catch (InvalidOrderException e) {
+                log.warn("Skipping journaled order id={} at sequence {}: {}", order.getId(), sequence, e.getMessage());
             }
+        }
 
-            OrderDto sellOrder = sellQueue.peek();
+        @Override
+        public void onCancel(long sequence, String asset, long orderId) {
+            if (covered(sequence, asset)) {
+                return;
+            }
+            MatchingShard shard = shardFor(asset);
+            lastCommands.put(shard, shard.cancel(asset, orderId, true));
+            replayed++;
+        }
 
-            BigDecimal tradedAmount = buyOrder.getPendingAmount().min(sellOrder.getPendingAmount());
-            // If no pending amount left then break
-            if (tradedAmount.compareTo(BigDecimal.ZERO) == 0) break;
+        @Override
+        public void onAmend(long sequence, String asset, long orderId, BigDecimal price, BigDecimal amount) {
+            if (covered(sequence, asset)) {
+                return;
+            }
+            MatchingShard shard = shardFor(asset);
+            lastCommands.put(shard, shard.amend(asset, orderId, price, amount, true));
+            replayed++;
+        }
 
-            // Record trades
-            response.getOrder().getTrades().add(TradeDto.builder()
-                    .orderId(sellOrder.getId())
-                    .amount(tradedAmount)
-                    .price(bestAskPrice)
-                    .build());
+        /**
+         * Waits until every shard applied what it was given and moves the id generator past every id seen.
+         */
+        void catchUp() {
+            // Each shard handles its commands in order, so its last one completing means it caught up
+            lastCommands.values().forEach(CompletableFuture::join);
+            idGenerator.advanceTo(maxId + 1);
+        }
+    }
 
-            sellOrder.getTrades().add(TradeDto.builder()
-                    .orderId(buyOrder.getId())
-                    .amount(tradedAmount)
-                    .price(bestAskPrice)
-                    .build());
+    /**
+     * Starts streaming to a replica: every journal record from now on goes to the tap, and the returned
+     * snapshot covers everything before them. The snapshot is copied the way {@link #takeSnapshot()}
+     * copies it, so matching only pauses for the copy.
+     */
+    public CompletableFuture<EngineSnapshot> attachReplica(OrderJournal.Tap tap) {
+        if (journal == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Replication needs the journal enabled"));
+        }
+        long replayFrom = journal.tap(tap);
+        long nextId = idGenerator.peek();
+        List<CompletableFuture<List<BookSnapshot>>> copies = new ArrayList<>(shards.length);
+        for (MatchingShard shard : shards) {
+            copies.add(shard.snapshot());
+        }
+        return CompletableFuture.allOf(copies.toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            List<BookSnapshot> books = new ArrayList<>();
+            copies.forEach(copy -> books.addAll(copy.join()));
+            return new EngineSnapshot(replayFrom, nextId, books);
+        });
+    }
 
-            // Update pending amounts
-            buyOrder.setPendingAmount(buyOrder.getPendingAmount().subtract(tradedAmount));
-            sellOrder.setPendingAmount(sellOrder.getPendingAmount().subtract(tradedAmount));
+    /**
+     * Stops streaming to the replica of the tap.
+     */
+    public void detachReplica(OrderJournal.Tap tap) {
+        if (journal != null) {
+            journal.untap(tap);
+        }
+    }
 
-            // Remove fully filled sell order
-            if (sellOrder.getPendingAmount().compareTo(BigDecimal.ZERO) == 0) {
-                sellQueue.poll();
-            }
-            // Remove price level
-            if (sellQueue.isEmpty()) {
-                sellOrdersMap.remove(bestAskPrice);
-            }
+    /**
+     * Loads the primary's snapshot into a standby replica, ahead of the records streamed after it.
+     */
+    public void loadReplica(EngineSnapshot snapshot) {
+        if (primary) {
+            throw new IllegalStateException("Only a standby replica loads the primary's state");
         }
+        replica.restore(snapshot);
+    }
 
-        // Add remaining BUY order to order book if partially filled
-        if (buyOrder.getPendingAmount().compareTo(BigDecimal.ZERO) > 0) {
-            buyOrdersMap.computeIfAbsent(buyOrder.getPrice(), k -> new LinkedList<>()).add(buyOrder);
+    /**
+     * Applies a journal record streamed by the primary on a standby replica. The command is queued to
+     * its shard, in the same order as on the primary, and applied there as a replay.
+     *
+     * @return sequence of the record
+     */
+    public long applyReplicated(ByteBuffer record) {
+        if (primary) {
+            throw new IllegalStateException("Only a standby replica applies the primary's stream");
         }
+        return OrderJournal.readRecord(record, replica);
+    }
 
-        response.getOrder().setPendingAmount(buyOrder.getPendingAmount());
-        return response;
+    /**
+     * Sequence of the last command a standby replica applied, or of the last one journaled on a primary.
+     */
+    public long getSequence() {
+        if (!primary) {
+            return replica.lastSequence;
+        }
+        return journal != null ? journal.getSequence() : 0;
     }
 
-    private OrderResponse matchSellOrder(OrderDto sellOrder) {
+    public boolean isPrimary() {
+        return primary;
+    }
 
-        // Initialize pendingAmount if not set
-        if (sellOrder.getPendingAmount() == null) {
-            sellOrder.setPendingAmount(sellOrder.getAmount());
+    /**
+     * Turns a standby replica into a primary once the stream from the old one stopped. Its books are
+     * already in step, so it only waits for its shards to apply what they were given. The journal goes
+     * on after the last replicated sequence and a snapshot is written right away, so a restart of the
+     * new primary does not depend on the old one.
+     */
+    public synchronized void promote() {
+        if (primary) {
+            return;
+        }
+        replica.catchUp();
+        if (journal != null) {
+            try {
+                journal.startAt(replica.lastSequence);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open the order journal", e);
+            }
+        }
+        primary = true;
+        if (journal != null) {
+            takeSnapshot();
+            scheduleSnapshots();
         }
+        log.info("Promoted to primary after sequence {}, next order id {}", replica.lastSequence, idGenerator.peek());
+    }
 
-        OrderResponse response = OrderResponse.builder().order(sellOrder).build();
-        // Until there is pending amount and we have buyer left
-        while (sellOrder.getPendingAmount().compareTo(BigDecimal.ZERO) > 0 && !buyOrdersMap.isEmpty()) {
-            BigDecimal bestBidPrice = buyOrdersMap.firstKey();
+    private void scheduleSnapshots() {
+        long interval = properties.getSnapshot().getIntervalSeconds();
+        if (interval > 0) {
+            snapshotExecutor.scheduleWithFixedDelay(this::takeSnapshot, interval, interval, TimeUnit.SECONDS);
+        }
+    }
 
-            // Price not acceptable, in case seller want to sell at very high rate
-            if (sellOrder.getPrice().compareTo(bestBidPrice) > 0) break;
+    /**
+     * A standby replica only serves reads, its books follow the primary.
+     */
+    private void checkPrimary() {
+        if (!primary) {
+            throw new NotPrimaryException("This engine is a standby replica, it takes no orders until it is promoted");
+        }
+    }
 
-            Queue<OrderDto> buyQueue = buyOrdersMap.get(bestBidPrice);
-            if (buyQueue == null || buyQueue.isEmpty()) {
-                buyOrdersMap.remove(bestBidPrice);
-                continue;
+    /**
+     * Writes a snapshot of every book. Each shard copies its books when its matcher reaches the
+     * snapshot command, so matching only pauses for the copy; the file is written on the snapshot
+     * thread. The journal rolls to a new segment so a restart only reads what came after.
+     *
+     * @return the snapshot file, once written
+     */
+    public CompletableFuture<Path> takeSnapshot() {
+        if (snapshotStore == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Snapshots need the journal enabled"));
+        }
+        if (!primary) {
+            return CompletableFuture.failedFuture(new IllegalStateException("A standby replica takes no snapshots"));
+        }
+        // Every record up to here is applied before any shard reaches its snapshot command
+        long replayFrom = journal.getSequence();
+        long nextId = idGenerator.peek();
+        journal.roll();
+        List<CompletableFuture<List<BookSnapshot>>> copies = new ArrayList<>(shards.length);
+        for (MatchingShard shard : shards) {
+            copies.add(shard.snapshot());
+        }
+        return CompletableFuture.allOf(copies.toArray(CompletableFuture[]::new)).thenApplyAsync(ignored -> {
+            List<BookSnapshot> books = new ArrayList<>();
+            copies.forEach(copy -> books.addAll(copy.join()));
+            try {
+                // The snapshot must never be ahead of the journal on disk, nor drop finished orders
+                journal.flush();
+                orderStore.archiveFinished();
+                Path file = snapshotStore.write(new EngineSnapshot(replayFrom, nextId, books));
+                log.info("Snapshot {} written with {} books", file, books.size());
+                return file;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write snapshot", e);
             }
+        }, snapshotExecutor).whenComplete((file, error) -> {
+            if (error != null) {
+                log.error("Snapshot failed", error);
+            }
+        });
+    }
 
-            OrderDto buyOrder = buyQueue.peek();
+    public OrderResponse matchOrder(OrderDto order) {
+        checkPrimary();
+        return await(shardFor(order.getAsset()).place(toEntry(order)));
+    }
 
-            BigDecimal tradedAmount = sellOrder.getPendingAmount().min(buyOrder.getPendingAmount());
-            if (tradedAmount.compareTo(BigDecimal.ZERO) == 0) break;
+    public OrderResponse getOrderById(long orderId) {
+        return view(orderStore.get(orderId));
+    }
 
-            // Record trades
-            response.getOrder().getTrades().add(TradeDto.builder()
-                    .orderId(buyOrder.getId())
-                    .amount(tradedAmount)
-                    .price(bestBidPrice)
-                    .build());
+    /**
+     * Copies a stored order for the API. Its trades are materialized here, and the pending amount of
+     * an order still in the book, which is only kept in units while it trades, is filled in.
+     */
+    private static OrderResponse view(OrderResponse stored) {
+        if (stored == null || !(stored.getOrder().getTrades() instanceof FillLog fills)) {
+            return stored;
+        }
+        OrderDto order = stored.getOrder();
+        boolean canceled = stored.isCanceled();
+        long leaves = fills.lastLeaves();
+        BigDecimal pending = canceled || leaves < 0 ? order.getPendingAmount()
+                : fromUnits(leaves, fills.getQuantityScale(), order.getAmount().scale());
+        return OrderResponse.builder()
+                .order(OrderDto.builder()
+                        .id(order.getId())
+                        .timestamp(order.getTimestamp())
+                        .asset(order.getAsset())
+                        .price(order.getPrice())
+                        .amount(order.getAmount())
+                        .direction(order.getDirection())
+                        .type(order.getType())
+                        .timeInForce(order.getTimeInForce())
+                        .accountId(order.getAccountId())
+                        .selfTradePrevention(order.getSelfTradePrevention())
+                        .pendingAmount(pending)
+                        .trades(new ArrayList<>(fills))
+                        .build())
+                .canceled(canceled)
+                .build();
+    }
 
-            buyOrder.getTrades().add(TradeDto.builder()
-                    .orderId(sellOrder.getId())
-                    .amount(tradedAmount)
-                    .price(bestBidPrice)
-                    .build());
+    public OrderResponse cancelOrder(long orderId) {
+        checkPrimary();
+        log.debug("cancelOrder(..) called for id={}", orderId);
+        OrderResponse orderResponse = orderStore.get(orderId);
+        if (orderResponse == null) {
+            log.debug("Order id={} not found", orderId);
+            OrderResponse notFound = new OrderResponse();
+            notFound.setCanceled(false);
+            return notFound;
+        }
 
-            // Update pending amounts
-            sellOrder.setPendingAmount(sellOrder.getPendingAmount().subtract(tradedAmount));
-            buyOrder.setPendingAmount(buyOrder.getPendingAmount().subtract(tradedAmount));
+        String asset = orderResponse.getOrder().getAsset();
+        OrderResponse canceled = await(shardFor(asset).cancel(asset, orderId));
 
-            // Remove fully filled buy order
-            if (buyOrder.getPendingAmount().compareTo(BigDecimal.ZERO) == 0) {
-                buyQueue.poll();
-            }
-            if (buyQueue.isEmpty()) {
-                buyOrdersMap.remove(bestBidPrice);
-            }
+        if (canceled != null) {
+            log.debug("Order id={} canceled successfully", orderId);
+            return canceled;
         }
+        log.debug("Order id={} not found in order book queues", orderId);
+        return view(orderResponse);
+    }
+
+    /**
+     * Latest view of the asset's book, read without going through the shard's ring. It trails the
+     * book by at most one batch of commands.
+     *
+     * @return null if no order for the asset was placed yet
+     */
+    public BookView getBookView(String asset) {
+        return shardFor(asset).view(asset);
+    }
 
-        // Add remaining SELL order to order book if partially filled
-        if (sellOrder.getPendingAmount().compareTo(BigDecimal.ZERO) > 0) {
-            sellOrdersMap.computeIfAbsent(sellOrder.getPrice(), k -> new LinkedList<>()).add(sellOrder);
+    /**
+     * Amends a resting order as one engine command, see {@link com.poc.baraka.engine.OrderBook#amend}.
+     * The new values are checked against the asset's tick and lot size before anything is journaled.
+     *
+     * @param price  new price, or null to keep it
+     * @param amount new total amount, or null to keep it
+     * @return the amended order, or null if the order is unknown or no longer resting
+     */
+    public OrderResponse amendOrder(long orderId, BigDecimal price, BigDecimal amount) {
+        checkPrimary();
+        OrderResponse orderResponse = orderStore.get(orderId);
+        if (orderResponse == null) {
+            return null;
+        }
+        String asset = orderResponse.getOrder().getAsset();
+        MatchingEngineProperties.AssetProperties scales = properties.asset(asset);
+        if (price != null) {
+            toUnits(price, scales.getPriceScale(), "Price");
         }
+        if (amount != null) {
+            toUnits(amount, scales.getQuantityScale(), "Amount");
+        }
+        return view(await(shardFor(asset).amend(asset, orderId, price, amount)));
+    }
 
-        response.getOrder().setPendingAmount(sellOrder.getPendingAmount());
-        return response;
+    /**
+     * Places an order already in engine units, as decoded by the binary gateway. The handle is
+     * completed on the matcher thread, so callbacks added before this call run there.
+     */
+    public void placeOrder(OrderEntry order, CompletableFuture<OrderResponse> completion) {
+        checkPrimary();
+        shardFor(order.getOrder().getAsset()).place(order, completion);
     }
 
+    /**
+     * Cancels an order, completing the handle like {@link #placeOrder(OrderEntry, CompletableFuture)}
+     * with the canceled order, or with null if it was no longer resting.
+     *
+     * @return false if the order is unknown, the handle is then left as it is
+     */
+    public boolean cancelOrder(long orderId, CompletableFuture<OrderResponse> completion) {
+        checkPrimary();
+        OrderResponse orderResponse = orderStore.get(orderId);
+        if (orderResponse == null) {
+            return false;
+        }
+        String asset = orderResponse.getOrder().getAsset();
+        shardFor(asset).cancel(asset, orderId, completion);
+        return true;
+    }
 
-    public OrderResponse getOrderById(long orderId) {
-        return allOrders.get(orderId);
+    /**
+     * Places the orders as one unit per shard: each shard gets a single batch command, so its orders
+     * are matched back to back. Orders failing tick or lot checks are rejected on their own.
+     */
+    public List<BatchItemResponse> matchOrders(List<OrderDto> orders) {
+        checkPrimary();
+        BatchItemResponse[] results = new BatchItemResponse[orders.size()];
+        Map<MatchingShard, List<Integer>> indexes = new LinkedHashMap<>();
+        Map<MatchingShard, List<OrderCommand>> commands = new LinkedHashMap<>();
+        for (int i = 0; i < orders.size(); i++) {
+            OrderDto order = orders.get(i);
+            try {
+                OrderEntry entry = toEntry(order);
+                MatchingShard shard = shardFor(order.getAsset());
+                indexes.computeIfAbsent(shard, key -> new ArrayList<>()).add(i);
+                commands.computeIfAbsent(shard, key -> new ArrayList<>()).add(OrderCommand.place(entry));
+            } catch (InvalidOrderException e) {
+                results[i] = BatchItemResponse.builder().index(i).error(e.getMessage()).build();
+            }
+        }
+        applyBatches(commands, indexes, results, "Order was not matched");
+        return Arrays.asList(results);
     }
 
-    public synchronized OrderResponse cancelOrder(long orderId) {
-        log.info("cancelOrder(..) called for id={}", orderId);
-        OrderResponse orderResponse = allOrders.get(orderId);
-        if (orderResponse == null) {
-            log.warn("Order id={} not found in allOrders", orderId);
-            orderResponse = new OrderResponse();
-            orderResponse.setCanceled(false);
-            return orderResponse;
+    /**
+     * Cancels the orders as one unit per shard, like {@link #matchOrders}. An order that is no longer
+     * resting comes back as it is, not canceled.
+     */
+    public List<BatchItemResponse> cancelOrders(List<Long> orderIds) {
+        checkPrimary();
+        BatchItemResponse[] results = new BatchItemResponse[orderIds.size()];
+        OrderResponse[] known = new OrderResponse[orderIds.size()];
+        Map<MatchingShard, List<Integer>> indexes = new LinkedHashMap<>();
+        Map<MatchingShard, List<OrderCommand>> commands = new LinkedHashMap<>();
+        for (int i = 0; i < orderIds.size(); i++) {
+            long orderId = orderIds.get(i);
+            known[i] = orderStore.get(orderId);
+            if (known[i] == null) {
+                results[i] = BatchItemResponse.builder().index(i).error("Order not found").build();
+                continue;
+            }
+            String asset = known[i].getOrder().getAsset();
+            MatchingShard shard = shardFor(asset);
+            indexes.computeIfAbsent(shard, key -> new ArrayList<>()).add(i);
+            commands.computeIfAbsent(shard, key -> new ArrayList<>()).add(OrderCommand.cancel(asset, orderId));
+        }
+        applyBatches(commands, indexes, results, null);
+        for (int i = 0; i < results.length; i++) {
+            if (results[i].getResult() == null && results[i].getError() == null) {
+                results[i].setResult(view(known[i]));
+            }
         }
+        return Arrays.asList(results);
+    }
 
-        OrderDto order = orderResponse.getOrder();
-        boolean removed = false;
+    /**
+     * Cancels every order resting in the asset's book in one command.
+     *
+     * @return the canceled orders
+     */
+    public List<OrderResponse> cancelAllOrders(String asset) {
+        checkPrimary();
+        return await(shardFor(asset).cancelAll(asset));
+    }
 
-        if (OrderDirectionEnum.valueOf(order.getDirection().toUpperCase()) == OrderDirectionEnum.BUY) {
-            removed = removeFromQueue(buyOrdersMap, order);
+    /**
+     * Sends one batch command per shard, all shards at once, and fills in the results in request
+     * order. A null response gets the given error, if any.
+     */
+    private void applyBatches(Map<MatchingShard, List<OrderCommand>> commands, Map<MatchingShard, List<Integer>> indexes,
+                              BatchItemResponse[] results, String nullError) {
+        Map<MatchingShard, CompletableFuture<List<OrderResponse>>> pending = new LinkedHashMap<>();
+        commands.forEach((shard, batch) -> pending.put(shard, shard.batch(batch)));
+        pending.forEach((shard, future) -> {
+            List<OrderResponse> responses = await(future);
+            List<Integer> positions = indexes.get(shard);
+            List<OrderCommand> batch = commands.get(shard);
+            for (int j = 0; j < positions.size(); j++) {
+                int i = positions.get(j);
+                OrderResponse response = responses.get(j);
+                String rejection = batch.get(j).getRejection();
+                results[i] = BatchItemResponse.builder()
+                        .index(i)
+                        .result(response)
+                        .error(rejection != null ? rejection : response == null ? nullError : null)
+                        .build();
+            }
+        });
+    }
+
+    /**
+     * Converts the order to the engine's scaled units, this is where tick and lot size are enforced.
+     */
+    public OrderEntry toEntry(OrderDto order) {
+        MatchingEngineProperties.AssetProperties asset = properties.asset(order.getAsset());
+        BigDecimal pending = order.getPendingAmount() != null ? order.getPendingAmount() : order.getAmount();
+        boolean buy = isBuy(order);
+        boolean market = order.getType() != null
+                && OrderTypeEnum.valueOf(order.getType().toUpperCase()) == OrderTypeEnum.MARKET;
+        TimeInForceEnum timeInForce = order.getTimeInForce() != null
+                ? TimeInForceEnum.valueOf(order.getTimeInForce().toUpperCase()) : TimeInForceEnum.GTC;
+        long price;
+        if (market) {
+            if (order.getPrice() != null) {
+                throw new InvalidOrderException("A market order takes no price");
+            }
+            price = OrderEntry.marketPrice(buy);
+            // A market order never rests
+            timeInForce = timeInForce == TimeInForceEnum.GTC ? TimeInForceEnum.IOC : timeInForce;
         } else {
-            removed = removeFromQueue(sellOrdersMap, order);
+            if (order.getPrice() == null) {
+                throw new InvalidOrderException("Price is mandatory for a limit order");
+            }
+            price = toUnits(order.getPrice(), asset.getPriceScale(), "Price");
         }
+        SelfTradePreventionEnum selfTradePrevention = order.getSelfTradePrevention() != null
+                ? SelfTradePreventionEnum.valueOf(order.getSelfTradePrevention().toUpperCase())
+                : SelfTradePreventionEnum.CANCEL_NEWEST;
+        order.setType((market ? OrderTypeEnum.MARKET : OrderTypeEnum.LIMIT).name());
+        order.setTimeInForce(timeInForce.name());
+        order.setSelfTradePrevention(selfTradePrevention.name());
+        return new OrderEntry(order, buy, price, toUnits(pending, asset.getQuantityScale(), "Amount"), timeInForce,
+                order.getAccountId() != null ? order.getAccountId() : 0, selfTradePrevention);
+    }
 
-        if (removed) {
-            // Update allOrders: mark as canceled or remove
-            order.setPendingAmount(BigDecimal.ZERO);
-            orderResponse.setCanceled(true);
-            log.info("Order id={} canceled successfully", orderId);
-        } else {
-            log.warn("Order id={} not found in order book queues", orderId);
+    /**
+     * Rebuilds a resting order from a snapshot, rescaling it if the asset's scales changed since.
+     */
+    private OrderEntry toEntry(BookSnapshot book, OrderSnapshot snapshot) {
+        OrderDto order = OrderDto.builder()
+                .id(snapshot.getId())
+                .timestamp(snapshot.getTimestamp())
+                .asset(book.getAsset())
+                .direction((snapshot.isBuy() ? OrderDirectionEnum.BUY : OrderDirectionEnum.SELL).name())
+                .type(OrderTypeEnum.LIMIT.name())
+                .timeInForce(TimeInForceEnum.GTC.name())
+                .accountId(snapshot.getAccountId() != 0 ? snapshot.getAccountId() : null)
+                .selfTradePrevention(snapshot.getSelfTradePrevention().name())
+                .price(snapshot.getPrice())
+                .amount(snapshot.getAmount())
+                .trades(new ArrayList<>(snapshot.getTrades()))
+                .build();
+        MatchingEngineProperties.AssetProperties asset = properties.asset(book.getAsset());
+        long pending = asset.getQuantityScale() == book.getQuantityScale() ? snapshot.getPending()
+                : toUnits(fromUnits(snapshot.getPending(), book.getQuantityScale(), 0), asset.getQuantityScale(), "Amount");
+        return new OrderEntry(order, snapshot.isBuy(), toUnits(snapshot.getPrice(), asset.getPriceScale(), "Price"), pending,
+                TimeInForceEnum.GTC, snapshot.getAccountId(), snapshot.getSelfTradePrevention());
+    }
+
+    private static boolean isBuy(OrderDto order) {
+        return OrderDirectionEnum.valueOf(order.getDirection().toUpperCase()) == OrderDirectionEnum.BUY;
+    }
+
+    /**
+     * Shard the asset is pinned to, either configured explicitly or picked by symbol hash.
+     */
+    MatchingShard shardFor(String asset) {
+        int pinned = properties.asset(asset).getShard();
+        if (pinned >= 0 && pinned < shards.length) {
+            return shards[pinned];
         }
+        return shards[Math.floorMod(asset.hashCode(), shards.length)];
+    }
 
-        return orderResponse;
+    @PreDestroy
+    public void shutdown() {
+        snapshotExecutor.shutdown();
+        for (MatchingShard shard : shards) {
+            shard.shutdown();
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.error("Failed to close the order journal", e);
+            }
+        }
+        try {
+            orderStore.close();
+        } catch (IOException e) {
+            log.error("Failed to close the order archive", e);
+        }
     }
-    private boolean removeFromQueue(NavigableMap<BigDecimal, Queue<OrderDto>> ordersMap, OrderDto order) {
-        Queue<OrderDto> queue = ordersMap.get(order.getPrice());
-        if (queue != null) {
-            boolean removed = queue.removeIf(o -> o.getId() == order.getId());
-            if (queue.isEmpty()) {
-                ordersMap.remove(order.getPrice());
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
             }
-            return removed;
+            throw e;
         }
-        return false;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,30 @@
+package com.poc.baraka.journal;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Copy of one order book as of a snapshot, taken on its matcher thread. Orders are listed bids first,
+ * then asks, each side best price first and in time priority within a price.
+ *
+ * @author Waqas Ahmed
+ */
+@Getter
+@AllArgsConstructor
+public class BookSnapshot {
+
+    private final String asset;
+    /**
+     * Journal sequence the copy was taken at, records up to it are already reflected in the book.
+     */
+    private final long sequence;
+    private final int priceScale;
+    private final int quantityScale;
+    /**
+     * Id of the book's latest trade, trade ids go on from it.
+     */
+    private final long lastTradeId;
+    private final List<OrderSnapshot> orders;
+}
@@ -0,0 +1,21 @@
+package com.poc.baraka.journal;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * State of the whole engine at a snapshot. Every journal record up to {@code replayFrom} is covered by
+ * the books; later records are covered only if they are not past their book's own sequence.
+ *
+ * @author Waqas Ahmed
+ */
+@Getter
+@AllArgsConstructor
+public class EngineSnapshot {
+
+    private final long replayFrom;
+    private final long nextId;
+    private final List<BookSnapshot> books;
+}
@@ -0,0 +1,619 @@
+package com.poc.baraka.journal;
+
+import com.poc.baraka.dto.OrderDto;
+import com.poc.baraka.engine.OrderBook;
+import com.poc.baraka.engine.OrderEntry;
+import com.poc.baraka.enums.OrderDirectionEnum;
+import com.poc.baraka.enums.OrderTypeEnum;
+import com.poc.baraka.enums.SelfTradePreventionEnum;
+import com.poc.baraka.enums.TimeInForceEnum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static com.poc.baraka.utils.DecimalUtils.fromUnits;
+import static com.poc.baraka.utils.DecimalUtils.toUnits;
+
+/**
+ * Append-only binary journal of the place and cancel commands the matching engine accepted. Replaying
+ * it in sequence order rebuilds every order book and order exactly, since matching is deterministic.
+ * <p>
+ * Matcher threads only encode records into an in-memory buffer. Each shard encodes the payload into
+ * the scratch buffer of its own {@link Appender}, so the journal's lock is only held to number the
+ * record, copy it in, checksum it and hand it to the tap. A flusher thread swaps the buffer out
+ * and writes it through a {@link FileChannel}, forcing it to disk once per batch (group commit), so no
+ * matcher ever waits on an fsync. Records written since the last flush can be lost on a crash, at
+ * most {@code flushIntervalMs} worth.
+ * <p>
+ * The journal is split into segments named after the first sequence they hold. A new segment is
+ * started whenever a snapshot is taken, so startup only has to read the segments after it.
+ * <p>
+ * Record layout: {@code int length | long sequence | byte type | payload | int crc32c}, where length
+ * counts everything after itself and the checksum covers sequence, type and payload. Replay stops at
+ * the first torn or corrupt record and truncates the segment there. A resting limit order is a
+ * {@code PLACE} record; market, IOC and FOK orders are {@code PLACE_IMMEDIATE} records, which add
+ * the order type and time in force. An order with an account is a {@code PLACE_ACCOUNT} record, which
+ * adds the account and the self-trade prevention to those. An {@code AMEND} record holds the new price
+ * and amount of an order.
+ * <p>
+ * A {@link Tap} sees every record as it is appended, in sequence order, which is how the command
+ * stream is replicated to a standby engine.
+ *
+ * @author Waqas Ahmed
+ */
+public class OrderJournal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderJournal.class);
+
+    static final String SEGMENT_PREFIX = "journal-";
+    static final String SEGMENT_SUFFIX = ".log";
+    static final byte PLACE = 1;
+    static final byte CANCEL = 2;
+    static final byte PLACE_IMMEDIATE = 3;
+    static final byte AMEND = 4;
+    static final byte PLACE_ACCOUNT = 5;
+
+    private static final int HEADER_SIZE = 4 + 8 + 1;
+    private static final int CRC_SIZE = 4;
+    private static final int AMEND_PRICE = 1;
+    private static final int AMEND_AMOUNT = 2;
+    private static final int MAX_RECORD_SIZE = 1 << 16;
+
+    /**
+     * Receives the journaled commands, in sequence order, during replay.
+     */
+    public interface Visitor {
+        void onPlace(long sequence, OrderDto order);
+
+        void onCancel(long sequence, String asset, long orderId);
+
+        /**
+         * @param price  new price, or null if it was kept
+         * @param amount new total amount, or null if it was kept
+         */
+        void onAmend(long sequence, String asset, long orderId, BigDecimal price, BigDecimal amount);
+    }
+
+    /**
+     * Receives every record as it is appended, e.g. to stream it to a replica.
+     */
+    public interface Tap {
+
+        /**
+         * Called by the appending thread under the journal's lock, so records arrive in sequence order.
+         * The bytes are only valid during the call.
+         *
+         * @param record the whole record, length prefix included
+         */
+        void onAppend(ByteBuffer record, long sequence);
+
+        /**
+         * Returns once the command of the record may be acknowledged, see {@link #awaitReplicated(long)}.
+         */
+        void awaitReplicated(long sequence);
+
+        /**
+         * Whether acknowledgements currently wait for {@link #awaitReplicated(long)}.
+         */
+        boolean isSynchronous();
+    }
+
+    private final Path directory;
+    private final long flushIntervalMs;
+    private final boolean fsync;
+    private final CRC32C crc = new CRC32C();
+    private final Object writeLock = new Object();
+    private final Thread flusher;
+
+    // Guarded by this
+    private ByteBuffer active;
+    private long sequence;
+    // Guarded by writeLock
+    private ByteBuffer flushing;
+    private FileChannel channel;
+
+    private volatile Tap tap;
+    private volatile boolean rollRequested;
+    private volatile boolean running = true;
+
+    private OrderJournal(Path directory, int bufferSize, long flushIntervalMs, boolean fsync) {
+        this.directory = directory;
+        this.active = ByteBuffer.allocate(bufferSize);
+        this.flushing = ByteBuffer.allocate(bufferSize);
+        this.flushIntervalMs = flushIntervalMs;
+        this.fsync = fsync;
+        this.flusher = new Thread(this::runFlusher, "order-journal-flusher");
+        this.flusher.setDaemon(true);
+    }
+
+    /**
+     * Opens the journal in the directory. {@link #replay(long, Visitor)} has to run before the first
+     * append.
+     */
+    public static OrderJournal open(Path directory, int bufferSize, long flushIntervalMs, boolean fsync) throws IOException {
+        Files.createDirectories(directory);
+        return new OrderJournal(directory, bufferSize, flushIntervalMs, fsync);
+    }
+
+    /**
+     * Feeds every intact record after {@code afterSequence} to the visitor, in sequence order, then
+     * opens the last segment for appending behind them, cutting off a torn tail left by a crash.
+     * Segments that only hold older records are not read at all.
+     */
+    public synchronized void replay(long afterSequence, Visitor visitor) throws IOException {
+        List<Path> segments = segments(directory);
+        int first = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            if (firstSequence(segments.get(i)) <= afterSequence + 1) {
+                first = i;
+            }
+        }
+
+        long lastSequence = afterSequence;
+        long validLength = 0;
+        for (int i = first; i < segments.size(); i++) {
+            long[] result = replaySegment(segments.get(i), afterSequence, visitor);
+            lastSequence = Math.max(lastSequence, Math.max(result[1], firstSequence(segments.get(i)) - 1));
+            validLength = result[0];
+            boolean lastSegment = i == segments.size() - 1;
+            if (!lastSegment && validLength < Files.size(segments.get(i))) {
+                throw new IOException("Journal segment " + segments.get(i) + " is corrupt at byte " + validLength);
+            }
+        }
+
+        Path current = segments.isEmpty() ? segment(directory, lastSequence + 1) : segments.get(segments.size() - 1);
+        channel = FileChannel.open(current, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (validLength < channel.size()) {
+            log.warn("Truncating journal {} from {} to {} bytes after a torn record", current, channel.size(), validLength);
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+        sequence = lastSequence;
+        flusher.start();
+        log.info("Journal {} replayed up to sequence {}", current, lastSequence);
+    }
+
+    /**
+     * @return valid length of the segment and the last sequence in it
+     */
+    private static long[] replaySegment(Path file, long afterSequence, Visitor visitor) throws IOException {
+        long position = 0;
+        long lastSequence = 0;
+        CRC32C check = new CRC32C();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < HEADER_SIZE - 4 + CRC_SIZE || length > MAX_RECORD_SIZE) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                try {
+                    in.readFully(record);
+                } catch (EOFException e) {
+                    break;
+                }
+                check.reset();
+                check.update(record, 0, length - CRC_SIZE);
+                ByteBuffer buffer = ByteBuffer.wrap(record);
+                if ((int) check.getValue() != buffer.getInt(length - CRC_SIZE)) {
+                    break;
+                }
+                lastSequence = buffer.getLong();
+                if (lastSequence > afterSequence) {
+                    visit(buffer, lastSequence, visitor);
+                }
+                position += 4 + length;
+            }
+        }
+        return new long[]{position, lastSequence};
+    }
+
+    /**
+     * Feeds a single record, as handed to a {@link Tap}, to the visitor.
+     *
+     * @return sequence of the record
+     * @throws IllegalArgumentException if the record is torn or corrupt
+     */
+    public static long readRecord(ByteBuffer record, Visitor visitor) {
+        ByteBuffer buffer = record.slice();
+        int length = buffer.remaining() >= 4 ? buffer.getInt() : -1;
+        if (length < HEADER_SIZE - 4 + CRC_SIZE || length != buffer.remaining()) {
+            throw new IllegalArgumentException("Journal record of " + length + " bytes is torn");
+        }
+        CRC32C check = new CRC32C();
+        check.update(buffer.slice(4, length - CRC_SIZE));
+        if ((int) check.getValue() != buffer.getInt(4 + length - CRC_SIZE)) {
+            throw new IllegalArgumentException("Journal record fails its checksum");
+        }
+        long sequence = buffer.getLong();
+        visit(buffer, sequence, visitor);
+        return sequence;
+    }
+
+    private static void visit(ByteBuffer buffer, long sequence, Visitor visitor) {
+        byte type = buffer.get();
+        if (type == PLACE || type == PLACE_IMMEDIATE || type == PLACE_ACCOUNT) {
+            visitor.onPlace(sequence, readPlace(buffer, type));
+        } else if (type == CANCEL) {
+            String asset = getString(buffer);
+            visitor.onCancel(sequence, asset, buffer.getLong());
+        } else if (type == AMEND) {
+            readAmend(buffer, sequence, visitor);
+        }
+    }
+
+    static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = new ArrayList<>(files
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .toList());
+            segments.sort((a, b) -> Long.compare(firstSequence(a), firstSequence(b)));
+            return segments;
+        }
+    }
+
+    static Path segment(Path directory, long firstSequence) {
+        return directory.resolve(SEGMENT_PREFIX + String.format("%020d", firstSequence) + SEGMENT_SUFFIX);
+    }
+
+    private static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static OrderDto readPlace(ByteBuffer buffer, byte type) {
+        boolean immediate = type != PLACE;
+        long id = buffer.getLong();
+        String timestamp = getString(buffer);
+        String asset = getString(buffer);
+        boolean buy = buffer.get() == 1;
+        long price = buffer.getLong();
+        int priceScale = buffer.get();
+        int priceDisplayScale = buffer.get();
+        long amount = buffer.getLong();
+        int quantityScale = buffer.get();
+        int amountDisplayScale = buffer.get();
+        boolean market = immediate && buffer.get() == 1;
+        TimeInForceEnum timeInForce = immediate ? TimeInForceEnum.values()[buffer.get()] : TimeInForceEnum.GTC;
+        Long accountId = type == PLACE_ACCOUNT ? buffer.getLong() : null;
+        SelfTradePreventionEnum selfTradePrevention = type == PLACE_ACCOUNT
+                ? SelfTradePreventionEnum.values()[buffer.get()] : SelfTradePreventionEnum.CANCEL_NEWEST;
+        return OrderDto.builder()
+                .id(id)
+                .timestamp(timestamp)
+                .asset(asset)
+                .direction((buy ? OrderDirectionEnum.BUY : OrderDirectionEnum.SELL).name())
+                .type((market ? OrderTypeEnum.MARKET : OrderTypeEnum.LIMIT).name())
+                .timeInForce(timeInForce.name())
+                .accountId(accountId)
+                .selfTradePrevention(selfTradePrevention.name())
+                .price(market ? null : fromUnits(price, priceScale, priceDisplayScale))
+                .amount(fromUnits(amount, quantityScale, amountDisplayScale))
+                .build();
+    }
+
+
+    private static void readAmend(ByteBuffer buffer, long sequence, Visitor visitor) {
+        String asset = getString(buffer);
+        long orderId = buffer.getLong();
+        byte changed = buffer.get();
+        long price = buffer.getLong();
+        int priceScale = buffer.get();
+        int priceDisplayScale = buffer.get();
+        long amount = buffer.getLong();
+        int quantityScale = buffer.get();
+        int amountDisplayScale = buffer.get();
+        visitor.onAmend(sequence, asset, orderId,
+                (changed & AMEND_PRICE) != 0 ? fromUnits(price, priceScale, priceDisplayScale) : null,
+                (changed & AMEND_AMOUNT) != 0 ? fromUnits(amount, quantityScale, amountDisplayScale) : null);
+    }
+
+    /**
+     * A new appender for one matcher thread. Appenders of different shards encode their records in
+     * parallel and only meet on the journal's lock to number and copy them.
+     */
+    public Appender appender() {
+        return new Appender();
+    }
+
+    /**
+     * Encodes records for the journal outside its lock. Not thread-safe, each shard owns one.
+     */
+    public final class Appender {
+
+        // Sized so every record it holds can be replayed
+        private final ByteBuffer scratch = ByteBuffer.allocate(MAX_RECORD_SIZE + 4 - HEADER_SIZE - CRC_SIZE);
+
+        private Appender() {
+        }
+
+        /**
+         * Journals a place command before the book matches it.
+         *
+         * @return sequence of the record
+         */
+        public long appendPlace(OrderBook book, OrderEntry entry) {
+            OrderDto order = entry.getOrder();
+            boolean account = entry.getAccount() != 0;
+            boolean immediate = account || entry.getTimeInForce() != TimeInForceEnum.GTC;
+            scratch.clear();
+            scratch.putLong(order.getId());
+            putString(scratch, order.getTimestamp());
+            putString(scratch, order.getAsset());
+            scratch.put((byte) (entry.isBuy() ? 1 : 0));
+            scratch.putLong(entry.getPrice());
+            scratch.put((byte) book.getPriceScale());
+            scratch.put((byte) (order.getPrice() != null ? order.getPrice().scale() : 0));
+            scratch.putLong(entry.getPending());
+            scratch.put((byte) book.getQuantityScale());
+            scratch.put((byte) order.getAmount().scale());
+            if (immediate) {
+                scratch.put((byte) (OrderTypeEnum.MARKET.name().equals(order.getType()) ? 1 : 0));
+                scratch.put((byte) entry.getTimeInForce().ordinal());
+            }
+            if (account) {
+                scratch.putLong(entry.getAccount());
+                scratch.put((byte) entry.getSelfTradePrevention().ordinal());
+            }
+            return append(account ? PLACE_ACCOUNT : immediate ? PLACE_IMMEDIATE : PLACE, scratch);
+        }
+
+        /**
+         * Journals an amend command before the book applies it. The payload is the asset, the order id,
+         * a byte flagging which of price and amount changed, then both in units with their scales.
+         *
+         * @return sequence of the record
+         */
+        public long appendAmend(OrderBook book, long orderId, BigDecimal price, BigDecimal amount) {
+            scratch.clear();
+            putString(scratch, book.getAsset());
+            scratch.putLong(orderId);
+            scratch.put((byte) ((price != null ? AMEND_PRICE : 0) | (amount != null ? AMEND_AMOUNT : 0)));
+            scratch.putLong(price != null ? toUnits(price, book.getPriceScale(), "Price") : 0);
+            scratch.put((byte) book.getPriceScale());
+            scratch.put((byte) (price != null ? price.scale() : 0));
+            scratch.putLong(amount != null ? toUnits(amount, book.getQuantityScale(), "Amount") : 0);
+            scratch.put((byte) book.getQuantityScale());
+            scratch.put((byte) (amount != null ? amount.scale() : 0));
+            return append(AMEND, scratch);
+        }
+
+        /**
+         * Journals a cancel command before the book applies it.
+         *
+         * @return sequence of the record
+         */
+        public long appendCancel(String asset, long orderId) {
+            scratch.clear();
+            putString(scratch, asset);
+            scratch.putLong(orderId);
+            return append(CANCEL, scratch);
+        }
+    }
+
+    /**
+     * Sequence of the last record appended so far.
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Opens a new segment for appending after the given sequence without reading anything, for an
+     * engine whose state came from elsewhere, such as a promoted replica. Instead of
+     * {@link #replay(long, Visitor)}.
+     */
+    public synchronized void startAt(long lastSequence) throws IOException {
+        Path current = segment(directory, lastSequence + 1);
+        channel = FileChannel.open(current, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        sequence = lastSequence;
+        flusher.start();
+        log.info("Journal {} started after sequence {}", current, lastSequence);
+    }
+
+    /**
+     * Hands every record appended from now on to the tap, replacing any earlier one.
+     *
+     * @return sequence of the last record the tap does not see
+     */
+    public synchronized long tap(Tap tap) {
+        this.tap = tap;
+        return sequence;
+    }
+
+    /**
+     * Removes the tap if it is still the current one.
+     */
+    public synchronized void untap(Tap tap) {
+        if (this.tap == tap) {
+            this.tap = null;
+        }
+    }
+
+    /**
+     * Whether a tap holds acknowledgements back until the replica has their records, as synchronous
+     * replication does. A matcher then holds the completions of its commands and waits once, with
+     * {@link #awaitReplicated(long)}, for the last record of what it applied.
+     */
+    public boolean isReplicatedSynchronously() {
+        Tap current = tap;
+        return current != null && current.isSynchronous();
+    }
+
+    /**
+     * Returns once the commands up to the record may be acknowledged: right away unless a tap holds
+     * them back, as synchronous replication does until the replica has the record.
+     */
+    public void awaitReplicated(long sequence) {
+        Tap current = tap;
+        if (current != null) {
+            current.awaitReplicated(sequence);
+        }
+    }
+
+    /**
+     * Starts a new segment with the next flushed record.
+     */
+    public void roll() {
+        rollRequested = true;
+    }
+
+    /**
+     * Numbers the encoded payload and copies it into the active buffer between its header and checksum.
+     */
+    private synchronized long append(byte type, ByteBuffer payload) {
+        int start = begin(HEADER_SIZE + payload.position() + CRC_SIZE, type);
+        active.put(payload.array(), 0, payload.position());
+        return end(start);
+    }
+
+    private int begin(int size, byte type) {
+        while (active.remaining() < size) {
+            if (size > active.capacity()) {
+                throw new IllegalArgumentException("Journal record of " + size + " bytes exceeds the buffer");
+            }
+            // Buffer full, let the flusher swap it out
+            notifyAll();
+            try {
+                wait(flushIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for journal space", e);
+            }
+        }
+        int start = active.position();
+        active.putInt(size - 4);
+        active.putLong(++sequence);
+        active.put(type);
+        return start;
+    }
+
+    private long end(int start) {
+        crc.reset();
+        crc.update(active.array(), start + 4, active.position() - start - 4);
+        active.putInt((int) crc.getValue());
+        Tap current = tap;
+        if (current != null) {
+            current.onAppend(ByteBuffer.wrap(active.array(), start, active.position() - start).slice(), sequence);
+        }
+        if (active.position() > active.capacity() / 2) {
+            notifyAll();
+        }
+        return sequence;
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        buffer.putShort((short) value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer.putChar(value.charAt(i));
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar();
+        }
+        return new String(chars);
+    }
+
+    private void runFlusher() {
+        while (running) {
+            try {
+                synchronized (this) {
+                    if (active.position() == 0 && running) {
+                        wait(flushIntervalMs);
+                    }
+                }
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                log.error("Failed to write the order journal", e);
+            }
+        }
+    }
+
+    /**
+     * Writes everything appended so far and forces it to disk when fsync is on. One call covers all
+     * records appended since the previous flush.
+     */
+    public void flush() throws IOException {
+        synchronized (writeLock) {
+            ByteBuffer toWrite;
+            synchronized (this) {
+                if (active.position() == 0) {
+                    return;
+                }
+                toWrite = active;
+                active = flushing;
+                flushing = toWrite;
+                notifyAll();
+            }
+            toWrite.flip();
+            if (rollRequested) {
+                rollRequested = false;
+                // The first record in the buffer opens the new segment
+                channel.force(true);
+                channel.close();
+                Path next = segment(directory, toWrite.getLong(4));
+                channel = FileChannel.open(next, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                log.info("Journal rolled over to {}", next);
+            }
+            while (toWrite.hasRemaining()) {
+                channel.write(toWrite);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+            toWrite.clear();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        synchronized (this) {
+            notifyAll();
+        }
+        try {
+            if (flusher.isAlive()) {
+                flusher.join(5_000L);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (channel != null) {
+            flush();
+            channel.force(true);
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.poc.baraka.journal;
+
+import com.poc.baraka.dto.TradeDto;
+import com.poc.baraka.enums.SelfTradePreventionEnum;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Copy of one resting order as of a snapshot.
+ *
+ * @author Waqas Ahmed
+ */
+@Getter
+@AllArgsConstructor
+public class OrderSnapshot {
+
+    private final long id;
+    private final String timestamp;
+    private final boolean buy;
+    private final BigDecimal price;
+    private final BigDecimal amount;
+    private final long pending;
+    private final List<TradeDto> trades;
+    // 0 for an order without an account
+    private final long accountId;
+    private final SelfTradePreventionEnum selfTradePrevention;
+}
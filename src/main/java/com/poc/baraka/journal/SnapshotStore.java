@@ -0,0 +1,207 @@
+package com.poc.baraka.journal;
+
+import com.poc.baraka.dto.TradeDto;
+import com.poc.baraka.enums.SelfTradePreventionEnum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Reads and writes compact binary {@link EngineSnapshot} files. A snapshot is written to a temporary
+ * file, synced and then renamed into place, so a crash never leaves a half written snapshot behind;
+ * a trailing checksum guards against anything else.
+ *
+ * @author Waqas Ahmed
+ */
+public class SnapshotStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotStore.class);
+
+    private static final int MAGIC = 0x4F42534E; // "OBSN"
+    private static final int VERSION = 3;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    private final Path directory;
+    private final int retain;
+
+    public SnapshotStore(Path directory, int retain) throws IOException {
+        this.directory = directory;
+        this.retain = Math.max(1, retain);
+        Files.createDirectories(directory);
+    }
+
+    public Path write(EngineSnapshot snapshot) throws IOException {
+        Path target = directory.resolve(PREFIX + String.format("%020d", snapshot.getReplayFrom()) + SUFFIX);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            writeTo(snapshot, file);
+            file.getFD().sync();
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        prune();
+        return target;
+    }
+
+    /**
+     * Writes the snapshot in the file format, checksum included, e.g. to send it to a replica.
+     */
+    public static void writeTo(EngineSnapshot snapshot, OutputStream target) throws IOException {
+        CRC32 crc = new CRC32();
+        DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(target, 1 << 16), crc));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(snapshot.getReplayFrom());
+        out.writeLong(snapshot.getNextId());
+        out.writeInt(snapshot.getBooks().size());
+        for (BookSnapshot book : snapshot.getBooks()) {
+            writeBook(out, book);
+        }
+        out.flush();
+        // The checksum itself is written past the checked stream
+        DataOutputStream trailer = new DataOutputStream(target);
+        trailer.writeLong(crc.getValue());
+        trailer.flush();
+    }
+
+    private static void writeBook(DataOutputStream out, BookSnapshot book) throws IOException {
+        out.writeUTF(book.getAsset());
+        out.writeLong(book.getSequence());
+        out.writeInt(book.getPriceScale());
+        out.writeInt(book.getQuantityScale());
+        out.writeLong(book.getLastTradeId());
+        out.writeInt(book.getOrders().size());
+        for (OrderSnapshot order : book.getOrders()) {
+            out.writeLong(order.getId());
+            out.writeBoolean(order.getTimestamp() != null);
+            if (order.getTimestamp() != null) {
+                out.writeUTF(order.getTimestamp());
+            }
+            out.writeBoolean(order.isBuy());
+            out.writeUTF(order.getPrice().toString());
+            out.writeUTF(order.getAmount().toString());
+            out.writeLong(order.getPending());
+            out.writeInt(order.getTrades().size());
+            for (TradeDto trade : order.getTrades()) {
+                out.writeLong(trade.getOrderId());
+                out.writeUTF(trade.getAmount().toString());
+                out.writeUTF(trade.getPrice().toString());
+            }
+            out.writeLong(order.getAccountId());
+            out.writeByte(order.getSelfTradePrevention().ordinal());
+        }
+    }
+
+    /**
+     * Loads the newest snapshot that reads back intact, falling back to older ones.
+     */
+    public Optional<EngineSnapshot> loadLatest() throws IOException {
+        List<Path> snapshots = snapshots();
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path path = snapshots.get(i);
+            try {
+                EngineSnapshot snapshot = read(path);
+                log.info("Loaded snapshot {} with {} books", path, snapshot.getBooks().size());
+                return Optional.of(snapshot);
+            } catch (IOException e) {
+                log.warn("Skipping unreadable snapshot {}: {}", path, e.getMessage());
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static EngineSnapshot read(Path path) throws IOException {
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(path), 1 << 16)) {
+            return readFrom(file);
+        }
+    }
+
+    /**
+     * Reads a snapshot written by {@link #writeTo(EngineSnapshot, OutputStream)}, checking its checksum.
+     */
+    public static EngineSnapshot readFrom(InputStream source) throws IOException {
+        CRC32 crc = new CRC32();
+        DataInputStream in = new DataInputStream(new CheckedInputStream(source, crc));
+        int version = in.readInt() == MAGIC ? in.readInt() : -1;
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Not a snapshot of this version");
+        }
+        long replayFrom = in.readLong();
+        long nextId = in.readLong();
+        int bookCount = in.readInt();
+        List<BookSnapshot> books = new ArrayList<>(bookCount);
+        for (int i = 0; i < bookCount; i++) {
+            books.add(readBook(in, version));
+        }
+        long expected = crc.getValue();
+        if (new DataInputStream(source).readLong() != expected) {
+            throw new IOException("Checksum mismatch");
+        }
+        return new EngineSnapshot(replayFrom, nextId, books);
+    }
+
+    /**
+     * @param version snapshots before version 2 have no accounts, before version 3 no trade ids
+     */
+    private static BookSnapshot readBook(DataInputStream in, int version) throws IOException {
+        String asset = in.readUTF();
+        long sequence = in.readLong();
+        int priceScale = in.readInt();
+        int quantityScale = in.readInt();
+        long lastTradeId = version >= 3 ? in.readLong() : 0;
+        int orderCount = in.readInt();
+        List<OrderSnapshot> orders = new ArrayList<>(orderCount);
+        for (int i = 0; i < orderCount; i++) {
+            long id = in.readLong();
+            String timestamp = in.readBoolean() ? in.readUTF() : null;
+            boolean buy = in.readBoolean();
+            BigDecimal price = new BigDecimal(in.readUTF());
+            BigDecimal amount = new BigDecimal(in.readUTF());
+            long pending = in.readLong();
+            int tradeCount = in.readInt();
+            List<TradeDto> trades = new ArrayList<>(tradeCount);
+            for (int t = 0; t < tradeCount; t++) {
+                trades.add(TradeDto.builder()
+                        .orderId(in.readLong())
+                        .amount(new BigDecimal(in.readUTF()))
+                        .price(new BigDecimal(in.readUTF()))
+                        .build());
+            }
+            long accountId = version >= 2 ? in.readLong() : 0;
+            SelfTradePreventionEnum selfTradePrevention = version >= 2
+                    ? SelfTradePreventionEnum.values()[in.readByte()] : SelfTradePreventionEnum.CANCEL_NEWEST;
+            orders.add(new OrderSnapshot(id, timestamp, buy, price, amount, pending, trades, accountId,
+                    selfTradePrevention));
+        }
+        return new BookSnapshot(asset, sequence, priceScale, quantityScale, lastTradeId, orders);
+    }
+
+    private List<Path> snapshots() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(PREFIX)
+                            && path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(Comparator.comparing(path -> path.getFileName().toString()))
+                    .toList();
+        }
+    }
+
+    private void prune() throws IOException {
+        List<Path> snapshots = snapshots();
+        for (int i = 0; i < snapshots.size() - retain; i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+    }
+}
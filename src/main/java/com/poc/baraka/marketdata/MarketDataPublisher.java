@@ -0,0 +1,243 @@
+package com.poc.baraka.marketdata;
+
+import com.poc.baraka.config.MatchingEngineProperties;
+import com.poc.baraka.dto.DepthSnapshotDto;
+import com.poc.baraka.dto.LevelUpdateDto;
+import com.poc.baraka.dto.PriceLevelDto;
+import com.poc.baraka.dto.TradePrintDto;
+import com.poc.baraka.engine.OrderBook;
+import com.poc.baraka.engine.OrderBookListener;
+import com.poc.baraka.engine.OrderEntry;
+import com.poc.baraka.engine.PriceLevel;
+import com.poc.baraka.enums.OrderDirectionEnum;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.poc.baraka.utils.DecimalUtils.fromUnits;
+
+/**
+ * Market data feed fed straight from the matching loop: incremental L2 level updates and trade prints
+ * per asset, each with a per asset sequence number, plus a full depth snapshot when subscribing and
+ * every {@code matching.market-data.snapshot-interval-ms}.
+ * <p>
+ * Matcher threads only copy the change into an event and queue it. A single dispatcher thread keeps
+ * an L2 mirror of every book, numbers the events and fans them out to the subscriptions, which do the
+ * sending and the conflation for slow clients, see {@link MarketDataSubscription}.
+ *
+ * @author Waqas Ahmed
+ */
+@Component
+public class MarketDataPublisher implements OrderBookListener {
+
+    private static final Logger log = LoggerFactory.getLogger(MarketDataPublisher.class);
+
+    private final long snapshotIntervalMs;
+    private final int maxQueuedTrades;
+    private final BlockingQueue<Object> inbox = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+
+    private volatile boolean running = true;
+
+    // Only accessed from the dispatcher thread
+    private final Map<String, AssetDepth> depths = new HashMap<>();
+
+    @Autowired
+    public MarketDataPublisher(MatchingEngineProperties properties) {
+        this(properties.getMarketData().getSnapshotIntervalMs(), properties.getMarketData().getMaxQueuedTrades());
+    }
+
+    public MarketDataPublisher(long snapshotIntervalMs, int maxQueuedTrades) {
+        this.snapshotIntervalMs = snapshotIntervalMs;
+        this.maxQueuedTrades = maxQueuedTrades;
+        this.dispatcher = new Thread(this::dispatch, "market-data");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    @Override
+    public void onLevelChanged(OrderBook book, boolean buy, PriceLevel level) {
+        inbox.add(new LevelChange(book, buy, level.getPrice(), level.getTotalQuantity(), level.getOrderCount()));
+    }
+
+    @Override
+    public void onTrade(OrderBook book, OrderEntry incoming, OrderEntry resting, long quantity) {
+        inbox.add(new Trade(book, incoming.isBuy(), incoming.getId(), resting.getId(), resting.getPrice(), quantity,
+                System.currentTimeMillis()));
+    }
+
+    /**
+     * Subscribes to an asset's feed. The first message is a full depth snapshot, updates follow.
+     */
+    public MarketDataSubscription subscribe(String asset, MarketDataSink sink) {
+        MarketDataSubscription subscription = new MarketDataSubscription(asset, sink, maxQueuedTrades);
+        subscription.start();
+        // Through the inbox, so the snapshot lines up exactly with the updates after it
+        inbox.add(subscription);
+        return subscription;
+    }
+
+    private void dispatch() {
+        long nextSnapshot = System.currentTimeMillis() + snapshotIntervalMs;
+        while (running) {
+            try {
+                Object event = inbox.poll(100, TimeUnit.MILLISECONDS);
+                while (event != null) {
+                    handle(event);
+                    event = inbox.poll();
+                }
+                if (snapshotIntervalMs > 0 && System.currentTimeMillis() >= nextSnapshot) {
+                    for (AssetDepth depth : depths.values()) {
+                        depth.publishSnapshot();
+                    }
+                    nextSnapshot = System.currentTimeMillis() + snapshotIntervalMs;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Market data dispatch failed", e);
+            }
+        }
+    }
+
+    private void handle(Object event) {
+        if (event instanceof LevelChange change) {
+            depths.computeIfAbsent(change.book.getAsset(), AssetDepth::new).apply(change);
+        } else if (event instanceof Trade trade) {
+            depths.computeIfAbsent(trade.book.getAsset(), AssetDepth::new).apply(trade);
+        } else if (event instanceof MarketDataSubscription subscription) {
+            AssetDepth depth = depths.computeIfAbsent(subscription.getAsset(), AssetDepth::new);
+            depth.subscriptions.add(subscription);
+            subscription.offerSnapshot(depth.snapshot());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            dispatcher.join(5_000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (AssetDepth depth : depths.values()) {
+            depth.subscriptions.forEach(MarketDataSubscription::close);
+        }
+    }
+
+    /**
+     * L2 mirror of one book and the subscriptions to it.
+     */
+    private static final class AssetDepth {
+
+        final String asset;
+        final NavigableMap<Long, long[]> bids = new TreeMap<>(Comparator.reverseOrder());
+        final NavigableMap<Long, long[]> asks = new TreeMap<>();
+        final List<MarketDataSubscription> subscriptions = new ArrayList<>();
+        int priceScale;
+        int quantityScale;
+        long sequence;
+
+        AssetDepth(String asset) {
+            this.asset = asset;
+        }
+
+        void apply(LevelChange change) {
+            scales(change.book);
+            NavigableMap<Long, long[]> side = change.buy ? bids : asks;
+            if (change.orders == 0) {
+                side.remove(change.price);
+            } else {
+                side.put(change.price, new long[]{change.quantity, change.orders});
+            }
+            sequence++;
+            if (dropClosed()) {
+                LevelUpdateDto update = LevelUpdateDto.builder()
+                        .asset(asset)
+                        .sequence(sequence)
+                        .side((change.buy ? OrderDirectionEnum.BUY : OrderDirectionEnum.SELL).name())
+                        .price(fromUnits(change.price, priceScale, 0))
+                        .amount(fromUnits(change.quantity, quantityScale, 0))
+                        .orders(change.orders)
+                        .build();
+                // Bids and asks never share a key: asks are stored as -price - 1
+                long key = change.buy ? change.price : -change.price - 1;
+                subscriptions.forEach(subscription -> subscription.offerLevel(key, update));
+            }
+        }
+
+        void apply(Trade trade) {
+            scales(trade.book);
+            sequence++;
+            if (dropClosed()) {
+                TradePrintDto print = TradePrintDto.builder()
+                        .asset(asset)
+                        .sequence(sequence)
+                        .price(fromUnits(trade.price, priceScale, 0))
+                        .amount(fromUnits(trade.quantity, quantityScale, 0))
+                        .aggressorSide((trade.buy ? OrderDirectionEnum.BUY : OrderDirectionEnum.SELL).name())
+                        .buyOrderId(trade.buy ? trade.incomingId : trade.restingId)
+                        .sellOrderId(trade.buy ? trade.restingId : trade.incomingId)
+                        .timestamp(trade.timestamp)
+                        .build();
+                subscriptions.forEach(subscription -> subscription.offerTrade(print));
+            }
+        }
+
+        void publishSnapshot() {
+            if (dropClosed()) {
+                DepthSnapshotDto snapshot = snapshot();
+                subscriptions.forEach(subscription -> subscription.offerSnapshot(snapshot));
+            }
+        }
+
+        DepthSnapshotDto snapshot() {
+            return DepthSnapshotDto.builder()
+                    .asset(asset)
+                    .sequence(sequence)
+                    .bids(levels(bids))
+                    .asks(levels(asks))
+                    .build();
+        }
+
+        private List<PriceLevelDto> levels(NavigableMap<Long, long[]> side) {
+            List<PriceLevelDto> levels = new ArrayList<>(side.size());
+            side.forEach((price, level) -> levels.add(PriceLevelDto.builder()
+                    .price(fromUnits(price, priceScale, 0))
+                    .amount(fromUnits(level[0], quantityScale, 0))
+                    .orders((int) level[1])
+                    .build()));
+            return levels;
+        }
+
+        private void scales(OrderBook book) {
+            priceScale = book.getPriceScale();
+            quantityScale = book.getQuantityScale();
+        }
+
+        /**
+         * @return true if anyone is still subscribed
+         */
+        private boolean dropClosed() {
+            if (!subscriptions.isEmpty()) {
+                subscriptions.removeIf(MarketDataSubscription::isClosed);
+            }
+            return !subscriptions.isEmpty();
+        }
+    }
+
+    private record LevelChange(OrderBook book, boolean buy, long price, long quantity, int orders) {
+    }
+
+    private record Trade(OrderBook book, boolean buy, long incomingId, long restingId, long price, long quantity,
+                         long timestamp) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.poc.baraka.marketdata;
+
+import java.io.IOException;
+
+/**
+ * Where a subscription writes its messages to, e.g. an SSE stream.
+ *
+ * @author Waqas Ahmed
+ */
+public interface MarketDataSink {
+
+    /**
+     * @param event    {@code snapshot}, {@code level} or {@code trade}
+     * @param sequence sequence number of the message within the asset's feed
+     */
+    void send(String event, long sequence, Object data) throws IOException;
+
+    /**
+     * The subscription ended, e.g. because sending failed.
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,169 @@
+package com.poc.baraka.marketdata;
+
+import com.poc.baraka.dto.DepthSnapshotDto;
+import com.poc.baraka.dto.LevelUpdateDto;
+import com.poc.baraka.dto.TradePrintDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One subscriber of an asset's feed, sending on its own virtual thread so that a slow client only
+ * ever holds up itself.
+ * <p>
+ * Messages wait in a conflating buffer until the sender gets to them: a level update replaces any
+ * unsent update of the same level, a snapshot replaces every unsent level update, and only the
+ * newest trades are kept. A slow client therefore skips intermediate states instead of falling
+ * further and further behind; skipped trades show as gaps in the sequence numbers.
+ *
+ * @author Waqas Ahmed
+ */
+public final class MarketDataSubscription {
+
+    private static final Logger log = LoggerFactory.getLogger(MarketDataSubscription.class);
+
+    private final String asset;
+    private final MarketDataSink sink;
+    private final int maxQueuedTrades;
+
+    // A lock rather than monitors, a virtual thread waiting on a monitor would pin its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pending = lock.newCondition();
+
+    // Guarded by lock
+    private DepthSnapshotDto snapshot;
+    private final LinkedHashMap<Long, LevelUpdateDto> levels = new LinkedHashMap<>();
+    private final ArrayDeque<TradePrintDto> trades = new ArrayDeque<>();
+
+    private volatile boolean closed;
+
+    MarketDataSubscription(String asset, MarketDataSink sink, int maxQueuedTrades) {
+        this.asset = asset;
+        this.sink = sink;
+        this.maxQueuedTrades = Math.max(1, maxQueuedTrades);
+    }
+
+    void start() {
+        Thread.ofVirtual().name("market-data-" + asset).start(this::send);
+    }
+
+    public String getAsset() {
+        return asset;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pending.signal();
+        } finally {
+            lock.unlock();
+        }
+        sink.close();
+    }
+
+    void offerSnapshot(DepthSnapshotDto depth) {
+        lock.lock();
+        try {
+            snapshot = depth;
+            // Every unsent level update is older than the snapshot
+            levels.clear();
+            pending.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void offerLevel(long key, LevelUpdateDto update) {
+        lock.lock();
+        try {
+            // Re-inserted so the map stays in sequence order
+            levels.remove(key);
+            levels.put(key, update);
+            pending.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void offerTrade(TradePrintDto trade) {
+        lock.lock();
+        try {
+            if (trades.size() >= maxQueuedTrades) {
+                trades.pollFirst();
+            }
+            trades.addLast(trade);
+            pending.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void send() {
+        List<LevelUpdateDto> pendingLevels = new ArrayList<>();
+        List<TradePrintDto> pendingTrades = new ArrayList<>();
+        try {
+            while (!closed) {
+                DepthSnapshotDto pendingSnapshot;
+                lock.lock();
+                try {
+                    while (!closed && snapshot == null && levels.isEmpty() && trades.isEmpty()) {
+                        pending.await();
+                    }
+                    pendingSnapshot = snapshot;
+                    snapshot = null;
+                    pendingLevels.addAll(levels.values());
+                    levels.clear();
+                    pendingTrades.addAll(trades);
+                    trades.clear();
+                } finally {
+                    lock.unlock();
+                }
+                if (pendingSnapshot != null) {
+                    sink.send("snapshot", pendingSnapshot.getSequence(), pendingSnapshot);
+                }
+                sendInSequence(pendingLevels, pendingTrades);
+                pendingLevels.clear();
+                pendingTrades.clear();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Market data subscriber of {} dropped: {}", asset, e.getMessage());
+            close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+        }
+    }
+
+    /**
+     * Merges the two sequence ordered lists so the client sees one increasing sequence.
+     */
+    private void sendInSequence(List<LevelUpdateDto> levelUpdates, List<TradePrintDto> tradePrints) throws IOException {
+        int l = 0;
+        int t = 0;
+        while (l < levelUpdates.size() || t < tradePrints.size()) {
+            if (t == tradePrints.size()
+                    || (l < levelUpdates.size() && levelUpdates.get(l).getSequence() < tradePrints.get(t).getSequence())) {
+                LevelUpdateDto update = levelUpdates.get(l++);
+                sink.send("level", update.getSequence(), update);
+            } else {
+                TradePrintDto trade = tradePrints.get(t++);
+                sink.send("trade", trade.getSequence(), trade);
+            }
+        }
+    }
+}
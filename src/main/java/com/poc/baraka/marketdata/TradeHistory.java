@@ -0,0 +1,248 @@
+package com.poc.baraka.marketdata;
+
+import com.poc.baraka.config.MatchingEngineProperties;
+import com.poc.baraka.dto.CandleDto;
+import com.poc.baraka.dto.ExecutedTradeDto;
+import com.poc.baraka.engine.OrderBook;
+import com.poc.baraka.engine.OrderBookListener;
+import com.poc.baraka.engine.OrderEntry;
+import com.poc.baraka.enums.OrderDirectionEnum;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+import static com.poc.baraka.utils.DecimalUtils.fromUnits;
+
+/**
+ * Latest trades and OHLCV candles of every asset, built incrementally from the fills as the matching
+ * loop produces them, so a read only copies what is already there.
+ * <p>
+ * Everything is kept in rings of primitive columns: the latest {@code recentTrades} trades, and per
+ * candle interval the latest {@code candles} candles. A trade lands in the candle of the time its
+ * incoming order was entered, so replaying the journal on startup rebuilds the same candles. A trade
+ * entered before the open candle started is folded into it rather than reopening an older one.
+ * <p>
+ * Only the matcher thread of an asset's shard writes its history. Readers copy it under an optimistic
+ * read of a {@link StampedLock} and retry if a trade came in meanwhile, so they never hold up matching.
+ *
+ * @author Waqas Ahmed
+ */
+@Component
+public class TradeHistory implements OrderBookListener {
+
+    private final int recentTrades;
+    private final long[] intervals;
+    private final int candles;
+    private final Map<String, AssetHistory> histories = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TradeHistory(MatchingEngineProperties properties) {
+        this(properties.getMarketData().getRecentTrades(), properties.getMarketData().getCandleIntervals(),
+                properties.getMarketData().getCandles());
+    }
+
+    public TradeHistory(int recentTrades, List<Duration> intervals, int candles) {
+        this.recentTrades = Math.max(1, recentTrades);
+        this.intervals = intervals.stream().mapToLong(Duration::toMillis).toArray();
+        this.candles = Math.max(1, candles);
+    }
+
+    @Override
+    public void onTrade(OrderBook book, OrderEntry incoming, OrderEntry resting, long quantity) {
+        AssetHistory history = histories.get(book.getAsset());
+        if (history == null) {
+            history = histories.computeIfAbsent(book.getAsset(), asset -> new AssetHistory(book));
+        }
+        history.add(book.getLastTradeId(), incoming, resting, quantity);
+    }
+
+    /**
+     * @return the asset's latest trades, newest first, or null if it never traded
+     */
+    public List<ExecutedTradeDto> getTrades(String asset, int limit) {
+        AssetHistory history = histories.get(asset);
+        return history != null ? history.trades(limit) : null;
+    }
+
+    /**
+     * @return the asset's latest candles of the interval, oldest first, or null if it never traded
+     * @throws IllegalArgumentException if candles are not built at that interval
+     */
+    public List<CandleDto> getCandles(String asset, Duration interval, int limit) {
+        int index = intervalIndex(interval.toMillis());
+        if (index < 0) {
+            throw new IllegalArgumentException("Candles are built at " + getIntervals() + " only");
+        }
+        AssetHistory history = histories.get(asset);
+        return history != null ? history.candles(index, limit) : null;
+    }
+
+    public List<Duration> getIntervals() {
+        List<Duration> durations = new ArrayList<>(intervals.length);
+        for (long interval : intervals) {
+            durations.add(Duration.ofMillis(interval));
+        }
+        return durations;
+    }
+
+    private int intervalIndex(long millis) {
+        for (int i = 0; i < intervals.length; i++) {
+            if (intervals[i] == millis) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Trade ring and candle rings of one asset.
+     */
+    private final class AssetHistory {
+
+        final int priceScale;
+        final int quantityScale;
+        final StampedLock lock = new StampedLock();
+
+        // Latest trades, slot = count % recentTrades
+        final long[] tradeIds = new long[recentTrades];
+        final long[] prices = new long[recentTrades];
+        final long[] quantities = new long[recentTrades];
+        final long[] buyers = new long[recentTrades];
+        final long[] sellers = new long[recentTrades];
+        final long[] times = new long[recentTrades];
+        final boolean[] buyAggressor = new boolean[recentTrades];
+        long tradeCount;
+
+        // One ring of candles per interval, slot = index % candles
+        final long[][] starts = new long[intervals.length][candles];
+        final long[][] opens = new long[intervals.length][candles];
+        final long[][] highs = new long[intervals.length][candles];
+        final long[][] lows = new long[intervals.length][candles];
+        final long[][] closes = new long[intervals.length][candles];
+        final long[][] volumes = new long[intervals.length][candles];
+        final int[][] counts = new int[intervals.length][candles];
+        // Candles opened so far per interval, the open one is the last
+        final long[] candleCount = new long[intervals.length];
+
+        AssetHistory(OrderBook book) {
+            this.priceScale = book.getPriceScale();
+            this.quantityScale = book.getQuantityScale();
+        }
+
+        void add(long tradeId, OrderEntry incoming, OrderEntry resting, long quantity) {
+            long price = resting.getPrice();
+            long time = incoming.getTimestamp();
+            long stamp = lock.writeLock();
+            try {
+                int slot = (int) (tradeCount % recentTrades);
+                tradeIds[slot] = tradeId;
+                prices[slot] = price;
+                quantities[slot] = quantity;
+                buyers[slot] = incoming.isBuy() ? incoming.getId() : resting.getId();
+                sellers[slot] = incoming.isBuy() ? resting.getId() : incoming.getId();
+                times[slot] = time;
+                buyAggressor[slot] = incoming.isBuy();
+                tradeCount++;
+                for (int i = 0; i < intervals.length; i++) {
+                    addToCandle(i, time - Math.floorMod(time, intervals[i]), price, quantity);
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private void addToCandle(int interval, long start, long price, long quantity) {
+            long n = candleCount[interval];
+            int slot = (int) ((n - 1) % candles);
+            if (n == 0 || start > starts[interval][slot]) {
+                slot = (int) (n % candles);
+                starts[interval][slot] = start;
+                opens[interval][slot] = price;
+                highs[interval][slot] = price;
+                lows[interval][slot] = price;
+                volumes[interval][slot] = 0;
+                counts[interval][slot] = 0;
+                candleCount[interval] = n + 1;
+            }
+            highs[interval][slot] = Math.max(highs[interval][slot], price);
+            lows[interval][slot] = Math.min(lows[interval][slot], price);
+            closes[interval][slot] = price;
+            volumes[interval][slot] += quantity;
+            counts[interval][slot]++;
+        }
+
+        List<ExecutedTradeDto> trades(int limit) {
+            return read(() -> {
+                int n = (int) Math.min(Math.min(tradeCount, recentTrades), limit);
+                List<ExecutedTradeDto> trades = new ArrayList<>(n);
+                for (long i = tradeCount - 1; i >= tradeCount - n; i--) {
+                    int slot = (int) (i % recentTrades);
+                    trades.add(ExecutedTradeDto.builder()
+                            .tradeId(tradeIds[slot])
+                            .price(fromUnits(prices[slot], priceScale, 0))
+                            .amount(fromUnits(quantities[slot], quantityScale, 0))
+                            .aggressorSide((buyAggressor[slot] ? OrderDirectionEnum.BUY : OrderDirectionEnum.SELL).name())
+                            .buyOrderId(buyers[slot])
+                            .sellOrderId(sellers[slot])
+                            .timestamp(times[slot])
+                            .build());
+                }
+                return trades;
+            });
+        }
+
+        List<CandleDto> candles(int interval, int limit) {
+            return read(() -> {
+                long count = candleCount[interval];
+                int n = (int) Math.min(Math.min(count, candles), limit);
+                List<CandleDto> list = new ArrayList<>(n);
+                for (long i = count - n; i < count; i++) {
+                    int slot = (int) (i % candles);
+                    list.add(CandleDto.builder()
+                            .start(starts[interval][slot])
+                            .open(fromUnits(opens[interval][slot], priceScale, 0))
+                            .high(fromUnits(highs[interval][slot], priceScale, 0))
+                            .low(fromUnits(lows[interval][slot], priceScale, 0))
+                            .close(fromUnits(closes[interval][slot], priceScale, 0))
+                            .volume(fromUnits(volumes[interval][slot], quantityScale, 0))
+                            .trades(counts[interval][slot])
+                            .build());
+                }
+                return list;
+            });
+        }
+
+        /**
+         * Copies under an optimistic read, falling back to a read lock if trades keep coming in.
+         */
+        private <T> T read(Supplier<T> copy) {
+            for (int attempt = 0; attempt < 3; attempt++) {
+                long stamp = lock.tryOptimisticRead();
+                if (stamp == 0) {
+                    continue;
+                }
+                try {
+                    T result = copy.get();
+                    if (lock.validate(stamp)) {
+                        return result;
+                    }
+                } catch (RuntimeException e) {
+                    // A torn read can go out of bounds or build an odd decimal, it is thrown away
+                }
+            }
+            long stamp = lock.readLock();
+            try {
+                return copy.get();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
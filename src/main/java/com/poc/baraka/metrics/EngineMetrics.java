@@ -0,0 +1,93 @@
+package com.poc.baraka.metrics;
+
+import com.poc.baraka.engine.OrderBook;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency per {@link Stage}, order/trade/cancel counters and per asset book gauges, published through
+ * Micrometer and so the actuator {@code metrics} and {@code prometheus} endpoints.
+ * <p>
+ * Timers keep their percentiles in HdrHistogram based ring buffers. Every meter is created up front or
+ * once per book, so recording on the matcher threads is a plain update that allocates nothing.
+ *
+ * @author Waqas Ahmed
+ */
+@Component
+public class EngineMetrics {
+
+    private final MeterRegistry registry;
+    private final Timer[] stages;
+    private final Counter ordersPlaced;
+    private final Counter ordersCanceled;
+    private final Counter ordersAmended;
+    private final Counter trades;
+
+    public EngineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.stages = new Timer[Stage.values().length];
+        for (Stage stage : Stage.values()) {
+            stages[stage.ordinal()] = Timer.builder("matching.stage.latency")
+                    .description("Time an order spends in each stage")
+                    .tag("stage", stage.getTag())
+                    .publishPercentiles(0.5, 0.9, 0.99, 0.999)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(500))
+                    .maximumExpectedValue(Duration.ofSeconds(1))
+                    .register(registry);
+        }
+        this.ordersPlaced = Counter.builder("matching.orders.placed").register(registry);
+        this.ordersCanceled = Counter.builder("matching.orders.canceled").register(registry);
+        this.ordersAmended = Counter.builder("matching.orders.amended").register(registry);
+        this.trades = Counter.builder("matching.trades").register(registry);
+    }
+
+    public void record(Stage stage, long nanos) {
+        stages[stage.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void orderPlaced(int tradeCount) {
+        ordersPlaced.increment();
+        if (tradeCount > 0) {
+            trades.increment(tradeCount);
+        }
+    }
+
+    public void orderCanceled() {
+        ordersCanceled.increment();
+    }
+
+    /**
+     * @param tradeCount trades of an amended order that crossed the book at its new price
+     */
+    public void orderAmended(int tradeCount) {
+        ordersAmended.increment();
+        if (tradeCount > 0) {
+            trades.increment(tradeCount);
+        }
+    }
+
+    /**
+     * Registers the depth gauges of a new book. The gauges read the book from the metrics thread,
+     * which is fine for counts that are only sampled.
+     */
+    public void bindBook(OrderBook book) {
+        String asset = book.getAsset();
+        Gauge.builder("orderbook.levels", book, OrderBook::getBidLevels)
+                .tag("asset", asset).tag("side", "bid").register(registry);
+        Gauge.builder("orderbook.levels", book, OrderBook::getAskLevels)
+                .tag("asset", asset).tag("side", "ask").register(registry);
+        Gauge.builder("orderbook.resting.orders", book, OrderBook::getRestingOrders)
+                .tag("asset", asset).register(registry);
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+}
@@ -0,0 +1,58 @@
+package com.poc.baraka.metrics;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Stage timestamps of one order request, kept as a request attribute by {@link StageTimingFilter}.
+ * Unset marks are 0 and their stages are simply not recorded.
+ *
+ * @author Waqas Ahmed
+ */
+public class RequestStages {
+
+    static final String ATTRIBUTE = RequestStages.class.getName();
+
+    final long startedAt;
+    long decodedAt;
+    long handledAt;
+    long respondedAt;
+
+    RequestStages(long startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    /**
+     * @return the stages of the request bound to this thread, or null if it is not timed
+     */
+    static RequestStages current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes != null
+                && attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof RequestStages stages
+                ? stages : null;
+    }
+
+    /**
+     * Marks the controller being reached, after the body was decoded and validated. No-op outside a
+     * timed request.
+     */
+    public static void markHandled() {
+        RequestStages stages = current();
+        if (stages != null) {
+            stages.handledAt = System.nanoTime();
+        }
+    }
+
+    void record(EngineMetrics metrics, long completedAt) {
+        if (decodedAt > 0) {
+            metrics.record(Stage.DECODE, decodedAt - startedAt);
+            if (handledAt > 0) {
+                metrics.record(Stage.VALIDATION, handledAt - decodedAt);
+            }
+        }
+        if (respondedAt > 0) {
+            metrics.record(Stage.RESPONSE, completedAt - respondedAt);
+        }
+        metrics.record(Stage.TOTAL, completedAt - startedAt);
+    }
+}
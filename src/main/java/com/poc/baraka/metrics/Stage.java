@@ -0,0 +1,52 @@
+package com.poc.baraka.metrics;
+
+/**
+ * Stages an order goes through, each recorded on its own latency timer.
+ *
+ * @author Waqas Ahmed
+ */
+public enum Stage {
+
+    /**
+     * Request accepted until its JSON body is read.
+     */
+    DECODE("decode"),
+    /**
+     * Body read until the controller runs, i.e. bean validation.
+     */
+    VALIDATION("validation"),
+    /**
+     * Command published until its matcher thread picks it up.
+     */
+    QUEUE("queue"),
+    /**
+     * Matching a placed order on the matcher thread.
+     */
+    MATCH("match"),
+    /**
+     * Canceling an order on the matcher thread.
+     */
+    CANCEL("cancel"),
+    /**
+     * Amending an order on the matcher thread, matching it again included.
+     */
+    AMEND("amend"),
+    /**
+     * Controller returned until the response is written.
+     */
+    RESPONSE("response"),
+    /**
+     * Whole request, first to last byte.
+     */
+    TOTAL("total");
+
+    private final String tag;
+
+    Stage(String tag) {
+        this.tag = tag;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+}
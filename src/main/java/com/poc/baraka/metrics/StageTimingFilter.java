@@ -0,0 +1,45 @@
+package com.poc.baraka.metrics;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Times order placement requests end to end and records their HTTP side stages once the response
+ * is written. The engine side stages are recorded by the matching shards.
+ *
+ * @author Waqas Ahmed
+ */
+@Component
+public class StageTimingFilter extends OncePerRequestFilter {
+
+    private static final String ORDERS_PATH = "/api/v1/orders";
+
+    private final EngineMetrics metrics;
+
+    public StageTimingFilter(EngineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || !ORDERS_PATH.equals(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestStages stages = new RequestStages(System.nanoTime());
+        request.setAttribute(RequestStages.ATTRIBUTE, stages);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            stages.record(metrics, System.nanoTime());
+        }
+    }
+}
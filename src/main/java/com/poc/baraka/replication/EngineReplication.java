@@ -0,0 +1,162 @@
+package com.poc.baraka.replication;
+
+import com.poc.baraka.config.MatchingEngineProperties;
+import com.poc.baraka.dto.ReplicationStatusDto;
+import com.poc.baraka.helper.MatchingEngineHelper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ByteChannel;
+
+/**
+ * Hot standby for the matching engine. A primary streams its sequenced command stream, the journal
+ * records, to one replica; the replica applies the same commands in the same order to its own books,
+ * the way a restart replays the journal, so it is always a replay lag away from taking over.
+ * <p>
+ * A replica that connects first gets a snapshot of the primary's books, copied the way a periodic
+ * snapshot is, then every record journaled after it. Promoting the replica, on the admin call or
+ * right away when it loses the primary with {@code auto-promote}, only waits for its shards to apply
+ * what they were given: nothing has to be rebuilt. The primary does not notice a failover by itself,
+ * fencing the old one is left to whoever promotes.
+ *
+ * @author Waqas Ahmed
+ */
+@Component
+public class EngineReplication {
+
+    private static final Logger log = LoggerFactory.getLogger(EngineReplication.class);
+
+    private final MatchingEngineProperties.Replication settings;
+    private final MatchingEngineHelper matchingEngine;
+    private final ReplicationTransport transport;
+    private final ReplicaLink replicaLink;
+    private final Thread acceptor;
+
+    private volatile PrimaryLink primaryLink;
+    private volatile boolean running = true;
+
+    @Autowired
+    public EngineReplication(MatchingEngineProperties properties, MatchingEngineHelper matchingEngine) {
+        this(properties, matchingEngine, openTransport(properties.getReplication()));
+    }
+
+    public EngineReplication(MatchingEngineProperties properties, MatchingEngineHelper matchingEngine,
+                             ReplicationTransport transport) {
+        this.settings = properties.getReplication();
+        this.matchingEngine = matchingEngine;
+        this.transport = transport;
+        if (settings.getRole() == ReplicationRole.PRIMARY) {
+            if (!properties.getJournal().isEnabled()) {
+                throw new IllegalStateException("A replication primary streams its journal, enable matching.journal");
+            }
+            this.replicaLink = null;
+            this.acceptor = new Thread(this::acceptReplicas, "replication-acceptor");
+            this.acceptor.setDaemon(true);
+            this.acceptor.start();
+            log.info("Replication primary waiting for a replica, {} acks", settings.getPolicy());
+        } else if (settings.getRole() == ReplicationRole.REPLICA) {
+            this.acceptor = null;
+            this.replicaLink = new ReplicaLink(transport, matchingEngine, () -> {
+                if (settings.isAutoPromote()) {
+                    promote();
+                }
+            });
+            this.replicaLink.start();
+        } else {
+            this.acceptor = null;
+            this.replicaLink = null;
+        }
+    }
+
+    private static ReplicationTransport openTransport(MatchingEngineProperties.Replication settings) {
+        try {
+            return switch (settings.getRole()) {
+                case PRIMARY -> TcpReplicationTransport.listen(settings.getPort());
+                case REPLICA -> TcpReplicationTransport.connectTo(settings.getHost(), settings.getPort());
+                case NONE -> null;
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot listen for a replica on port " + settings.getPort(), e);
+        }
+    }
+
+    /**
+     * Serves one replica at a time, a new one replaces the previous link.
+     */
+    private void acceptReplicas() {
+        while (running) {
+            try {
+                ByteChannel channel = transport.accept();
+                PrimaryLink previous = primaryLink;
+                if (previous != null) {
+                    log.info("A new replica connected, dropping the previous one");
+                    previous.close();
+                }
+                PrimaryLink link = new PrimaryLink(channel, settings.getPolicy(), settings.getSyncTimeoutMs(),
+                        settings.getMaxQueuedBytes(), matchingEngine::detachReplica);
+                primaryLink = link;
+                link.start(matchingEngine.attachReplica(link));
+            } catch (IOException e) {
+                if (running) {
+                    log.error("Failed to accept a replica", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes this standby replica the primary: it stops following the old primary, catches up on what
+     * it already received and takes orders from then on.
+     */
+    public synchronized ReplicationStatusDto promote() {
+        if (settings.getRole() != ReplicationRole.REPLICA) {
+            throw new IllegalStateException("Only a standby replica can be promoted");
+        }
+        if (!matchingEngine.isPrimary()) {
+            replicaLink.stop();
+            matchingEngine.promote();
+        }
+        return getStatus();
+    }
+
+    public ReplicationStatusDto getStatus() {
+        PrimaryLink link = primaryLink;
+        boolean inStep = switch (settings.getRole()) {
+            case PRIMARY -> link != null && link.isInStep();
+            case REPLICA -> replicaLink.isInStep();
+            case NONE -> false;
+        };
+        return ReplicationStatusDto.builder()
+                .role(settings.getRole().name())
+                .policy(settings.getPolicy().name())
+                .primary(matchingEngine.isPrimary())
+                .inStep(inStep)
+                .sequence(matchingEngine.getSequence())
+                .acknowledgedSequence(link != null && inStep ? link.getAcked() : null)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (replicaLink != null) {
+            replicaLink.stop();
+        }
+        PrimaryLink link = primaryLink;
+        if (link != null) {
+            link.close();
+        }
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (IOException e) {
+                log.error("Failed to close the replication transport", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.poc.baraka.replication;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.Pipe;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Replication between two engines of the same process, over a pair of pipes. One instance is shared
+ * by the primary and the replica, for tests.
+ *
+ * @author Waqas Ahmed
+ */
+public final class LoopbackReplicationTransport implements ReplicationTransport {
+
+    private static final ByteChannel CLOSED = new PipeChannel(null, null);
+
+    private final BlockingQueue<ByteChannel> connections = new LinkedBlockingQueue<>();
+
+    @Override
+    public ByteChannel accept() throws IOException {
+        try {
+            ByteChannel channel = connections.take();
+            if (channel == CLOSED) {
+                connections.add(CLOSED);
+                throw new AsynchronousCloseException();
+            }
+            return channel;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a replica");
+        }
+    }
+
+    @Override
+    public ByteChannel connect() throws IOException {
+        Pipe toReplica = Pipe.open();
+        Pipe toPrimary = Pipe.open();
+        connections.add(new PipeChannel(toPrimary.source(), toReplica.sink()));
+        return new PipeChannel(toReplica.source(), toPrimary.sink());
+    }
+
+    @Override
+    public void close() {
+        connections.add(CLOSED);
+    }
+
+    /**
+     * One end of the link, reading from one pipe and writing to the other.
+     */
+    private record PipeChannel(Pipe.SourceChannel source, Pipe.SinkChannel sink) implements ByteChannel {
+
+        @Override
+        public int read(ByteBuffer buffer) throws IOException {
+            return source.read(buffer);
+        }
+
+        @Override
+        public int write(ByteBuffer buffer) throws IOException {
+            return sink.write(buffer);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return source.isOpen() && sink.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+            sink.close();
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.poc.baraka.replication;
+
+import com.poc.baraka.journal.EngineSnapshot;
+import com.poc.baraka.journal.OrderJournal;
+import com.poc.baraka.journal.SnapshotStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * The primary's end of the link to one replica. As a journal {@link OrderJournal.Tap} it copies every
+ * record into a send buffer on the appending matcher thread; a sender thread writes the buffer out
+ * as {@code RECORDS} frames, behind the snapshot the stream starts from, and a reader thread takes
+ * in the replica's acks.
+ * <p>
+ * With {@link ReplicationPolicy#SYNC} a matcher applies its commands at full speed and, once per drained
+ * batch, waits for the ack of its last record before completing them, spinning briefly and then parking.
+ * Records journaled while the snapshot is still on its way do not wait, the replica is not in step
+ * before it has it. A replica that does not ack in time, or
+ * falls further behind than the send buffer allows, is dropped and the primary goes on alone.
+ *
+ * @author Waqas Ahmed
+ */
+final class PrimaryLink implements OrderJournal.Tap {
+
+    private static final Logger log = LoggerFactory.getLogger(PrimaryLink.class);
+
+    private static final int SPIN_TRIES = 1_000;
+    private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+
+    private final ByteChannel channel;
+    private final ReplicationPolicy policy;
+    private final long syncTimeoutNanos;
+    private final int maxQueuedBytes;
+    private final Consumer<PrimaryLink> onClose;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition queued = lock.newCondition();
+    // Guarded by lock
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    // Only used by the sender thread
+    private ByteBuffer sending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    private volatile boolean inStep;
+    private volatile boolean closed;
+    private volatile long acked;
+
+    /**
+     * @param onClose run once on the sender thread when the link is gone, to remove the tap
+     */
+    PrimaryLink(ByteChannel channel, ReplicationPolicy policy, long syncTimeoutMs, int maxQueuedBytes,
+                Consumer<PrimaryLink> onClose) {
+        this.channel = channel;
+        this.policy = policy;
+        this.syncTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(syncTimeoutMs);
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.onClose = onClose;
+    }
+
+    /**
+     * Starts streaming: the snapshot once it is copied, then every record tapped since.
+     */
+    void start(CompletableFuture<EngineSnapshot> snapshot) {
+        Thread sender = new Thread(() -> send(snapshot), "replication-sender");
+        sender.setDaemon(true);
+        sender.start();
+        Thread reader = new Thread(this::readAcks, "replication-acks");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    boolean isInStep() {
+        return inStep && !closed;
+    }
+
+    long getAcked() {
+        return acked;
+    }
+
+    @Override
+    public void onAppend(ByteBuffer record, long sequence) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (pending.remaining() < record.remaining()) {
+                int needed = pending.position() + record.remaining();
+                if (needed > maxQueuedBytes) {
+                    log.warn("Replica fell more than {} bytes behind at sequence {}, dropping it", maxQueuedBytes, sequence);
+                    closeLocked();
+                    return;
+                }
+                pending = ByteBuffer.allocate(Math.min(maxQueuedBytes, Math.max(needed, pending.capacity() * 2)))
+                        .put(pending.flip());
+            }
+            pending.put(record);
+            queued.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isSynchronous() {
+        return policy == ReplicationPolicy.SYNC && inStep && !closed;
+    }
+
+    @Override
+    public void awaitReplicated(long sequence) {
+        if (policy != ReplicationPolicy.SYNC || !inStep) {
+            return;
+        }
+        long deadline = System.nanoTime() + syncTimeoutNanos;
+        int tries = 0;
+        while (acked < sequence && !closed) {
+            if (tries < SPIN_TRIES) {
+                tries++;
+                Thread.onSpinWait();
+            } else if (System.nanoTime() - deadline > 0) {
+                log.warn("Replica did not acknowledge sequence {} in time, dropping it", sequence);
+                close();
+                return;
+            } else {
+                LockSupport.parkNanos(10_000L);
+            }
+        }
+    }
+
+    private void send(CompletableFuture<EngineSnapshot> snapshot) {
+        try {
+            ByteArrayOutputStream state = new ByteArrayOutputStream();
+            SnapshotStore.writeTo(snapshot.join(), state);
+            ReplicationProtocol.write(channel, ReplicationProtocol.header(ReplicationProtocol.SNAPSHOT, state.size()));
+            ReplicationProtocol.write(channel, ByteBuffer.wrap(state.toByteArray()));
+            inStep = true;
+            log.info("Replica is in step from sequence {}", snapshot.join().getReplayFrom());
+            while (true) {
+                ByteBuffer batch = swap();
+                if (batch == null) {
+                    break;
+                }
+                ReplicationProtocol.write(channel, ReplicationProtocol.header(ReplicationProtocol.RECORDS, batch.remaining()));
+                ReplicationProtocol.write(channel, batch);
+                batch.clear();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (!closed) {
+                log.warn("Replication link to the replica failed: {}", e.toString());
+            }
+        } finally {
+            close();
+            onClose.accept(this);
+        }
+    }
+
+    /**
+     * Waits for records and hands them to the sender, taking the drained buffer back for the next round.
+     *
+     * @return the records, ready to write, or null once the link is closed
+     */
+    private ByteBuffer swap() {
+        lock.lock();
+        try {
+            while (pending.position() == 0 && !closed) {
+                queued.awaitUninterruptibly();
+            }
+            if (closed) {
+                return null;
+            }
+            ByteBuffer records = pending;
+            pending = sending.capacity() >= records.capacity() ? sending : ByteBuffer.allocate(records.capacity());
+            sending = records;
+            return records.flip();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void readAcks() {
+        try {
+            ByteBuffer frame;
+            while ((frame = ReplicationProtocol.read(channel)) != null) {
+                if (frame.get() == ReplicationProtocol.ACK) {
+                    acked = Math.max(acked, frame.getLong());
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                log.warn("Replica link closed: {}", e.toString());
+            }
+        }
+        close();
+    }
+
+    /**
+     * Stops the link. Closing the channel also breaks off a write the replica does not read, the
+     * sender thread then removes the tap.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closeLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeLocked() {
+        if (!closed) {
+            closed = true;
+            queued.signal();
+            closeChannel();
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Failed to close the replication link", e);
+        }
+    }
+}
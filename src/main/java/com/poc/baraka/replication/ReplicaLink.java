@@ -0,0 +1,157 @@
+package com.poc.baraka.replication;
+
+import com.poc.baraka.helper.MatchingEngineHelper;
+import com.poc.baraka.journal.SnapshotStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+
+/**
+ * The replica's end of the link. A single thread connects to the primary, loads the snapshot it
+ * sends and then applies every streamed record to the local engine, in sequence order, acking each
+ * frame once its commands are queued to their shards.
+ * <p>
+ * The books only follow one primary from one snapshot on. Once the link is lost the replica stays
+ * as it is, ready to be promoted, and does not connect again.
+ *
+ * @author Waqas Ahmed
+ */
+final class ReplicaLink {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLink.class);
+
+    private static final long RETRY_MS = 1_000L;
+
+    private final ReplicationTransport transport;
+    private final MatchingEngineHelper matchingEngine;
+    private final Runnable onLost;
+    private final Thread thread;
+
+    private volatile ByteChannel channel;
+    private volatile boolean running = true;
+    private volatile boolean inStep;
+
+    /**
+     * @param onLost run on the link's thread once an established link is lost
+     */
+    ReplicaLink(ReplicationTransport transport, MatchingEngineHelper matchingEngine, Runnable onLost) {
+        this.transport = transport;
+        this.matchingEngine = matchingEngine;
+        this.onLost = onLost;
+        this.thread = new Thread(this::run, "replication-replica");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    boolean isInStep() {
+        return inStep && running;
+    }
+
+    private void run() {
+        if (!connect()) {
+            return;
+        }
+        try {
+            ByteBuffer frame;
+            while (running && (frame = ReplicationProtocol.read(channel)) != null) {
+                byte type = frame.get();
+                if (type == ReplicationProtocol.SNAPSHOT) {
+                    matchingEngine.loadReplica(SnapshotStore.readFrom(
+                            new ByteArrayInputStream(frame.array(), frame.position(), frame.remaining())));
+                    inStep = true;
+                    log.info("Replica loaded the primary's state at sequence {}", matchingEngine.getSequence());
+                } else if (type == ReplicationProtocol.RECORDS) {
+                    long sequence = apply(frame);
+                    ReplicationProtocol.write(channel, ReplicationProtocol.ack(sequence));
+                }
+            }
+            if (running) {
+                log.warn("Primary closed the replication link at sequence {}", matchingEngine.getSequence());
+            }
+        } catch (IOException | RuntimeException e) {
+            if (running) {
+                log.warn("Replication link to the primary failed at sequence {}: {}", matchingEngine.getSequence(),
+                        e.toString());
+            }
+        }
+        inStep = false;
+        closeChannel();
+        if (running) {
+            onLost.run();
+        }
+    }
+
+    /**
+     * @return false if the link was stopped before it connected
+     */
+    private boolean connect() {
+        while (running) {
+            try {
+                channel = transport.connect();
+                log.info("Replica connected to the primary");
+                return true;
+            } catch (IOException e) {
+                log.debug("Primary not reachable yet: {}", e.toString());
+                try {
+                    Thread.sleep(RETRY_MS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Applies the records of a frame one by one.
+     *
+     * @return sequence of the last one
+     */
+    private long apply(ByteBuffer records) {
+        long sequence = matchingEngine.getSequence();
+        while (records.hasRemaining()) {
+            int length = 4 + records.getInt(records.position());
+            sequence = matchingEngine.applyReplicated(records.slice(records.position(), length));
+            records.position(records.position() + length);
+        }
+        return sequence;
+    }
+
+    /**
+     * Stops following the primary and waits until the last frame read is applied.
+     */
+    void stop() {
+        running = false;
+        closeChannel();
+        if (channel == null) {
+            // Still waiting to retry the connect
+            thread.interrupt();
+        }
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join(5_000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void closeChannel() {
+        ByteChannel current = channel;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                log.debug("Failed to close the replication link", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.poc.baraka.replication;
+
+/**
+ * When the primary acknowledges a command relative to its replica receiving it.
+ *
+ * @author Waqas Ahmed
+ */
+public enum ReplicationPolicy {
+    /**
+     * Applies right away, the replica trails by whatever is still in flight.
+     */
+    ASYNC,
+    /**
+     * Applies right away but holds the command's acknowledgement until the replica acknowledged its
+     * record, so a failover loses nothing that was acknowledged to a client.
+     */
+    SYNC
+}
@@ -0,0 +1,80 @@
+package com.poc.baraka.replication;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Frames exchanged between a primary and its replica. Every frame is {@code int length | byte type |
+ * payload}, the length counting type and payload.
+ * <ul>
+ * <li>{@code SNAPSHOT}, primary to replica, once: the engine state the stream starts from, in the
+ * snapshot file format.</li>
+ * <li>{@code RECORDS}, primary to replica: journal records back to back, exactly as journaled.</li>
+ * <li>{@code ACK}, replica to primary: {@code long} sequence of the last record the replica queued.</li>
+ * </ul>
+ *
+ * @author Waqas Ahmed
+ */
+final class ReplicationProtocol {
+
+    static final byte SNAPSHOT = 1;
+    static final byte RECORDS = 2;
+    static final byte ACK = 3;
+
+    static final int HEADER_LENGTH = 4 + 1;
+    static final int MAX_FRAME_LENGTH = 1 << 30;
+
+    private ReplicationProtocol() {
+    }
+
+    static ByteBuffer header(byte type, int payloadLength) {
+        return ByteBuffer.allocate(HEADER_LENGTH).putInt(1 + payloadLength).put(type).flip();
+    }
+
+    static ByteBuffer ack(long sequence) {
+        return ByteBuffer.allocate(HEADER_LENGTH + 8).putInt(1 + 8).put(ACK).putLong(sequence).flip();
+    }
+
+    static void write(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Reads the next frame whole.
+     *
+     * @return the frame, positioned at its type byte, or null once the other side closed the link
+     */
+    static ByteBuffer read(ReadableByteChannel channel) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        if (!fill(channel, length, true)) {
+            return null;
+        }
+        int frameLength = length.getInt(0);
+        if (frameLength < 1 || frameLength > MAX_FRAME_LENGTH) {
+            throw new IOException("Replication frame of " + frameLength + " bytes");
+        }
+        ByteBuffer frame = ByteBuffer.allocate(frameLength);
+        fill(channel, frame, false);
+        return frame.flip();
+    }
+
+    /**
+     * @return false if the link closed before the first byte
+     */
+    private static boolean fill(ReadableByteChannel channel, ByteBuffer buffer, boolean atFrameStart) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (atFrameStart && buffer.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("Replication link closed in the middle of a frame");
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,21 @@
+package com.poc.baraka.replication;
+
+/**
+ * Part a node plays in primary/replica replication of the matching engine.
+ *
+ * @author Waqas Ahmed
+ */
+public enum ReplicationRole {
+    /**
+     * Runs alone, nothing is replicated.
+     */
+    NONE,
+    /**
+     * Takes orders and streams its journal to a standby replica.
+     */
+    PRIMARY,
+    /**
+     * Applies the primary's stream and serves reads only, until it is promoted.
+     */
+    REPLICA
+}
@@ -0,0 +1,24 @@
+package com.poc.baraka.replication;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.ByteChannel;
+
+/**
+ * Carries the replication link between a primary and its replica: TCP between processes, or
+ * in-process pipes for tests. Channels are blocking.
+ *
+ * @author Waqas Ahmed
+ */
+public interface ReplicationTransport extends Closeable {
+
+    /**
+     * Primary side: waits for the next replica to connect.
+     */
+    ByteChannel accept() throws IOException;
+
+    /**
+     * Replica side: connects to the primary.
+     */
+    ByteChannel connect() throws IOException;
+}
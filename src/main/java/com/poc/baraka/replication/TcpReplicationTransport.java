@@ -0,0 +1,78 @@
+package com.poc.baraka.replication;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Replication over a TCP connection, with Nagle off so small record frames go out right away.
+ *
+ * @author Waqas Ahmed
+ */
+public final class TcpReplicationTransport implements ReplicationTransport {
+
+    private final ServerSocketChannel server;
+    private final InetSocketAddress primary;
+
+    private TcpReplicationTransport(ServerSocketChannel server, InetSocketAddress primary) {
+        this.server = server;
+        this.primary = primary;
+    }
+
+    /**
+     * Primary side, bound to the port right away, 0 picks a free one.
+     */
+    public static TcpReplicationTransport listen(int port) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        return new TcpReplicationTransport(server, null);
+    }
+
+    /**
+     * Replica side, connecting to the primary at the address.
+     */
+    public static TcpReplicationTransport connectTo(String host, int port) {
+        return new TcpReplicationTransport(null, new InetSocketAddress(host, port));
+    }
+
+    /**
+     * Port the primary listens on, or -1 on the replica side.
+     */
+    public int getPort() {
+        try {
+            return server != null ? ((InetSocketAddress) server.getLocalAddress()).getPort() : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public ByteChannel accept() throws IOException {
+        if (server == null) {
+            throw new IllegalStateException("A replica does not accept connections");
+        }
+        SocketChannel channel = server.accept();
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        return channel;
+    }
+
+    @Override
+    public ByteChannel connect() throws IOException {
+        if (primary == null) {
+            throw new IllegalStateException("A primary does not connect to anyone");
+        }
+        SocketChannel channel = SocketChannel.open(primary);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        return channel;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+    }
+}
@@ -1,12 +1,53 @@
 package com.poc.baraka.service;
 
+import com.poc.baraka.dto.AmendOrderRequest;
+import com.poc.baraka.dto.BatchCancelRequest;
+import com.poc.baraka.dto.BatchOrderRequest;
+import com.poc.baraka.dto.BatchResponse;
+import com.poc.baraka.dto.BookDepthDto;
+import com.poc.baraka.dto.CandleDto;
+import com.poc.baraka.dto.ExecutedTradeDto;
+import com.poc.baraka.dto.ExecutionReportDto;
+import com.poc.baraka.dto.OrderAckDto;
 import com.poc.baraka.dto.OrderRequest;
 import com.poc.baraka.dto.OrderResponse;
+import com.poc.baraka.dto.ReplicationStatusDto;
+import com.poc.baraka.dto.SnapshotResponse;
+import com.poc.baraka.dto.TopOfBookDto;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface OrderBookService {
     OrderResponse placeOrder(OrderRequest orderRequest);
 
+    OrderAckDto placeOrderAsync(String clientId, OrderRequest orderRequest);
+
+    CompletableFuture<List<ExecutionReportDto>> getExecutionReports(String clientId, long after, int limit, long timeoutMs);
+
     OrderResponse getOrderById(long orderId);
 
     OrderResponse cancelOrder(long orderId);
+
+    OrderResponse amendOrder(long orderId, AmendOrderRequest amendOrderRequest);
+
+    BatchResponse placeOrders(BatchOrderRequest batchOrderRequest);
+
+    BatchResponse cancelOrders(BatchCancelRequest batchCancelRequest);
+
+    BatchResponse cancelAllOrders(String asset);
+
+    BookDepthDto getBook(String asset, int depth);
+
+    TopOfBookDto getTopOfBook(String asset);
+
+    List<ExecutedTradeDto> getTrades(String asset, int limit);
+
+    List<CandleDto> getCandles(String asset, String interval, int limit);
+
+    SnapshotResponse takeSnapshot();
+
+    ReplicationStatusDto getReplicationStatus();
+
+    ReplicationStatusDto promoteReplica();
 }
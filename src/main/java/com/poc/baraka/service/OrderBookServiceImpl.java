@@ -1,18 +1,47 @@
 package com.poc.baraka.service;
 
 import com.poc.baraka.common.IdGenerator;
+import com.poc.baraka.dto.AmendOrderRequest;
+import com.poc.baraka.dto.BatchCancelRequest;
+import com.poc.baraka.dto.BatchItemResponse;
+import com.poc.baraka.dto.BatchOrderRequest;
+import com.poc.baraka.dto.BatchResponse;
+import com.poc.baraka.dto.BookDepthDto;
+import com.poc.baraka.dto.CandleDto;
+import com.poc.baraka.dto.ExecutedTradeDto;
+import com.poc.baraka.dto.ExecutionReportDto;
+import com.poc.baraka.dto.OrderAckDto;
 import com.poc.baraka.dto.OrderDto;
 import com.poc.baraka.dto.OrderRequest;
 import com.poc.baraka.dto.OrderResponse;
+import com.poc.baraka.dto.PriceLevelDto;
+import com.poc.baraka.dto.ReplicationStatusDto;
+import com.poc.baraka.dto.SnapshotResponse;
+import com.poc.baraka.dto.TopOfBookDto;
+import com.poc.baraka.engine.BookView;
+import com.poc.baraka.engine.OrderEntry;
+import com.poc.baraka.exception.InvalidOrderException;
 import com.poc.baraka.exception.NotFoundException;
+import com.poc.baraka.execution.ExecutionReports;
 import com.poc.baraka.helper.MatchingEngineHelper;
+import com.poc.baraka.marketdata.TradeHistory;
+import com.poc.baraka.replication.EngineReplication;
 import org.apache.commons.lang3.ObjectUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.BeanUtils;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static com.poc.baraka.utils.DecimalUtils.fromUnits;
 
 /**
  * @author Waqas Ahmed
@@ -20,25 +49,61 @@ import java.time.Instant;
 @Service
 public class OrderBookServiceImpl implements OrderBookService {
 
-    private static final Logger log = LoggerFactory.getLogger(OrderBookServiceImpl.class);
-
     private final IdGenerator idGenerator;
     private final MatchingEngineHelper matchingEngineHelper;
+    private final TradeHistory tradeHistory;
+    private final EngineReplication replication;
+    private final ExecutionReports executionReports;
 
-    public OrderBookServiceImpl(IdGenerator idGenerator, MatchingEngineHelper matchingEngineHelper) {
+    public OrderBookServiceImpl(IdGenerator idGenerator, MatchingEngineHelper matchingEngineHelper,
+                                TradeHistory tradeHistory, EngineReplication replication,
+                                ExecutionReports executionReports) {
         this.idGenerator = idGenerator;
         this.matchingEngineHelper = matchingEngineHelper;
+        this.tradeHistory = tradeHistory;
+        this.replication = replication;
+        this.executionReports = executionReports;
     }
 
     @Override
     public OrderResponse placeOrder(OrderRequest orderRequest) {
-        log.info("placeOrder execution starts");
         return matchingEngineHelper.matchOrder(mapToOrderDTO(orderRequest));
     }
 
+    @Override
+    public OrderAckDto placeOrderAsync(String clientId, OrderRequest orderRequest) {
+        checkClientId(clientId);
+        OrderDto order = mapToOrderDTO(orderRequest);
+        OrderEntry entry = matchingEngineHelper.toEntry(order);
+        CompletableFuture<OrderResponse> completion = new CompletableFuture<>();
+        long sequence = executionReports.track(clientId, entry, completion);
+        try {
+            matchingEngineHelper.placeOrder(entry, completion);
+        } catch (RuntimeException e) {
+            executionReports.release(order.getId());
+            throw e;
+        }
+        return OrderAckDto.builder().orderId(order.getId()).clientId(clientId).sequence(sequence).build();
+    }
+
+    @Override
+    public CompletableFuture<List<ExecutionReportDto>> getExecutionReports(String clientId, long after, int limit,
+                                                                           long timeoutMs) {
+        checkClientId(clientId);
+        if (limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be at least 1");
+        }
+        return executionReports.poll(clientId, after, limit, Math.max(0, timeoutMs));
+    }
+
+    private static void checkClientId(String clientId) {
+        if (StringUtils.isBlank(clientId)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A client id is mandatory");
+        }
+    }
+
     @Override
     public OrderResponse getOrderById(long orderId) {
-        log.info("getOrderById(...)");
         return matchingEngineHelper.getOrderById(orderId);
     }
 
@@ -53,6 +118,145 @@ public class OrderBookServiceImpl implements OrderBookService {
         return orderResponse;
     }
 
+    @Override
+    public OrderResponse amendOrder(long orderId, AmendOrderRequest amendOrderRequest) {
+        if (amendOrderRequest.getPrice() == null && amendOrderRequest.getAmount() == null) {
+            throw new InvalidOrderException("An amend needs a new price or amount");
+        }
+        OrderResponse orderResponse = matchingEngineHelper.amendOrder(orderId, amendOrderRequest.getPrice(),
+                amendOrderRequest.getAmount());
+        if (orderResponse != null) {
+            return orderResponse;
+        }
+        if (ObjectUtils.isEmpty(getOrderById(orderId))) {
+            throw new NotFoundException("");
+        }
+        throw new ResponseStatusException(HttpStatus.CONFLICT, "Order " + orderId + " is no longer open");
+    }
+
+    @Override
+    public BatchResponse placeOrders(BatchOrderRequest batchOrderRequest) {
+        List<OrderDto> orders = new ArrayList<>(batchOrderRequest.getOrders().size());
+        for (OrderRequest orderRequest : batchOrderRequest.getOrders()) {
+            orders.add(mapToOrderDTO(orderRequest));
+        }
+        return BatchResponse.builder().results(matchingEngineHelper.matchOrders(orders)).build();
+    }
+
+    @Override
+    public BatchResponse cancelOrders(BatchCancelRequest batchCancelRequest) {
+        return BatchResponse.builder().results(matchingEngineHelper.cancelOrders(batchCancelRequest.getOrderIds())).build();
+    }
+
+    @Override
+    public BatchResponse cancelAllOrders(String asset) {
+        List<OrderResponse> canceled = matchingEngineHelper.cancelAllOrders(asset);
+        List<BatchItemResponse> results = new ArrayList<>(canceled.size());
+        for (int i = 0; i < canceled.size(); i++) {
+            results.add(BatchItemResponse.builder().index(i).result(canceled.get(i)).build());
+        }
+        return BatchResponse.builder().results(results).build();
+    }
+
+    @Override
+    public BookDepthDto getBook(String asset, int depth) {
+        if (depth < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Depth must be at least 1");
+        }
+        BookView view = bookView(asset);
+        List<PriceLevelDto> bids = new ArrayList<>(Math.min(depth, view.getBidLevels()));
+        for (int i = 0; i < view.getBidLevels() && i < depth; i++) {
+            bids.add(level(view, true, i));
+        }
+        List<PriceLevelDto> asks = new ArrayList<>(Math.min(depth, view.getAskLevels()));
+        for (int i = 0; i < view.getAskLevels() && i < depth; i++) {
+            asks.add(level(view, false, i));
+        }
+        return BookDepthDto.builder().asset(asset).version(view.getVersion()).bids(bids).asks(asks).build();
+    }
+
+    @Override
+    public TopOfBookDto getTopOfBook(String asset) {
+        BookView view = bookView(asset);
+        return TopOfBookDto.builder()
+                .asset(asset)
+                .version(view.getVersion())
+                .bid(view.getBidLevels() > 0 ? level(view, true, 0) : null)
+                .ask(view.getAskLevels() > 0 ? level(view, false, 0) : null)
+                .build();
+    }
+
+    @Override
+    public List<ExecutedTradeDto> getTrades(String asset, int limit) {
+        if (limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be at least 1");
+        }
+        List<ExecutedTradeDto> trades = tradeHistory.getTrades(asset, limit);
+        if (trades == null) {
+            throw new NotFoundException("No trades for " + asset);
+        }
+        return trades;
+    }
+
+    @Override
+    public List<CandleDto> getCandles(String asset, String interval, int limit) {
+        if (limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be at least 1");
+        }
+        List<CandleDto> candles;
+        try {
+            candles = tradeHistory.getCandles(asset, DurationStyle.detectAndParse(interval), limit);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown interval " + interval + ", candles are built at "
+                    + tradeHistory.getIntervals(), e);
+        }
+        if (candles == null) {
+            throw new NotFoundException("No trades for " + asset);
+        }
+        return candles;
+    }
+
+    private BookView bookView(String asset) {
+        BookView view = matchingEngineHelper.getBookView(asset);
+        if (view == null) {
+            throw new NotFoundException("No order book for " + asset);
+        }
+        return view;
+    }
+
+    private static PriceLevelDto level(BookView view, boolean bid, int level) {
+        return PriceLevelDto.builder()
+                .price(fromUnits(bid ? view.getBidPrice(level) : view.getAskPrice(level), view.getPriceScale(), 0))
+                .amount(fromUnits(bid ? view.getBidQuantity(level) : view.getAskQuantity(level),
+                        view.getQuantityScale(), 0))
+                .orders(bid ? view.getBidOrders(level) : view.getAskOrders(level))
+                .build();
+    }
+
+    @Override
+    public SnapshotResponse takeSnapshot() {
+        try {
+            Path file = matchingEngineHelper.takeSnapshot().join();
+            return SnapshotResponse.builder().file(file.getFileName().toString()).build();
+        } catch (CompletionException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    @Override
+    public ReplicationStatusDto getReplicationStatus() {
+        return replication.getStatus();
+    }
+
+    @Override
+    public ReplicationStatusDto promoteReplica() {
+        try {
+            return replication.promote();
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e);
+        }
+    }
+
     private OrderDto mapToOrderDTO(OrderRequest orderRequest) {
         OrderDto order =  new OrderDto();
         order.setId(idGenerator.nextId());
@@ -0,0 +1,210 @@
+package com.poc.baraka.store;
+
+import com.poc.baraka.dto.OrderDto;
+import com.poc.baraka.dto.OrderResponse;
+import com.poc.baraka.dto.TradeDto;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * On-disk archive of finished orders. Records are appended to a data file and located through an
+ * index file holding one 8 byte slot per order id, so a lookup is two positional reads. Order ids are
+ * dense, which keeps the index compact.
+ * <p>
+ * Writes are serialized, reads may come from any thread.
+ *
+ * @author Waqas Ahmed
+ */
+public class OrderArchive implements Closeable {
+
+    private static final String INDEX_FILE = "orders.idx";
+    private static final String DATA_FILE = "orders.dat";
+
+    private final Path directory;
+    private final boolean temporary;
+    private final FileChannel index;
+    private final FileChannel data;
+    private long dataEnd;
+
+    /**
+     * @param keepExisting false starts an empty archive, for when order ids restart from zero
+     */
+    public OrderArchive(Path directory, boolean keepExisting) throws IOException {
+        this(directory, keepExisting, false);
+    }
+
+    private OrderArchive(Path directory, boolean keepExisting, boolean temporary) throws IOException {
+        this.directory = directory;
+        this.temporary = temporary;
+        Files.createDirectories(directory);
+        Set<StandardOpenOption> options = EnumSet.of(StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (!keepExisting) {
+            options.add(StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        this.index = FileChannel.open(directory.resolve(INDEX_FILE), options);
+        this.data = FileChannel.open(directory.resolve(DATA_FILE), options);
+        this.dataEnd = data.size();
+    }
+
+    /**
+     * An archive in a temporary directory that is deleted again on close.
+     */
+    public static OrderArchive temporary() throws IOException {
+        return new OrderArchive(Files.createTempDirectory("order-archive"), false, true);
+    }
+
+    public synchronized void write(OrderResponse response) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0); // record length, filled in below
+        writeOrder(out, response);
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        record.putInt(0, record.remaining() - Integer.BYTES);
+
+        long offset = dataEnd;
+        writeFully(data, record, offset);
+        dataEnd += record.capacity();
+        // Slots hold offset + 1 so that a zero filled hole reads as missing
+        writeFully(index, ByteBuffer.allocate(Long.BYTES).putLong(0, offset + 1),
+                response.getOrder().getId() * Long.BYTES);
+    }
+
+    /**
+     * @return the archived order, or null if it was never archived
+     */
+    public OrderResponse read(long orderId) throws IOException {
+        long slot = orderId * Long.BYTES;
+        if (orderId < 0 || slot + Long.BYTES > index.size()) {
+            return null;
+        }
+        ByteBuffer position = ByteBuffer.allocate(Long.BYTES);
+        readFully(index, position, slot);
+        long offset = position.getLong(0) - 1;
+        if (offset < 0) {
+            return null;
+        }
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        readFully(data, length, offset);
+        ByteBuffer record = ByteBuffer.allocate(length.getInt(0));
+        readFully(data, record, offset + Integer.BYTES);
+        return readOrder(new DataInputStream(new ByteArrayInputStream(record.array())));
+    }
+
+    public synchronized void force() throws IOException {
+        data.force(false);
+        index.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try (index; data) {
+            force();
+        }
+        if (temporary) {
+            Files.deleteIfExists(directory.resolve(INDEX_FILE));
+            Files.deleteIfExists(directory.resolve(DATA_FILE));
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static void writeOrder(DataOutputStream out, OrderResponse response) throws IOException {
+        OrderDto order = response.getOrder();
+        out.writeLong(order.getId());
+        out.writeBoolean(response.isCanceled());
+        writeNullable(out, order.getTimestamp());
+        out.writeUTF(order.getAsset());
+        out.writeUTF(order.getDirection());
+        // Market orders have no price
+        out.writeUTF(order.getPrice() != null ? order.getPrice().toString() : "");
+        out.writeUTF(order.getAmount().toString());
+        writeNullable(out, order.getPendingAmount() != null ? order.getPendingAmount().toString() : null);
+        out.writeInt(order.getTrades().size());
+        for (TradeDto trade : order.getTrades()) {
+            out.writeLong(trade.getOrderId());
+            out.writeUTF(trade.getAmount().toString());
+            out.writeUTF(trade.getPrice().toString());
+        }
+        writeNullable(out, order.getType());
+        writeNullable(out, order.getTimeInForce());
+        writeNullable(out, order.getAccountId() != null ? order.getAccountId().toString() : null);
+        writeNullable(out, order.getSelfTradePrevention());
+    }
+
+    private static OrderResponse readOrder(DataInputStream in) throws IOException {
+        long id = in.readLong();
+        boolean canceled = in.readBoolean();
+        String timestamp = readNullable(in);
+        String asset = in.readUTF();
+        String direction = in.readUTF();
+        String price = in.readUTF();
+        BigDecimal amount = new BigDecimal(in.readUTF());
+        String pending = readNullable(in);
+        int tradeCount = in.readInt();
+        List<TradeDto> trades = new ArrayList<>(tradeCount);
+        for (int i = 0; i < tradeCount; i++) {
+            trades.add(TradeDto.builder()
+                    .orderId(in.readLong())
+                    .amount(new BigDecimal(in.readUTF()))
+                    .price(new BigDecimal(in.readUTF()))
+                    .build());
+        }
+        // Records archived before orders had a type end with the trades
+        String type = in.available() > 0 ? readNullable(in) : null;
+        String timeInForce = in.available() > 0 ? readNullable(in) : null;
+        String accountId = in.available() > 0 ? readNullable(in) : null;
+        String selfTradePrevention = in.available() > 0 ? readNullable(in) : null;
+        OrderDto order = OrderDto.builder()
+                .id(id)
+                .timestamp(timestamp)
+                .asset(asset)
+                .direction(direction)
+                .type(type)
+                .timeInForce(timeInForce)
+                .accountId(accountId != null ? Long.valueOf(accountId) : null)
+                .selfTradePrevention(selfTradePrevention)
+                .price(price.isEmpty() ? null : new BigDecimal(price))
+                .amount(amount)
+                .pendingAmount(pending != null ? new BigDecimal(pending) : null)
+                .trades(trades)
+                .build();
+        return OrderResponse.builder().order(order).canceled(canceled).build();
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Archive record past the end of the file");
+            }
+            position += read;
+        }
+    }
+}
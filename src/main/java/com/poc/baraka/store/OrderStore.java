@@ -0,0 +1,289 @@
+package com.poc.baraka.store;
+
+import com.poc.baraka.common.LongObjectHashMap;
+import com.poc.baraka.dto.OrderResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Order state behind {@code getOrderById}, in three tiers:
+ * <ul>
+ *     <li>live orders, still open, in striped primitive {@code long} keyed maps;</li>
+ *     <li>finished orders, filled or canceled, in a cache bounded by size and age;</li>
+ *     <li>orders evicted from that cache, spilled to the on-disk {@link OrderArchive}.</li>
+ * </ul>
+ * Matcher threads only ever touch memory: evicted orders are queued and written by a background
+ * thread, and stay readable from the queue until they are on disk.
+ *
+ * @author Waqas Ahmed
+ */
+public class OrderStore implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderStore.class);
+
+    private static final int STRIPES = 64;
+    private static final long SWEEP_INTERVAL_MS = 1_000L;
+
+    // Locks rather than monitors, so a virtual request thread waiting for one does not pin its carrier
+    private final LongObjectHashMap<OrderResponse>[] live;
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final LinkedHashMap<Long, Finished> finished = new LinkedHashMap<>();
+    private final ReentrantLock finishedLock = new ReentrantLock();
+    private final int maxFinished;
+    private final long finishedTtlMillis;
+
+    private final Map<Long, OrderResponse> spilling = new ConcurrentHashMap<>();
+    private final BlockingQueue<OrderResponse> spillQueue = new LinkedBlockingQueue<>();
+    private final OrderArchive archive;
+    private final Thread archiver;
+
+    private volatile boolean running = true;
+
+    @SuppressWarnings("unchecked")
+    public OrderStore(int maxFinished, long finishedTtlMillis, OrderArchive archive) {
+        this.live = new LongObjectHashMap[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            live[i] = new LongObjectHashMap<>(1024);
+            locks[i] = new ReentrantLock();
+        }
+        this.maxFinished = Math.max(1, maxFinished);
+        this.finishedTtlMillis = finishedTtlMillis;
+        this.archive = archive;
+        this.archiver = new Thread(this::archive, "order-archive");
+        this.archiver.setDaemon(true);
+        this.archiver.start();
+    }
+
+    /**
+     * Tracks an order that is still open.
+     */
+    public void putLive(OrderResponse response) {
+        long id = response.getOrder().getId();
+        ReentrantLock lock = lock(id);
+        lock.lock();
+        try {
+            stripe(id).put(id, response);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tracks an order that finished the moment it was placed.
+     */
+    public void putFinished(OrderResponse response) {
+        long now = System.currentTimeMillis();
+        finishedLock.lock();
+        try {
+            finished.put(response.getOrder().getId(), new Finished(response, now));
+            evict(now);
+        } finally {
+            finishedLock.unlock();
+        }
+    }
+
+    /**
+     * Moves an order that got filled or canceled from the live tier to the finished cache.
+     */
+    public void finish(long orderId) {
+        ReentrantLock lock = lock(orderId);
+        OrderResponse response;
+        lock.lock();
+        try {
+            response = stripe(orderId).remove(orderId);
+        } finally {
+            lock.unlock();
+        }
+        if (response != null) {
+            putFinished(response);
+        }
+    }
+
+    /**
+     * Open orders only, never goes to disk. Meant for the matcher threads.
+     */
+    public OrderResponse getLive(long orderId) {
+        ReentrantLock lock = lock(orderId);
+        lock.lock();
+        try {
+            return stripe(orderId).get(orderId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Looks the order up in every tier, reading the archive last.
+     */
+    public OrderResponse get(long orderId) {
+        OrderResponse response = getLive(orderId);
+        if (response != null) {
+            return response;
+        }
+        finishedLock.lock();
+        try {
+            Finished entry = finished.get(orderId);
+            if (entry != null) {
+                return entry.response;
+            }
+        } finally {
+            finishedLock.unlock();
+        }
+        response = spilling.get(orderId);
+        if (response != null) {
+            return response;
+        }
+        try {
+            return archive.read(orderId);
+        } catch (IOException e) {
+            log.error("Failed to read order id={} from the archive", orderId, e);
+            return null;
+        }
+    }
+
+    public int liveCount() {
+        int count = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i].lock();
+            try {
+                count += live[i].size();
+            } finally {
+                locks[i].unlock();
+            }
+        }
+        return count;
+    }
+
+    public int finishedCount() {
+        finishedLock.lock();
+        try {
+            return finished.size();
+        } finally {
+            finishedLock.unlock();
+        }
+    }
+
+    /**
+     * Writes every cached finished order to the archive without evicting it, so that a snapshot,
+     * which only holds open orders, loses none of them. Runs on the caller's thread.
+     */
+    public void archiveFinished() throws IOException {
+        List<Finished> pending = new ArrayList<>();
+        finishedLock.lock();
+        try {
+            for (Finished entry : finished.values()) {
+                if (!entry.archived) {
+                    pending.add(entry);
+                }
+            }
+        } finally {
+            finishedLock.unlock();
+        }
+        for (Finished entry : pending) {
+            archive.write(entry.response);
+            entry.archived = true;
+        }
+        archive.force();
+    }
+
+    private LongObjectHashMap<OrderResponse> stripe(long orderId) {
+        return live[(int) (orderId & (STRIPES - 1))];
+    }
+
+    private ReentrantLock lock(long orderId) {
+        return locks[(int) (orderId & (STRIPES - 1))];
+    }
+
+    /**
+     * Drops the oldest finished orders past the size bound or the age bound. Caller holds the finished lock.
+     */
+    private void evict(long now) {
+        Iterator<Finished> oldest = finished.values().iterator();
+        while (oldest.hasNext()) {
+            Finished entry = oldest.next();
+            if (finished.size() <= maxFinished && (finishedTtlMillis <= 0 || now - entry.finishedAt < finishedTtlMillis)) {
+                break;
+            }
+            oldest.remove();
+            if (!entry.archived) {
+                spilling.put(entry.response.getOrder().getId(), entry.response);
+                spillQueue.add(entry.response);
+            }
+        }
+    }
+
+    private void archive() {
+        long nextSweep = System.currentTimeMillis() + SWEEP_INTERVAL_MS;
+        while (running || !spillQueue.isEmpty()) {
+            try {
+                OrderResponse response = spillQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (response != null) {
+                    spill(response);
+                }
+                long now = System.currentTimeMillis();
+                if (now >= nextSweep) {
+                    finishedLock.lock();
+                    try {
+                        evict(now);
+                    } finally {
+                        finishedLock.unlock();
+                    }
+                    nextSweep = now + SWEEP_INTERVAL_MS;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void spill(OrderResponse response) {
+        long id = response.getOrder().getId();
+        try {
+            archive.write(response);
+        } catch (IOException e) {
+            log.error("Failed to archive order id={}, it stays in memory", id, e);
+            return;
+        }
+        spilling.remove(id, response);
+    }
+
+    /**
+     * Writes out whatever is still queued for the archive and closes it.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            archiver.join(5_000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        archive.close();
+    }
+
+    private static final class Finished {
+
+        final OrderResponse response;
+        final long finishedAt;
+        volatile boolean archived;
+
+        Finished(OrderResponse response, long finishedAt) {
+            this.response = response;
+            this.finishedAt = finishedAt;
+        }
+    }
+}
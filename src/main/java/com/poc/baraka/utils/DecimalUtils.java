@@ -0,0 +1,50 @@
+package com.poc.baraka.utils;
+
+import com.poc.baraka.exception.InvalidOrderException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversions between the {@link BigDecimal} values of the API and the scaled {@code long} units the
+ * matching engine works with. A price of {@code 43250.5} with a scale of 2 is {@code 4325050} units.
+ *
+ * @author Waqas Ahmed
+ */
+public class DecimalUtils {
+
+    // Zero at each display scale, filled and canceled orders all end on one of these
+    private static final BigDecimal[] ZEROS = new BigDecimal[19];
+
+    static {
+        for (int scale = 0; scale < ZEROS.length; scale++) {
+            ZEROS[scale] = BigDecimal.ZERO.setScale(scale);
+        }
+    }
+
+    private DecimalUtils() {
+    }
+
+    /**
+     * Scales the value to whole units, rejecting values finer than the scale or too large for a long.
+     */
+    public static long toUnits(BigDecimal value, int scale, String field) {
+        try {
+            return value.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new InvalidOrderException(field + " " + value.toPlainString() + " does not fit a scale of " + scale);
+        }
+    }
+
+    /**
+     * Converts units back to a decimal, keeping at least {@code displayScale} digits so values
+     * read back the way they were entered (e.g. {@code 1.0} stays {@code 1.0}).
+     */
+    public static BigDecimal fromUnits(long units, int scale, int displayScale) {
+        if (units == 0 && displayScale >= 0 && displayScale < ZEROS.length) {
+            return ZEROS[displayScale];
+        }
+        BigDecimal value = BigDecimal.valueOf(units, scale).stripTrailingZeros();
+        return value.setScale(Math.max(Math.max(value.scale(), 0), displayScale), RoundingMode.UNNECESSARY);
+    }
+}
@@ -11,8 +11,15 @@ import java.time.OffsetDateTime;
  */
 public class JsonUtils {
 
+    // Gson is thread safe, one instance serves every caller
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(OffsetDateTime.class, new GsonOffsetDateTime())
+            .create();
+
+    private JsonUtils() {
+    }
+
     public static String toJSON(Object object) {
-        Gson gson = new GsonBuilder().setPrettyPrinting().registerTypeAdapter(OffsetDateTime.class, new GsonOffsetDateTime()).create();
-        return gson.toJson(object);
+        return GSON.toJson(object);
     }
 }
@@ -0,0 +1,66 @@
+package com.poc.baraka.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Waqas Ahmed
+ */
+class ArrayBookSideTest {
+
+    @Test
+    void testBestFollowsTheLevelsAcrossTheWrapOfTheRing() {
+        ArrayBookSide asks = new ArrayBookSide(false, 100);
+        assertEquals(128, asks.capacity());
+
+        // 1_000_120 and 1_000_130 sit on both sides of a slot wrap
+        for (long price : new long[]{1_000_130, 1_000_120, 1_000_200, 1_000_127}) {
+            asks.add(new PriceLevel(price));
+        }
+        assertEquals(1_000_120, asks.best().price);
+        assertEquals(List.of(1_000_120L, 1_000_127L, 1_000_130L, 1_000_200L), prices(asks));
+
+        asks.remove(asks.best());
+        assertEquals(1_000_127, asks.best().price);
+        asks.remove(asks.get(1_000_130));
+        asks.remove(asks.best());
+        assertEquals(1_000_200, asks.best().price);
+        assertNull(asks.get(1_000_130));
+
+        asks.remove(asks.best());
+        assertTrue(asks.isEmpty());
+        assertNull(asks.best());
+
+        // Once empty the band can start anywhere
+        asks.add(new PriceLevel(5));
+        assertEquals(5, asks.best().price);
+    }
+
+    @Test
+    void testBidsAreHighestFirstAndTheBandIsEnforced() {
+        ArrayBookSide bids = new ArrayBookSide(true, 64);
+        bids.add(new PriceLevel(1_000));
+        bids.add(new PriceLevel(990));
+        bids.add(new PriceLevel(1_053));
+        assertEquals(1_053, bids.best().price);
+        assertEquals(List.of(1_053L, 1_000L, 990L), prices(bids));
+
+        assertFalse(bids.accepts(1_054));
+        assertFalse(bids.accepts(989));
+        assertThrows(IllegalStateException.class, () -> bids.add(new PriceLevel(1_054)));
+
+        bids.remove(bids.best());
+        assertEquals(1_000, bids.best().price);
+        assertTrue(bids.accepts(1_053));
+    }
+
+    private static List<Long> prices(BookSide side) {
+        List<Long> prices = new ArrayList<>();
+        side.forEach(level -> prices.add(level.price));
+        return prices;
+    }
+}
@@ -0,0 +1,466 @@
+package com.poc.baraka.engine;
+
+/**
+ * @author Waqas Ahmed
+ */
+
+import com.poc.baraka.dto.OrderDto;
+import com.poc.baraka.dto.OrderResponse;
+import com.poc.baraka.dto.TradeDto;
+import com.poc.baraka.enums.OrderDirectionEnum;
+import com.poc.baraka.enums.SelfTradePreventionEnum;
+import com.poc.baraka.enums.TimeInForceEnum;
+import com.poc.baraka.exception.InvalidOrderException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderBookTest {
+
+    private OrderBook book;
+
+    @BeforeEach
+    void setUp() {
+        book = new OrderBook("BTC", 0, 0);
+    }
+
+    private OrderEntry order(long id, OrderDirectionEnum direction, long price, long amount) {
+        OrderDto order = OrderDto.builder()
+                .id(id)
+                .asset("BTC")
+                .amount(BigDecimal.valueOf(amount))
+                .price(BigDecimal.valueOf(price))
+                .direction(direction.name())
+                .build();
+        return new OrderEntry(order, direction == OrderDirectionEnum.BUY, price, amount);
+    }
+
+    private OrderEntry order(long id, OrderDirectionEnum direction, long price, long amount, long account,
+                             SelfTradePreventionEnum selfTradePrevention) {
+        return new OrderEntry(order(id, direction, price, amount).order, direction == OrderDirectionEnum.BUY, price,
+                amount, TimeInForceEnum.GTC, account, selfTradePrevention);
+    }
+
+    @Test
+    void testCancelFromMiddleOfLevelKeepsTimePriority() {
+        OrderEntry first = order(1L, OrderDirectionEnum.SELL, 100, 1);
+        OrderEntry second = order(2L, OrderDirectionEnum.SELL, 100, 2);
+        OrderEntry third = order(3L, OrderDirectionEnum.SELL, 100, 3);
+        book.match(first);
+        book.match(second);
+        book.match(third);
+
+        assertTrue(book.cancel(2L));
+        assertFalse(book.cancel(2L));
+
+        PriceLevel level = first.level;
+        assertEquals(2, level.getOrderCount());
+        assertEquals(4, level.getTotalQuantity());
+        assertSame(third, first.next);
+        assertSame(first, third.prev);
+
+        OrderResponse response = book.match(order(4L, OrderDirectionEnum.BUY, 100, 4));
+
+        assertEquals(2, response.getOrder().getTrades().size());
+        assertEquals(1L, response.getOrder().getTrades().get(0).getOrderId());
+        assertEquals(3L, response.getOrder().getTrades().get(1).getOrderId());
+    }
+
+    @Test
+    void testCancelLastOrderDropsLevel() {
+        book.match(order(1L, OrderDirectionEnum.BUY, 100, 1));
+
+        assertTrue(book.cancel(1L));
+
+        // A crossing sell finds nothing to trade with
+        OrderResponse response = book.match(order(2L, OrderDirectionEnum.SELL, 90, 1));
+        assertTrue(response.getOrder().getTrades().isEmpty());
+    }
+
+    @Test
+    void testFilledOrderCannotBeCanceled() {
+        book.match(order(1L, OrderDirectionEnum.SELL, 100, 1));
+        book.match(order(2L, OrderDirectionEnum.BUY, 100, 1));
+
+        assertFalse(book.cancel(1L));
+    }
+
+    @Test
+    void testFillsAreLoggedInUnitsAndReadBackAsEntered() {
+        OrderBook scaled = new OrderBook("BTC", 2, 4);
+        OrderEntry sell = new OrderEntry(OrderDto.builder()
+                .id(1L)
+                .asset("BTC")
+                .amount(new BigDecimal("1.50"))
+                .price(new BigDecimal("100.5"))
+                .direction(OrderDirectionEnum.SELL.name())
+                .build(), false, 10_050, 15_000);
+        scaled.match(sell);
+        assertEquals(new BigDecimal("1.50"), sell.order.getPendingAmount());
+
+        OrderEntry buy = new OrderEntry(OrderDto.builder()
+                .id(2L)
+                .asset("BTC")
+                .amount(new BigDecimal("0.250"))
+                .price(new BigDecimal("101"))
+                .direction(OrderDirectionEnum.BUY.name())
+                .build(), true, 10_100, 2_500);
+        OrderResponse response = scaled.match(buy);
+
+        assertInstanceOf(FillLog.class, response.getOrder().getTrades());
+        assertEquals(new BigDecimal("0.000"), response.getOrder().getPendingAmount());
+        assertEquals(new BigDecimal("100.5"), response.getOrder().getTrades().get(0).getPrice());
+        assertEquals(new BigDecimal("0.250"), response.getOrder().getTrades().get(0).getAmount());
+        assertEquals(2L, sell.order.getTrades().get(0).getOrderId());
+        assertEquals(12_500, sell.fills.lastLeaves());
+    }
+
+    @Test
+    void testTradesAreLoggedOnceAcrossChunks() {
+        int trades = TradeLog.CHUNK_SIZE + 2;
+        OrderEntry sell = order(1L, OrderDirectionEnum.SELL, 100, trades);
+        book.match(sell);
+        for (int i = 0; i < trades; i++) {
+            OrderResponse buy = book.match(order(10L + i, OrderDirectionEnum.BUY, 100, 1));
+            assertEquals(1L, buy.getOrder().getTrades().get(0).getOrderId());
+        }
+
+        assertEquals(trades, book.getLastTradeId());
+        List<TradeDto> fills = sell.getOrder().getTrades();
+        assertEquals(trades, fills.size());
+        assertEquals(10L, fills.get(0).getOrderId());
+        assertEquals(10L + trades - 1, fills.get(trades - 1).getOrderId());
+        assertEquals(BigDecimal.ONE, fills.get(TradeLog.CHUNK_SIZE).getAmount());
+        assertEquals(0, sell.fills.lastLeaves());
+    }
+
+    @Test
+    void testEmptiedLevelIsReusedForTheNextPrice() {
+        OrderEntry first = order(1L, OrderDirectionEnum.SELL, 100, 1);
+        book.match(first);
+        PriceLevel level = first.level;
+        book.match(order(2L, OrderDirectionEnum.BUY, 100, 1));
+
+        OrderEntry second = order(3L, OrderDirectionEnum.BUY, 90, 2);
+        book.match(second);
+
+        assertSame(level, second.level);
+        assertEquals(90, level.getPrice());
+        assertEquals(1, level.getOrderCount());
+        assertEquals(2, level.getTotalQuantity());
+        assertEquals(1, book.getBidLevels());
+        assertEquals(0, book.getAskLevels());
+    }
+
+    @Test
+    void testFillOrKillThatCannotFillLeavesBookUntouched() {
+        OrderEntry first = order(1L, OrderDirectionEnum.SELL, 100, 1);
+        OrderEntry second = order(2L, OrderDirectionEnum.SELL, 101, 2);
+        book.match(first);
+        book.match(second);
+
+        OrderEntry killed = new OrderEntry(order(3L, OrderDirectionEnum.BUY, 101, 4).order, true, 101, 4,
+                TimeInForceEnum.FOK);
+        OrderResponse response = book.match(killed);
+
+        assertTrue(response.isCanceled());
+        assertTrue(response.getOrder().getTrades().isEmpty());
+        assertEquals(BigDecimal.ZERO, response.getOrder().getPendingAmount());
+        assertEquals(1, first.pending);
+        assertEquals(2, second.pending);
+        assertEquals(2, book.getAskLevels());
+        assertEquals(0, book.getBidLevels());
+
+        OrderEntry filled = new OrderEntry(order(4L, OrderDirectionEnum.BUY, 101, 3).order, true, 101, 3,
+                TimeInForceEnum.FOK);
+        response = book.match(filled);
+
+        assertFalse(response.isCanceled());
+        assertEquals(2, response.getOrder().getTrades().size());
+        assertEquals(0, book.getAskLevels());
+    }
+
+    @Test
+    void testImmediateRemainderIsDroppedInsteadOfResting() {
+        book.match(order(1L, OrderDirectionEnum.SELL, 100, 1));
+        book.match(order(2L, OrderDirectionEnum.SELL, 200, 1));
+
+        OrderEntry ioc = new OrderEntry(order(3L, OrderDirectionEnum.BUY, 150, 3).order, true, 150, 3,
+                TimeInForceEnum.IOC);
+        OrderResponse response = book.match(ioc);
+
+        assertTrue(response.isCanceled());
+        assertEquals(1, response.getOrder().getTrades().size());
+        assertEquals(BigDecimal.ZERO, response.getOrder().getPendingAmount());
+        assertEquals(0, book.getBidLevels());
+        assertEquals(1, book.getAskLevels());
+
+        // A market order takes whatever price is left
+        OrderEntry market = new OrderEntry(order(4L, OrderDirectionEnum.BUY, 0, 5).order, true,
+                OrderEntry.marketPrice(true), 5, TimeInForceEnum.IOC);
+        response = book.match(market);
+
+        assertEquals(200, market.fills.get(0).getPrice().longValueExact());
+        assertTrue(response.isCanceled());
+        assertEquals(0, book.getAskLevels());
+        assertEquals(0, book.getRestingOrders());
+    }
+
+    @Test
+    void testAmendDownKeepsPriorityAndRepriceRequeues() {
+        OrderEntry first = order(1L, OrderDirectionEnum.SELL, 100, 5);
+        OrderEntry second = order(2L, OrderDirectionEnum.SELL, 100, 2);
+        book.match(first);
+        book.match(second);
+
+        OrderResponse reduced = book.amend(1L, null, BigDecimal.valueOf(3));
+        assertFalse(reduced.isCanceled());
+        assertEquals(BigDecimal.valueOf(3), reduced.getOrder().getPendingAmount());
+        assertSame(first, first.level.head);
+        assertEquals(5, first.level.getTotalQuantity());
+
+        // A larger amount loses the place in the queue
+        book.amend(1L, null, BigDecimal.valueOf(4));
+        assertSame(second, second.level.head);
+        assertSame(first, second.level.tail);
+
+        // Repriced across the spread it trades right away
+        book.match(order(3L, OrderDirectionEnum.BUY, 90, 1));
+        OrderResponse crossed = book.amend(2L, BigDecimal.valueOf(90), null);
+        assertEquals(1, crossed.getOrder().getTrades().size());
+        assertEquals(3L, crossed.getOrder().getTrades().get(0).getOrderId());
+        assertEquals(1, second.pending);
+        assertEquals(90, second.price);
+        assertEquals(0, book.getBidLevels());
+        assertEquals(2, book.getAskLevels());
+        assertNull(book.amend(3L, BigDecimal.valueOf(95), null));
+    }
+
+    @Test
+    void testAmendToWhatAlreadyTradedLeavesTheBook() {
+        OrderEntry sell = order(1L, OrderDirectionEnum.SELL, 100, 5);
+        book.match(sell);
+        book.match(order(2L, OrderDirectionEnum.BUY, 100, 2));
+
+        OrderResponse response = book.amend(1L, null, BigDecimal.valueOf(2));
+
+        assertTrue(response.isCanceled());
+        assertEquals(BigDecimal.ZERO, response.getOrder().getPendingAmount());
+        assertEquals(0, book.getRestingOrders());
+        assertEquals(0, book.getAskLevels());
+        assertFalse(book.cancel(1L));
+    }
+
+    @Test
+    void testAmendThatClosesTheOrderIsReportedToTheListener() {
+        List<Long> canceled = new ArrayList<>();
+        List<Long> filled = new ArrayList<>();
+        OrderBook listened = new OrderBook("BTC", 0, 0, new OrderBookListener() {
+            @Override
+            public void onOrderFilled(OrderBook book, OrderEntry order) {
+                filled.add(order.getId());
+            }
+
+            @Override
+            public void onOrderCanceled(OrderBook book, OrderEntry order) {
+                canceled.add(order.getId());
+            }
+        });
+        listened.match(order(1L, OrderDirectionEnum.SELL, 100, 5));
+        listened.match(order(2L, OrderDirectionEnum.BUY, 100, 2));
+
+        assertTrue(listened.amend(1L, null, BigDecimal.valueOf(2)).isCanceled());
+        assertEquals(List.of(1L), canceled);
+
+        // Repriced across the spread it fills completely as the aggressor
+        listened.match(order(3L, OrderDirectionEnum.SELL, 105, 2));
+        listened.match(order(4L, OrderDirectionEnum.BUY, 100, 3));
+        OrderResponse crossed = listened.amend(3L, BigDecimal.valueOf(100), null);
+        assertFalse(crossed.isCanceled());
+        assertEquals(BigDecimal.ZERO, crossed.getOrder().getPendingAmount());
+        assertEquals(List.of(3L), filled);
+
+        // Repriced into a partial fill it rests again and stays open
+        listened.match(order(5L, OrderDirectionEnum.SELL, 105, 3));
+        listened.amend(5L, BigDecimal.valueOf(100), null);
+        assertEquals(List.of(3L, 4L), filled);
+        assertEquals(List.of(1L), canceled);
+        assertEquals(1, listened.getRestingOrders());
+    }
+
+    @Test
+    void testSelfTradeCancelsTheNewestOrTheOldestOrder() {
+        List<Long> canceled = new ArrayList<>();
+        OrderBook accounts = new OrderBook("BTC", 0, 0, new OrderBookListener() {
+            @Override
+            public void onOrderCanceled(OrderBook book, OrderEntry order) {
+                canceled.add(order.getId());
+            }
+        });
+        accounts.match(order(1L, OrderDirectionEnum.SELL, 100, 2, 7L, SelfTradePreventionEnum.CANCEL_NEWEST));
+        accounts.match(order(2L, OrderDirectionEnum.SELL, 101, 2, 9L, SelfTradePreventionEnum.CANCEL_NEWEST));
+
+        OrderResponse newest = accounts.match(order(3L, OrderDirectionEnum.BUY, 101, 3, 7L,
+                SelfTradePreventionEnum.CANCEL_NEWEST));
+        assertTrue(newest.isCanceled());
+        assertTrue(newest.getOrder().getTrades().isEmpty());
+        assertEquals(BigDecimal.ZERO, newest.getOrder().getPendingAmount());
+        assertEquals(2, accounts.getRestingOrders());
+
+        OrderResponse oldest = accounts.match(order(4L, OrderDirectionEnum.BUY, 101, 3, 7L,
+                SelfTradePreventionEnum.CANCEL_OLDEST));
+        assertFalse(oldest.isCanceled());
+        assertEquals(List.of(1L), canceled);
+        assertEquals(1, oldest.getOrder().getTrades().size());
+        assertEquals(2L, oldest.getOrder().getTrades().get(0).getOrderId());
+        assertEquals(BigDecimal.ONE, oldest.getOrder().getPendingAmount());
+        assertEquals(0, accounts.getAskLevels());
+        assertEquals(1, accounts.getBidLevels());
+        assertFalse(accounts.cancel(1L));
+    }
+
+    @Test
+    void testSelfTradeDecrementsBothWithoutATrade() {
+        OrderEntry own = order(1L, OrderDirectionEnum.SELL, 100, 2, 7L, SelfTradePreventionEnum.CANCEL_NEWEST);
+        OrderEntry other = order(2L, OrderDirectionEnum.SELL, 100, 2, 8L, SelfTradePreventionEnum.CANCEL_NEWEST);
+        book.match(own);
+        book.match(other);
+
+        OrderResponse response = book.match(order(3L, OrderDirectionEnum.BUY, 100, 3, 7L,
+                SelfTradePreventionEnum.DECREMENT_BOTH));
+
+        assertFalse(response.isCanceled());
+        assertEquals(1, response.getOrder().getTrades().size());
+        assertEquals(2L, response.getOrder().getTrades().get(0).getOrderId());
+        assertEquals(BigDecimal.ZERO, response.getOrder().getPendingAmount());
+        assertEquals(0, own.pending);
+        assertEquals(1, other.pending);
+        assertEquals(1, other.level.getTotalQuantity());
+
+        // Nothing left on either side, the incoming order ends canceled
+        OrderResponse both = book.match(order(4L, OrderDirectionEnum.BUY, 100, 1, 8L,
+                SelfTradePreventionEnum.DECREMENT_BOTH));
+        assertTrue(both.isCanceled());
+        assertEquals(0, book.getRestingOrders());
+        assertEquals(0, book.getAskLevels());
+    }
+
+    @Test
+    void testArrayBookSweepsLevelsAndRejectsPricesOutsideItsBand() {
+        OrderBook array = new OrderBook("BTC", 0, 0, BookType.ARRAY, 64, OrderBookListener.NONE);
+        array.match(order(1L, OrderDirectionEnum.SELL, 1_010, 1));
+        array.match(order(2L, OrderDirectionEnum.SELL, 1_000, 2));
+        array.match(order(3L, OrderDirectionEnum.SELL, 1_030, 3));
+        assertEquals(3, array.getAskLevels());
+
+        OrderEntry far = order(4L, OrderDirectionEnum.SELL, 1_064, 1);
+        assertThrows(InvalidOrderException.class, () -> array.checkPrice(far));
+        array.checkPrice(order(5L, OrderDirectionEnum.SELL, 1_063, 1));
+
+        OrderResponse response = array.match(order(6L, OrderDirectionEnum.BUY, 1_020, 4));
+
+        assertEquals(2, response.getOrder().getTrades().size());
+        assertEquals(2L, response.getOrder().getTrades().get(0).getOrderId());
+        assertEquals(1L, response.getOrder().getTrades().get(1).getOrderId());
+        assertEquals(1, array.getBidLevels());
+        assertEquals(1, array.getAskLevels());
+        assertThrows(InvalidOrderException.class, () -> array.checkAmend(3L, BigDecimal.valueOf(950)));
+        array.checkAmend(3L, BigDecimal.valueOf(1_040));
+    }
+
+    @Test
+    void testProRataSharesALevelBySizeAboveTheMinimumAllocation() {
+        OrderBook proRata = new OrderBook("BTC", 0, 0, BookType.SKIP_LIST, 0, MatchingAlgorithm.PRO_RATA.policy(2),
+                OrderBookListener.NONE);
+        OrderEntry small = order(1L, OrderDirectionEnum.SELL, 100, 10);
+        OrderEntry medium = order(2L, OrderDirectionEnum.SELL, 100, 30);
+        OrderEntry large = order(3L, OrderDirectionEnum.SELL, 100, 60);
+        proRata.match(small);
+        proRata.match(medium);
+        proRata.match(large);
+
+        OrderResponse even = proRata.match(order(4L, OrderDirectionEnum.BUY, 100, 20));
+        assertEquals(List.of(BigDecimal.valueOf(2), BigDecimal.valueOf(6), BigDecimal.valueOf(12)),
+                even.getOrder().getTrades().stream().map(TradeDto::getAmount).toList());
+
+        // The smallest share of 1 is under the minimum, the lot left over goes to the front of the queue
+        OrderResponse rounded = proRata.match(order(5L, OrderDirectionEnum.BUY, 100, 10));
+        assertEquals(List.of(2L, 3L, 1L), rounded.getOrder().getTrades().stream().map(TradeDto::getOrderId).toList());
+        assertEquals(7, small.pending);
+        assertEquals(21, medium.pending);
+        assertEquals(42, large.pending);
+        assertEquals(70, small.level.getTotalQuantity());
+
+        // Taking the whole level fills every order in full
+        OrderResponse sweep = proRata.match(order(6L, OrderDirectionEnum.BUY, 100, 75));
+        assertEquals(3, sweep.getOrder().getTrades().size());
+        assertEquals(BigDecimal.valueOf(5), sweep.getOrder().getPendingAmount());
+        assertEquals(0, proRata.getAskLevels());
+
+        assertEquals(2_500_000_000_000L,
+                ProRataMatchingPolicy.share(3_000_000_000_000L, 5_000_000_000_000L, 6_000_000_000_000L));
+    }
+
+    @Test
+    void testProRataFillOrKillIsKilledByAnOwnOrderAnywhereInTheLevel() {
+        OrderBook proRata = new OrderBook("BTC", 0, 0, BookType.SKIP_LIST, 0, MatchingAlgorithm.PRO_RATA.policy(1),
+                OrderBookListener.NONE);
+        OrderEntry own = order(1L, OrderDirectionEnum.SELL, 100, 5, 1L, SelfTradePreventionEnum.CANCEL_NEWEST);
+        OrderEntry other = order(2L, OrderDirectionEnum.SELL, 100, 5, 2L, SelfTradePreventionEnum.CANCEL_NEWEST);
+        proRata.match(other);
+        proRata.match(own);
+
+        // The other account's order ahead could fill it, but a share would also go to the own order behind
+        for (SelfTradePreventionEnum selfTradePrevention : List.of(SelfTradePreventionEnum.CANCEL_NEWEST,
+                SelfTradePreventionEnum.DECREMENT_BOTH)) {
+            OrderEntry fok = new OrderEntry(order(3L, OrderDirectionEnum.BUY, 100, 5).order, true, 100, 5,
+                    TimeInForceEnum.FOK, 1L, selfTradePrevention);
+            OrderResponse killed = proRata.match(fok);
+            assertTrue(killed.isCanceled());
+            assertTrue(killed.getOrder().getTrades().isEmpty());
+            assertEquals(5, own.pending);
+            assertEquals(5, other.pending);
+        }
+
+        // Canceling its own order instead leaves the other account's quantity to fill it
+        OrderEntry fok = new OrderEntry(order(4L, OrderDirectionEnum.BUY, 100, 5).order, true, 100, 5,
+                TimeInForceEnum.FOK, 1L, SelfTradePreventionEnum.CANCEL_OLDEST);
+        OrderResponse filled = proRata.match(fok);
+        assertFalse(filled.isCanceled());
+        assertEquals(0, fok.pending);
+        assertEquals(0, proRata.getAskLevels());
+    }
+
+    @Test
+    void testViewIsPublishedOnlyWhenTheBookChanged() {
+        book.match(order(1L, OrderDirectionEnum.BUY, 99, 1));
+        book.match(order(2L, OrderDirectionEnum.BUY, 98, 2));
+        book.match(order(3L, OrderDirectionEnum.BUY, 98, 3));
+        book.match(order(4L, OrderDirectionEnum.SELL, 101, 4));
+        book.publishView(1);
+        BookView view = book.getView();
+
+        assertEquals(1, view.getBidLevels());
+        assertEquals(99, view.getBidPrice(0));
+        assertEquals(1, view.getAskLevels());
+        assertEquals(4, view.getAskQuantity(0));
+
+        book.publishView(1);
+        assertSame(view, book.getView());
+
+        book.cancel(1L);
+        book.publishView(5);
+        BookView next = book.getView();
+        assertEquals(view.getVersion() + 1, next.getVersion());
+        assertEquals(98, next.getBidPrice(0));
+        assertEquals(5, next.getBidQuantity(0));
+        assertEquals(2, next.getBidOrders(0));
+        // The view handed out before stays as it was
+        assertEquals(99, view.getBidPrice(0));
+    }
+}
@@ -0,0 +1,173 @@
+package com.poc.baraka.execution;
+
+import com.poc.baraka.common.IdGenerator;
+import com.poc.baraka.config.MatchingEngineProperties;
+import com.poc.baraka.dto.AmendOrderRequest;
+import com.poc.baraka.dto.ExecutionReportDto;
+import com.poc.baraka.dto.OrderAckDto;
+import com.poc.baraka.dto.OrderRequest;
+import com.poc.baraka.helper.MatchingEngineHelper;
+import com.poc.baraka.marketdata.TradeHistory;
+import com.poc.baraka.metrics.EngineMetrics;
+import com.poc.baraka.replication.EngineReplication;
+import com.poc.baraka.service.OrderBookServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * @author Waqas Ahmed
+ */
+class ExecutionReportsTest {
+
+    private MatchingEngineHelper matchingEngine;
+    private ExecutionReports reports;
+    private OrderBookServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        MatchingEngineProperties.AssetProperties btc = new MatchingEngineProperties.AssetProperties();
+        btc.setPriceScale(2);
+        btc.setQuantityScale(4);
+        properties.getAssets().put("BTC", btc);
+        properties.getExecutions().setMaxReports(20);
+
+        IdGenerator idGenerator = new IdGenerator();
+        reports = new ExecutionReports(properties);
+        matchingEngine = new MatchingEngineHelper(properties, idGenerator, new EngineMetrics(new SimpleMeterRegistry()),
+                List.of(reports));
+        service = new OrderBookServiceImpl(idGenerator, matchingEngine, mock(TradeHistory.class),
+                mock(EngineReplication.class), reports);
+    }
+
+    @AfterEach
+    void tearDown() {
+        matchingEngine.shutdown();
+    }
+
+    @Test
+    void testFillsOfAsyncOrdersReachBothClients() throws Exception {
+        OrderAckDto maker = service.placeOrderAsync("maker", order("SELL", "100.25", "1.5"));
+        assertEquals("maker", maker.getClientId());
+        assertEquals(0, maker.getSequence());
+        List<ExecutionReportDto> resting = poll("maker", maker.getSequence(), 1);
+        assertEquals(1, resting.size());
+        assertEquals("NEW", resting.get(0).getType());
+        assertEquals(maker.getOrderId(), resting.get(0).getOrderId());
+        assertEquals(0, new BigDecimal("1.5").compareTo(resting.get(0).getPendingAmount()));
+
+        // A poll with nothing to read yet completes with the next report
+        CompletableFuture<List<ExecutionReportDto>> waiting = service.getExecutionReports("maker", 1, 100, 10_000);
+        assertFalse(waiting.isDone());
+
+        OrderAckDto taker = service.placeOrderAsync("taker", order("BUY", "101", "1.5"));
+        List<ExecutionReportDto> takerReports = poll("taker", taker.getSequence(), 2);
+        assertEquals(List.of("TRADE", "FILLED"), takerReports.stream().map(ExecutionReportDto::getType).toList());
+        ExecutionReportDto fill = takerReports.get(0);
+        assertEquals(maker.getOrderId(), fill.getCounterOrderId());
+        assertEquals(0, new BigDecimal("100.25").compareTo(fill.getPrice()));
+        assertEquals(0, new BigDecimal("1.5").compareTo(fill.getAmount()));
+
+        List<ExecutionReportDto> woken = waiting.get(5, TimeUnit.SECONDS);
+        assertFalse(woken.isEmpty());
+        assertEquals(2, woken.get(0).getSequence());
+        assertEquals("TRADE", woken.get(0).getType());
+        assertEquals(taker.getOrderId(), woken.get(0).getCounterOrderId());
+        assertEquals(List.of("TRADE", "FILLED"), poll("maker", 1, 2).stream().map(ExecutionReportDto::getType).toList());
+        assertEquals(0, reports.size());
+    }
+
+    @Test
+    void testCancelsAndRejectsAreReported() throws Exception {
+        OrderAckDto resting = service.placeOrderAsync("desk", order("BUY", "99", "2"));
+        assertEquals("NEW", poll("desk", 0, 1).get(0).getType());
+        service.cancelOrder(resting.getOrderId());
+        assertEquals("CANCELED", poll("desk", 1, 1).get(0).getType());
+
+        // Nothing to match against, so the IOC remainder is canceled right away
+        OrderRequest ioc = order("SELL", "99", "1");
+        ioc.setTimeInForce("IOC");
+        OrderAckDto expired = service.placeOrderAsync("desk", ioc);
+        assertEquals(2, expired.getSequence());
+        List<ExecutionReportDto> reports = poll("desk", expired.getSequence(), 1);
+        assertEquals("CANCELED", reports.get(0).getType());
+        assertEquals(expired.getOrderId(), reports.get(0).getOrderId());
+
+        // An empty poll times out with nothing
+        assertTrue(service.getExecutionReports("desk", 3, 100, 50).get(5, TimeUnit.SECONDS).isEmpty());
+    }
+
+    @Test
+    void testAmendsThatCloseAnOrderAreReported() throws Exception {
+        OrderAckDto bid = service.placeOrderAsync("desk", order("BUY", "99", "2"));
+        assertEquals("NEW", poll("desk", 0, 1).get(0).getType());
+        service.placeOrderAsync("other", order("SELL", "99", "0.5"));
+        assertEquals("TRADE", poll("desk", 1, 1).get(0).getType());
+
+        // Cut to what already traded, the order leaves the book as canceled
+        service.amendOrder(bid.getOrderId(), AmendOrderRequest.builder().amount(new BigDecimal("0.5")).build());
+        ExecutionReportDto canceled = poll("desk", 2, 1).get(0);
+        assertEquals("CANCELED", canceled.getType());
+        assertEquals(bid.getOrderId(), canceled.getOrderId());
+
+        // Re-priced across the spread, it fills completely as the aggressor
+        OrderAckDto ask = service.placeOrderAsync("desk", order("SELL", "105", "1"));
+        assertEquals("NEW", poll("desk", 3, 1).get(0).getType());
+        service.placeOrderAsync("other", order("BUY", "100", "1"));
+        service.amendOrder(ask.getOrderId(), AmendOrderRequest.builder().price(new BigDecimal("100")).build());
+        assertEquals(List.of("TRADE", "FILLED"), poll("desk", 4, 2).stream().map(ExecutionReportDto::getType).toList());
+        assertEquals(0, reports.size());
+    }
+
+    @Test
+    void testUnknownClientsAreNotKeptAndReportsAreBounded() throws Exception {
+        // A poll does not make a client known, it gets nothing right away
+        assertTrue(service.getExecutionReports("stranger", 0, 100, 10_000).get(1, TimeUnit.SECONDS).isEmpty());
+        assertEquals(0, reports.clientCount());
+
+        // The ring grows past its first size and keeps the latest 20 reports after that
+        for (int i = 0; i < 25; i++) {
+            service.placeOrderAsync("desk", order("BUY", Integer.toString(50 + i), "1"));
+        }
+        poll("desk", 24, 1);
+        List<ExecutionReportDto> kept = service.getExecutionReports("desk", 0, 100, 0).get(1, TimeUnit.SECONDS);
+        assertEquals(20, kept.size());
+        assertEquals(6, kept.get(0).getSequence());
+        assertEquals(25, kept.get(19).getSequence());
+        assertEquals(1, reports.clientCount());
+    }
+
+    /**
+     * Polls until the client has the given number of reports after the sequence.
+     */
+    private List<ExecutionReportDto> poll(String clientId, long after, int count) throws Exception {
+        List<ExecutionReportDto> reports = new ArrayList<>();
+        while (reports.size() < count) {
+            List<ExecutionReportDto> next = service.getExecutionReports(clientId, after + reports.size(), 100, 5_000)
+                    .get(10, TimeUnit.SECONDS);
+            assertFalse(next.isEmpty(), "No report within the timeout");
+            reports.addAll(next);
+        }
+        return reports;
+    }
+
+    private static OrderRequest order(String direction, String price, String amount) {
+        return OrderRequest.builder()
+                .asset("BTC")
+                .direction(direction)
+                .price(new BigDecimal(price))
+                .amount(new BigDecimal(amount))
+                .build();
+    }
+}
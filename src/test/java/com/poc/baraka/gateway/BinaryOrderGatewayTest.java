@@ -0,0 +1,252 @@
+package com.poc.baraka.gateway;
+
+import com.poc.baraka.common.IdGenerator;
+import com.poc.baraka.config.MatchingEngineProperties;
+import com.poc.baraka.dto.OrderResponse;
+import com.poc.baraka.helper.MatchingEngineHelper;
+import com.poc.baraka.metrics.EngineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+import static com.poc.baraka.gateway.GatewayProtocol.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Waqas Ahmed
+ */
+class BinaryOrderGatewayTest {
+
+    private MatchingEngineHelper matchingEngine;
+    private ExecutionRouter router;
+    private BinaryOrderGateway gateway;
+
+    @BeforeEach
+    void setUp() {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        MatchingEngineProperties.AssetProperties btc = new MatchingEngineProperties.AssetProperties();
+        btc.setPriceScale(2);
+        btc.setQuantityScale(4);
+        properties.getAssets().put("BTC", btc);
+        properties.getGateway().setEnabled(true);
+        properties.getGateway().setPort(0);
+        properties.getGateway().setMaxSymbols(1);
+
+        IdGenerator idGenerator = new IdGenerator();
+        router = new ExecutionRouter();
+        matchingEngine = new MatchingEngineHelper(properties, idGenerator, new EngineMetrics(new SimpleMeterRegistry()),
+                List.of(router));
+        gateway = new BinaryOrderGateway(properties, idGenerator, matchingEngine, router);
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.shutdown();
+        matchingEngine.shutdown();
+    }
+
+    @Test
+    void testOrdersAreAckedAndFilledOnBothSides() throws IOException {
+        try (SocketChannel maker = connect(); SocketChannel taker = connect()) {
+            // 1.5 BTC at 100.25
+            send(maker, newOrder(7L, "BTC", SIDE_SELL, 10_025, 15_000));
+            ByteBuffer makerAck = receive(maker, ACK_LENGTH);
+            assertEquals(ACK, makerAck.get(2));
+            assertEquals(7L, makerAck.getLong(4));
+            long makerId = makerAck.getLong(12);
+            assertEquals(STATUS_ACCEPTED, makerAck.get(20));
+            assertEquals(15_000, makerAck.getLong(21));
+
+            OrderResponse resting = matchingEngine.getOrderById(makerId);
+            assertEquals(0, new BigDecimal("100.25").compareTo(resting.getOrder().getPrice()));
+            assertEquals(0, new BigDecimal("1.5").compareTo(resting.getOrder().getAmount()));
+
+            send(taker, newOrder(8L, "BTC", SIDE_BUY, 10_100, 10_000));
+            // The ack comes ahead of the taker's own fill
+            ByteBuffer takerAck = receive(taker, ACK_LENGTH);
+            assertEquals(8L, takerAck.getLong(4));
+            long takerId = takerAck.getLong(12);
+            assertEquals(0, takerAck.getLong(21));
+            ByteBuffer takerFill = receive(taker, FILL_LENGTH);
+            assertEquals(FILL, takerFill.get(2));
+            assertEquals(takerId, takerFill.getLong(4));
+            assertEquals(makerId, takerFill.getLong(12));
+            assertEquals(10_025, takerFill.getLong(20));
+            assertEquals(10_000, takerFill.getLong(28));
+
+            ByteBuffer makerFill = receive(maker, FILL_LENGTH);
+            assertEquals(makerId, makerFill.getLong(4));
+            assertEquals(takerId, makerFill.getLong(12));
+            assertEquals(5_000, makerFill.getLong(36));
+
+            send(maker, cancel(9L, makerId));
+            ByteBuffer cancelAck = receive(maker, ACK_LENGTH);
+            assertEquals(9L, cancelAck.getLong(4));
+            assertEquals(STATUS_CANCELED, cancelAck.get(20));
+            assertTrue(matchingEngine.getOrderById(makerId).isCanceled());
+            assertEquals(0, router.size());
+        }
+    }
+
+    @Test
+    void testInvalidMessagesAreRejected() throws IOException {
+        try (SocketChannel client = connect()) {
+            send(client, newOrder(1L, "BTC", (byte) 3, 100, 100));
+            ByteBuffer badSide = receive(client, REJECT_LENGTH);
+            assertEquals(REJECT, badSide.get(2));
+            assertEquals(1L, badSide.getLong(4));
+            assertEquals(REJECT_INVALID_ORDER, badSide.get(20));
+
+            send(client, cancel(2L, 12_345L));
+            assertEquals(REJECT_UNKNOWN_ORDER, receive(client, REJECT_LENGTH).get(20));
+
+            // An unknown template is skipped by its length, the frame after it in the same write still counts
+            ByteBuffer unknown = ByteBuffer.allocate(HEADER_LENGTH + 8).order(BYTE_ORDER)
+                    .putShort((short) (HEADER_LENGTH + 8)).put((byte) 42).put(VERSION).putLong(3L).flip();
+            ByteBuffer valid = newOrder(4L, "ETH", SIDE_BUY, 100, 100);
+            send(client, ByteBuffer.allocate(unknown.remaining() + valid.remaining()).put(unknown).put(valid).flip());
+            ByteBuffer unknownReject = receive(client, REJECT_LENGTH);
+            assertEquals(3L, unknownReject.getLong(4));
+            assertEquals(REJECT_INVALID_MESSAGE, unknownReject.get(20));
+            assertEquals(4L, receive(client, ACK_LENGTH).getLong(4));
+        }
+    }
+
+    @Test
+    void testUnconfiguredSymbolsBeyondTheLimitAreRejected() throws IOException {
+        try (SocketChannel client = connect()) {
+            send(client, newOrder(1L, "ETH", SIDE_BUY, 100, 100));
+            assertEquals(1L, receive(client, ACK_LENGTH).getLong(4));
+
+            send(client, newOrder(2L, "SOL", SIDE_BUY, 100, 100));
+            ByteBuffer reject = receive(client, REJECT_LENGTH);
+            assertEquals(2L, reject.getLong(4));
+            assertEquals(REJECT_INVALID_ORDER, reject.get(20));
+            assertNull(matchingEngine.getBookView("SOL"));
+
+            // Configured assets and symbols already taken are still accepted
+            send(client, newOrder(3L, "BTC", SIDE_BUY, 100, 100));
+            assertEquals(3L, receive(client, ACK_LENGTH).getLong(4));
+            send(client, newOrder(4L, "ETH", SIDE_BUY, 100, 100));
+            assertEquals(4L, receive(client, ACK_LENGTH).getLong(4));
+        }
+    }
+
+    @Test
+    void testSessionCannotCancelAnotherSessionsOrder() throws IOException {
+        try (SocketChannel owner = connect(); SocketChannel other = connect()) {
+            send(owner, newOrder(1L, "BTC", SIDE_SELL, 10_000, 10_000));
+            long orderId = receive(owner, ACK_LENGTH).getLong(12);
+
+            send(other, cancel(7L, orderId));
+            ByteBuffer reject = receive(other, REJECT_LENGTH);
+            assertEquals(7L, reject.getLong(4));
+            assertEquals(orderId, reject.getLong(12));
+            assertEquals(REJECT_UNKNOWN_ORDER, reject.get(20));
+            assertFalse(matchingEngine.getOrderById(orderId).isCanceled());
+
+            send(owner, cancel(2L, orderId));
+            ByteBuffer ack = receive(owner, ACK_LENGTH);
+            assertEquals(2L, ack.getLong(4));
+            assertEquals(STATUS_CANCELED, ack.get(20));
+        }
+    }
+
+    @Test
+    void testOrderCanceledOutsideTheGatewayIsAckedToItsSession() throws IOException {
+        try (SocketChannel client = connect()) {
+            send(client, newOrder(1L, "BTC", SIDE_SELL, 10_000, 10_000));
+            long first = receive(client, ACK_LENGTH).getLong(12);
+            send(client, newOrder(2L, "BTC", SIDE_SELL, 10_100, 10_000));
+            long second = receive(client, ACK_LENGTH).getLong(12);
+
+            matchingEngine.cancelOrder(first);
+            ByteBuffer canceled = receive(client, ACK_LENGTH);
+            assertEquals(1L, canceled.getLong(4));
+            assertEquals(first, canceled.getLong(12));
+            assertEquals(STATUS_CANCELED, canceled.get(20));
+
+            matchingEngine.cancelAllOrders("BTC");
+            ByteBuffer all = receive(client, ACK_LENGTH);
+            assertEquals(2L, all.getLong(4));
+            assertEquals(second, all.getLong(12));
+            assertEquals(STATUS_CANCELED, all.get(20));
+            assertEquals(0, router.size());
+        }
+    }
+
+    @Test
+    void testMarketOrderIsAckedAsExpiredAfterItsFills() throws IOException {
+        try (SocketChannel maker = connect(); SocketChannel taker = connect()) {
+            send(maker, newOrder(1L, "BTC", SIDE_SELL, 10_000, 10_000));
+            long makerId = receive(maker, ACK_LENGTH).getLong(12);
+
+            send(taker, newOrder(2L, "BTC", SIDE_BUY, TYPE_MARKET, TIF_GTC, 100, 10_000));
+            assertEquals(REJECT_INVALID_ORDER, receive(taker, REJECT_LENGTH).get(20));
+
+            send(taker, newOrder(3L, "BTC", SIDE_BUY, TYPE_MARKET, TIF_GTC, 0, 25_000));
+            ByteBuffer ack = receive(taker, ACK_LENGTH);
+            assertEquals(STATUS_EXPIRED, ack.get(20));
+            assertEquals(0, ack.getLong(21));
+            ByteBuffer fill = receive(taker, FILL_LENGTH);
+            assertEquals(makerId, fill.getLong(12));
+            assertEquals(10_000, fill.getLong(20));
+            assertEquals(15_000, fill.getLong(36));
+
+            OrderResponse market = matchingEngine.getOrderById(ack.getLong(12));
+            assertTrue(market.isCanceled());
+            assertNull(market.getOrder().getPrice());
+            assertEquals(0, router.size());
+        }
+    }
+
+    @Test
+    void testRestingOrderCanceledBySelfTradeIsAckedToItsSession() throws IOException {
+        try (SocketChannel maker = connect(); SocketChannel taker = connect()) {
+            send(maker, newOrder(1L, "BTC", SIDE_SELL, TYPE_LIMIT, TIF_GTC, 10_000, 10_000, 5L, STP_CANCEL_NEWEST));
+            long makerId = receive(maker, ACK_LENGTH).getLong(12);
+
+            send(taker, newOrder(2L, "BTC", SIDE_BUY, TYPE_LIMIT, TIF_GTC, 10_000, 10_000, 5L, STP_CANCEL_OLDEST));
+            ByteBuffer canceled = receive(maker, ACK_LENGTH);
+            assertEquals(1L, canceled.getLong(4));
+            assertEquals(makerId, canceled.getLong(12));
+            assertEquals(STATUS_CANCELED, canceled.get(20));
+            ByteBuffer ack = receive(taker, ACK_LENGTH);
+            assertEquals(STATUS_ACCEPTED, ack.get(20));
+            assertEquals(10_000, ack.getLong(21));
+
+            send(taker, newOrder(3L, "BTC", SIDE_SELL, TYPE_LIMIT, TIF_GTC, 10_000, 10_000, 5L, STP_CANCEL_NEWEST));
+            assertEquals(STATUS_CANCELED, receive(taker, ACK_LENGTH).get(20));
+            assertTrue(matchingEngine.getOrderById(makerId).isCanceled());
+        }
+    }
+
+    private SocketChannel connect() throws IOException {
+        return SocketChannel.open(new InetSocketAddress("localhost", gateway.getPort()));
+    }
+
+    private static void send(SocketChannel channel, ByteBuffer frame) throws IOException {
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    private static ByteBuffer receive(SocketChannel channel, int length) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(length).order(BYTE_ORDER);
+        while (frame.hasRemaining()) {
+            if (channel.read(frame) < 0) {
+                throw new IOException("Gateway closed the connection");
+            }
+        }
+        assertEquals(length, frame.getShort(0));
+        return frame.flip();
+    }
+}
@@ -4,14 +4,32 @@ package com.poc.baraka.helper;
  * @author Waqas Ahmed
  */
 
+import com.poc.baraka.common.IdGenerator;
+import com.poc.baraka.config.MatchingEngineProperties;
+import com.poc.baraka.engine.BookType;
+import com.poc.baraka.dto.BatchItemResponse;
 import com.poc.baraka.dto.OrderDto;
 import com.poc.baraka.dto.OrderResponse;
 import com.poc.baraka.dto.TradeDto;
+import com.poc.baraka.engine.BookView;
 import com.poc.baraka.enums.OrderDirectionEnum;
+import com.poc.baraka.enums.OrderTypeEnum;
+import com.poc.baraka.enums.TimeInForceEnum;
+import com.poc.baraka.exception.InvalidOrderException;
+import com.poc.baraka.metrics.EngineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -24,6 +42,11 @@ class MatchingEngineHelperTest {
         matchingEngine = new MatchingEngineHelper();
     }
 
+    @AfterEach
+    void tearDown() {
+        matchingEngine.shutdown();
+    }
+
     @Test
     void testPlaceBuyOrder_NoMatchingSellOrder() {
         OrderDto buyOrder = OrderDto.builder()
@@ -149,4 +172,420 @@ class MatchingEngineHelperTest {
         OrderResponse response = matchingEngine.getOrderById(999L);
         assertNull(response);
     }
+
+    @Test
+    void testOrdersOfDifferentAssetsDoNotMatch() {
+        OrderDto sellOrder = OrderDto.builder()
+                .id(8L)
+                .asset("ETH")
+                .amount(new BigDecimal("1.0"))
+                .price(new BigDecimal("10000"))
+                .direction(OrderDirectionEnum.SELL.name())
+                .build();
+
+        matchingEngine.matchOrder(sellOrder);
+
+        OrderDto buyOrder = OrderDto.builder()
+                .id(9L)
+                .asset("BTC")
+                .amount(new BigDecimal("1.0"))
+                .price(new BigDecimal("10000"))
+                .direction(OrderDirectionEnum.BUY.name())
+                .build();
+
+        OrderResponse response = matchingEngine.matchOrder(buyOrder);
+
+        assertEquals(new BigDecimal("1.0"), response.getOrder().getPendingAmount());
+        assertTrue(response.getOrder().getTrades().isEmpty());
+        assertEquals(new BigDecimal("1.0"), matchingEngine.getOrderById(8L).getOrder().getPendingAmount());
+    }
+
+    @Test
+    void testCancelBuyOrder() {
+        OrderDto buyOrder = OrderDto.builder()
+                .id(10L)
+                .asset("BTC")
+                .amount(new BigDecimal("1.0"))
+                .price(new BigDecimal("10000"))
+                .direction(OrderDirectionEnum.BUY.name())
+                .build();
+
+        matchingEngine.matchOrder(buyOrder);
+
+        OrderResponse response = matchingEngine.cancelOrder(10L);
+
+        assertTrue(response.isCanceled());
+        assertEquals(BigDecimal.ZERO, response.getOrder().getPendingAmount());
+
+        // Nothing left to match against
+        OrderDto sellOrder = OrderDto.builder()
+                .id(11L)
+                .asset("BTC")
+                .amount(new BigDecimal("1.0"))
+                .price(new BigDecimal("10000"))
+                .direction(OrderDirectionEnum.SELL.name())
+                .build();
+
+        assertTrue(matchingEngine.matchOrder(sellOrder).getOrder().getTrades().isEmpty());
+    }
+
+    @Test
+    void testAssetPinnedToConfiguredShard() {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.setShards(4);
+        MatchingEngineProperties.AssetProperties btc = new MatchingEngineProperties.AssetProperties();
+        btc.setShard(3);
+        properties.getAssets().put("BTC", btc);
+
+        MatchingEngineHelper engine = new MatchingEngineHelper(properties);
+        try {
+            assertEquals(3, engine.shardFor("BTC").getIndex());
+            assertSame(engine.shardFor("ETH"), engine.shardFor("ETH"));
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void testPartialFillsAcrossDifferentAmountScales() {
+        OrderDto sellOrder = OrderDto.builder()
+                .id(12L)
+                .asset("BTC")
+                .amount(new BigDecimal("0.25"))
+                .price(new BigDecimal("10000.50"))
+                .direction(OrderDirectionEnum.SELL.name())
+                .build();
+
+        matchingEngine.matchOrder(sellOrder);
+
+        OrderDto buyOrder = OrderDto.builder()
+                .id(13L)
+                .asset("BTC")
+                .amount(new BigDecimal("1.0"))
+                .price(new BigDecimal("10001"))
+                .direction(OrderDirectionEnum.BUY.name())
+                .build();
+
+        OrderResponse response = matchingEngine.matchOrder(buyOrder);
+
+        assertEquals(new BigDecimal("0.75"), response.getOrder().getPendingAmount());
+        TradeDto trade = response.getOrder().getTrades().get(0);
+        assertEquals(new BigDecimal("0.25"), trade.getAmount());
+        assertEquals(new BigDecimal("10000.50"), trade.getPrice());
+        assertEquals(new BigDecimal("0.00"), matchingEngine.getOrderById(12L).getOrder().getPendingAmount());
+    }
+
+    @Test
+    void testPriceFinerThanTickIsRejected() {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        MatchingEngineProperties.AssetProperties btc = new MatchingEngineProperties.AssetProperties();
+        btc.setPriceScale(2);
+        properties.getAssets().put("BTC", btc);
+
+        MatchingEngineHelper engine = new MatchingEngineHelper(properties);
+        try {
+            OrderDto order = OrderDto.builder()
+                    .id(14L)
+                    .asset("BTC")
+                    .amount(new BigDecimal("1.0"))
+                    .price(new BigDecimal("10000.001"))
+                    .direction(OrderDirectionEnum.BUY.name())
+                    .build();
+
+            assertThrows(InvalidOrderException.class, () -> engine.matchOrder(order));
+            assertNull(engine.getOrderById(14L));
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void testConcurrentProducersThroughSmallRing() throws Exception {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.setShards(2);
+        properties.setRingSize(8);
+        properties.setBatchSize(4);
+
+        MatchingEngineHelper engine = new MatchingEngineHelper(properties);
+        int threads = 4;
+        int ordersPerThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long base = 1_000L + t * ordersPerThread;
+                String direction = (t % 2 == 0 ? OrderDirectionEnum.BUY : OrderDirectionEnum.SELL).name();
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < ordersPerThread; i++) {
+                        engine.matchOrder(OrderDto.builder()
+                                .id(base + i)
+                                .asset(i % 2 == 0 ? "BTC" : "ETH")
+                                .amount(new BigDecimal("1"))
+                                .price(new BigDecimal("100"))
+                                .direction(direction)
+                                .build());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+
+            // As many buys as sells at one price, so everything must have traded
+            for (long id = 1_000L; id < 1_000L + threads * ordersPerThread; id++) {
+                assertEquals(0, engine.getOrderById(id).getOrder().getPendingAmount().signum(), "order " + id);
+            }
+        } finally {
+            executor.shutdownNow();
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void testManyVirtualThreadsWaitingOnSmallRing() throws Exception {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.setShards(1);
+        properties.setRingSize(8);
+
+        MatchingEngineHelper engine = new MatchingEngineHelper(properties);
+        int orders = 2_000;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<OrderResponse>> futures = new ArrayList<>(orders);
+            for (int i = 0; i < orders; i++) {
+                long id = 50_000L + i;
+                String direction = (i % 2 == 0 ? OrderDirectionEnum.BUY : OrderDirectionEnum.SELL).name();
+                futures.add(executor.submit(() -> engine.matchOrder(order(id, "BTC", direction, "1", "100"))));
+            }
+            for (Future<OrderResponse> future : futures) {
+                assertNotNull(future.get(30, TimeUnit.SECONDS));
+            }
+            // As many buys as sells at one price, so the book must end up empty
+            assertTrue(engine.cancelAllOrders("BTC").isEmpty());
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void testCountersAndDepthGauges() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MatchingEngineHelper engine = new MatchingEngineHelper(new MatchingEngineProperties(), new IdGenerator(),
+                new EngineMetrics(registry), List.of());
+        try {
+            for (long id = 0; id < 3; id++) {
+                engine.matchOrder(OrderDto.builder()
+                        .id(id)
+                        .asset("BTC")
+                        .amount(new BigDecimal("1"))
+                        .price(new BigDecimal(100 + id))
+                        .direction(OrderDirectionEnum.SELL.name())
+                        .build());
+            }
+            // Sweeps the two best asks
+            engine.matchOrder(OrderDto.builder()
+                    .id(3L)
+                    .asset("BTC")
+                    .amount(new BigDecimal("2"))
+                    .price(new BigDecimal("101"))
+                    .direction(OrderDirectionEnum.BUY.name())
+                    .build());
+            engine.cancelOrder(2L);
+
+            assertEquals(4, registry.get("matching.orders.placed").counter().count());
+            assertEquals(2, registry.get("matching.trades").counter().count());
+            assertEquals(1, registry.get("matching.orders.canceled").counter().count());
+            assertEquals(0, registry.get("orderbook.resting.orders").tag("asset", "BTC").gauge().value());
+            assertEquals(0, registry.get("orderbook.levels").tags("asset", "BTC", "side", "ask").gauge().value());
+            assertEquals(4, registry.get("matching.stage.latency").tag("stage", "match").timer().count());
+            assertEquals(5, registry.get("matching.stage.latency").tag("stage", "queue").timer().count());
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void testBatchAcrossAssetsRejectsOffTickOrderOnly() {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.setShards(2);
+        MatchingEngineProperties.AssetProperties btc = new MatchingEngineProperties.AssetProperties();
+        btc.setPriceScale(2);
+        btc.setShard(0);
+        properties.getAssets().put("BTC", btc);
+        MatchingEngineProperties.AssetProperties eth = new MatchingEngineProperties.AssetProperties();
+        eth.setShard(1);
+        properties.getAssets().put("ETH", eth);
+
+        MatchingEngineHelper engine = new MatchingEngineHelper(properties);
+        try {
+            List<BatchItemResponse> results = engine.matchOrders(List.of(
+                    order(20L, "BTC", "SELL", "1", "100"),
+                    order(21L, "ETH", "SELL", "1", "50"),
+                    order(22L, "BTC", "BUY", "1", "100.001"),
+                    order(23L, "BTC", "BUY", "1", "100")));
+
+            assertEquals(4, results.size());
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(i, results.get(i).getIndex());
+            }
+            assertNull(results.get(0).getError());
+            assertNull(results.get(1).getError());
+            assertNotNull(results.get(2).getError());
+            assertNull(results.get(2).getResult());
+            // Matched against the sell placed earlier in the same batch
+            assertEquals(1, results.get(3).getResult().getOrder().getTrades().size());
+            assertEquals(0, results.get(3).getResult().getOrder().getPendingAmount().signum());
+            assertNull(engine.getOrderById(22L));
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void testBatchReportsAPriceOutsideTheBandOfAnArrayBook() {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        MatchingEngineProperties.AssetProperties btc = new MatchingEngineProperties.AssetProperties();
+        btc.setPriceScale(0);
+        btc.setBookType(BookType.ARRAY);
+        btc.setPriceBand(64);
+        properties.getAssets().put("BTC", btc);
+
+        MatchingEngineHelper engine = new MatchingEngineHelper(properties);
+        try {
+            List<BatchItemResponse> results = engine.matchOrders(List.of(
+                    order(40L, "BTC", "SELL", "1", "1000"),
+                    order(41L, "BTC", "SELL", "1", "1064"),
+                    order(42L, "BTC", "SELL", "1", "1063")));
+
+            assertNull(results.get(0).getError());
+            assertEquals("Price is outside the price band of BTC", results.get(1).getError());
+            assertNull(results.get(1).getResult());
+            assertNull(results.get(2).getError());
+            assertNull(engine.getOrderById(41L));
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void testBatchCancelReportsUnknownIds() {
+        matchingEngine.matchOrder(order(30L, "BTC", "BUY", "1", "100"));
+        matchingEngine.matchOrder(order(31L, "BTC", "BUY", "1", "99"));
+
+        List<BatchItemResponse> results = matchingEngine.cancelOrders(List.of(31L, 999L, 30L));
+
+        assertEquals(31L, results.get(0).getResult().getOrder().getId());
+        assertEquals("Order not found", results.get(1).getError());
+        assertEquals(30L, results.get(2).getResult().getOrder().getId());
+        assertTrue(matchingEngine.cancelAllOrders("BTC").isEmpty());
+    }
+
+    @Test
+    void testCancelAllEmptiesOnlyThatAsset() {
+        matchingEngine.matchOrder(order(40L, "BTC", "BUY", "1", "100"));
+        matchingEngine.matchOrder(order(41L, "BTC", "SELL", "1", "110"));
+        matchingEngine.matchOrder(order(42L, "ETH", "BUY", "1", "10"));
+
+        List<OrderResponse> canceled = matchingEngine.cancelAllOrders("BTC");
+
+        assertEquals(2, canceled.size());
+        assertTrue(matchingEngine.cancelAllOrders("BTC").isEmpty());
+        // The BTC orders are gone from the book, so a crossing sell rests instead of matching
+        OrderResponse sell = matchingEngine.matchOrder(order(43L, "BTC", "SELL", "1", "90"));
+        assertTrue(sell.getOrder().getTrades().isEmpty());
+        assertEquals(1, matchingEngine.cancelAllOrders("ETH").size());
+    }
+
+    @Test
+    void testMarketAndLimitOrdersAreCheckedForAPrice() {
+        OrderDto limitWithoutPrice = order(50L, "BTC", "BUY", "1", "100");
+        limitWithoutPrice.setPrice(null);
+        assertThrows(InvalidOrderException.class, () -> matchingEngine.matchOrder(limitWithoutPrice));
+
+        OrderDto marketWithPrice = order(51L, "BTC", "BUY", "1", "100");
+        marketWithPrice.setType(OrderTypeEnum.MARKET.name());
+        assertThrows(InvalidOrderException.class, () -> matchingEngine.matchOrder(marketWithPrice));
+        assertNull(matchingEngine.getOrderById(51L));
+    }
+
+    @Test
+    void testMarketOrderSweepsTheBookAndNeverRests() {
+        matchingEngine.matchOrder(order(52L, "BTC", "SELL", "1", "100"));
+        matchingEngine.matchOrder(order(53L, "BTC", "SELL", "1", "105"));
+
+        OrderDto market = order(54L, "BTC", "buy", "3", "1");
+        market.setPrice(null);
+        market.setType("market");
+        OrderResponse response = matchingEngine.matchOrder(market);
+
+        assertEquals(2, response.getOrder().getTrades().size());
+        assertTrue(response.isCanceled());
+        OrderResponse stored = matchingEngine.getOrderById(54L);
+        assertEquals(OrderTypeEnum.MARKET.name(), stored.getOrder().getType());
+        // Market orders are immediate, GTC does not apply to them
+        assertEquals(TimeInForceEnum.IOC.name(), stored.getOrder().getTimeInForce());
+        assertNull(stored.getOrder().getPrice());
+        assertEquals(0, stored.getOrder().getPendingAmount().signum());
+
+        // Nothing was left in the book to buy from or sell to
+        OrderResponse sell = matchingEngine.matchOrder(order(55L, "BTC", "SELL", "1", "1"));
+        assertTrue(sell.getOrder().getTrades().isEmpty());
+    }
+
+    @Test
+    void testAmendKeepsIdAndReportsPendingAfterFills() {
+        matchingEngine.matchOrder(order(60L, "BTC", "SELL", "5", "100"));
+        matchingEngine.matchOrder(order(61L, "BTC", "BUY", "2", "100"));
+
+        OrderResponse amended = matchingEngine.amendOrder(60L, new BigDecimal("101"), new BigDecimal("4"));
+
+        assertEquals(60L, amended.getOrder().getId());
+        assertEquals(new BigDecimal("101"), amended.getOrder().getPrice());
+        assertEquals(new BigDecimal("2"), amended.getOrder().getPendingAmount());
+        assertEquals(1, amended.getOrder().getTrades().size());
+        assertEquals(new BigDecimal("2"), matchingEngine.getOrderById(60L).getOrder().getPendingAmount());
+
+        // Filled or unknown orders cannot be amended
+        assertNull(matchingEngine.amendOrder(61L, new BigDecimal("99"), null));
+        assertNull(matchingEngine.amendOrder(99L, new BigDecimal("99"), null));
+
+        OrderResponse buy = matchingEngine.matchOrder(order(62L, "BTC", "BUY", "3", "101"));
+        assertEquals(new BigDecimal("1"), buy.getOrder().getPendingAmount());
+        assertTrue(matchingEngine.getOrderById(60L).getOrder().getPendingAmount().signum() == 0);
+    }
+
+    @Test
+    void testBookViewFollowsTheBook() throws InterruptedException {
+        assertNull(matchingEngine.getBookView("SOL"));
+        matchingEngine.matchOrder(order(70L, "SOL", "BUY", "2", "20"));
+        matchingEngine.matchOrder(order(71L, "SOL", "SELL", "1", "21"));
+
+        // Views are published after the batch, right after the orders completed
+        BookView view = awaitView("SOL", v -> v.getBidLevels() == 1 && v.getAskLevels() == 1);
+        assertEquals(2_00000000L, view.getBidQuantity(0));
+
+        matchingEngine.matchOrder(order(72L, "SOL", "SELL", "2", "20"));
+        view = awaitView("SOL", v -> v.getBidLevels() == 0);
+        assertEquals(1, view.getAskLevels());
+    }
+
+    private BookView awaitView(String asset, Predicate<BookView> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        BookView view = matchingEngine.getBookView(asset);
+        while (view == null || !condition.test(view)) {
+            assertTrue(System.currentTimeMillis() < deadline, "Book view not published");
+            Thread.sleep(1);
+            view = matchingEngine.getBookView(asset);
+        }
+        return view;
+    }
+
+    private static OrderDto order(long id, String asset, String direction, String amount, String price) {
+        return OrderDto.builder()
+                .id(id)
+                .asset(asset)
+                .amount(new BigDecimal(amount))
+                .price(new BigDecimal(price))
+                .direction(direction)
+                .build();
+    }
 }
@@ -0,0 +1,253 @@
+package com.poc.baraka.journal;
+
+/**
+ * @author Waqas Ahmed
+ */
+
+import com.poc.baraka.common.IdGenerator;
+import com.poc.baraka.config.MatchingEngineProperties;
+import com.poc.baraka.dto.OrderDto;
+import com.poc.baraka.dto.OrderResponse;
+import com.poc.baraka.enums.OrderDirectionEnum;
+import com.poc.baraka.enums.OrderTypeEnum;
+import com.poc.baraka.enums.SelfTradePreventionEnum;
+import com.poc.baraka.enums.TimeInForceEnum;
+import com.poc.baraka.helper.MatchingEngineHelper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private MatchingEngineProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MatchingEngineProperties();
+        properties.setShards(2);
+        properties.getJournal().setEnabled(true);
+        properties.getJournal().setDirectory(directory.toString());
+        properties.getJournal().setFsync(false);
+    }
+
+    private static OrderDto order(long id, String asset, OrderDirectionEnum direction, String price, String amount) {
+        return OrderDto.builder()
+                .id(id)
+                .timestamp("2025-10-17T00:49:02.137585600Z")
+                .asset(asset)
+                .amount(new BigDecimal(amount))
+                .price(new BigDecimal(price))
+                .direction(direction.name())
+                .build();
+    }
+
+    @Test
+    void testRestartRebuildsBooksOrdersAndIds() {
+        MatchingEngineHelper engine = new MatchingEngineHelper(properties, new IdGenerator());
+        engine.matchOrder(order(0L, "BTC", OrderDirectionEnum.SELL, "100.50", "2.0"));
+        engine.matchOrder(order(1L, "BTC", OrderDirectionEnum.BUY, "101", "0.5"));
+        engine.matchOrder(order(2L, "ETH", OrderDirectionEnum.BUY, "10", "3"));
+        engine.matchOrder(order(3L, "ETH", OrderDirectionEnum.BUY, "9", "1"));
+        engine.cancelOrder(3L);
+        engine.shutdown();
+
+        IdGenerator idGenerator = new IdGenerator();
+        MatchingEngineHelper restarted = new MatchingEngineHelper(properties, idGenerator);
+        try {
+            assertEquals(4L, idGenerator.nextId());
+
+            OrderResponse sell = restarted.getOrderById(0L);
+            assertEquals(new BigDecimal("1.5"), sell.getOrder().getPendingAmount());
+            assertEquals(new BigDecimal("100.50"), sell.getOrder().getPrice());
+            assertEquals(1, sell.getOrder().getTrades().size());
+            assertTrue(restarted.getOrderById(3L).isCanceled());
+
+            // The rebuilt book keeps matching where it left off
+            OrderResponse buy = restarted.matchOrder(order(4L, "BTC", OrderDirectionEnum.BUY, "100.50", "1.5"));
+            assertEquals(0, buy.getOrder().getPendingAmount().signum());
+            assertEquals(0L, buy.getOrder().getTrades().get(0).getOrderId());
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    void testImmediateOrdersReplayWithoutResting() {
+        MatchingEngineHelper engine = new MatchingEngineHelper(properties, new IdGenerator());
+        engine.matchOrder(order(0L, "BTC", OrderDirectionEnum.SELL, "100", "1"));
+        OrderDto ioc = order(1L, "BTC", OrderDirectionEnum.BUY, "100", "2");
+        ioc.setTimeInForce(TimeInForceEnum.IOC.name());
+        engine.matchOrder(ioc);
+        engine.matchOrder(order(2L, "BTC", OrderDirectionEnum.SELL, "100", "1"));
+        OrderDto market = order(3L, "BTC", OrderDirectionEnum.BUY, "1", "0.5");
+        market.setPrice(null);
+        market.setType(OrderTypeEnum.MARKET.name());
+        engine.matchOrder(market);
+        engine.shutdown();
+
+        MatchingEngineHelper restarted = new MatchingEngineHelper(properties, new IdGenerator());
+        try {
+            OrderResponse replayedIoc = restarted.getOrderById(1L);
+            assertTrue(replayedIoc.isCanceled());
+            assertEquals(TimeInForceEnum.IOC.name(), replayedIoc.getOrder().getTimeInForce());
+            assertEquals(1, replayedIoc.getOrder().getTrades().size());
+
+            OrderResponse replayedMarket = restarted.getOrderById(3L);
+            assertEquals(OrderTypeEnum.MARKET.name(), replayedMarket.getOrder().getType());
+            assertNull(replayedMarket.getOrder().getPrice());
+            // The IOC remainder did not rest, so the second sell was left for the market order
+            assertEquals(new BigDecimal("0.5"), restarted.getOrderById(2L).getOrder().getPendingAmount());
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    void testAmendsReplayInPlace() {
+        MatchingEngineHelper engine = new MatchingEngineHelper(properties, new IdGenerator());
+        engine.matchOrder(order(0L, "BTC", OrderDirectionEnum.SELL, "100.50", "2.0"));
+        engine.matchOrder(order(1L, "BTC", OrderDirectionEnum.SELL, "100.50", "1.0"));
+        engine.amendOrder(0L, null, new BigDecimal("1.5"));
+        engine.amendOrder(1L, new BigDecimal("99.25"), null);
+        engine.shutdown();
+
+        MatchingEngineHelper restarted = new MatchingEngineHelper(properties, new IdGenerator());
+        try {
+            assertEquals(new BigDecimal("1.5"), restarted.getOrderById(0L).getOrder().getPendingAmount());
+            assertEquals(new BigDecimal("99.25"), restarted.getOrderById(1L).getOrder().getPrice());
+
+            OrderResponse buy = restarted.matchOrder(order(2L, "BTC", OrderDirectionEnum.BUY, "100.50", "3"));
+            assertEquals(1L, buy.getOrder().getTrades().get(0).getOrderId());
+            assertEquals(new BigDecimal("99.25"), buy.getOrder().getTrades().get(0).getPrice());
+            assertEquals(0L, buy.getOrder().getTrades().get(1).getOrderId());
+            assertEquals(new BigDecimal("0.5"), buy.getOrder().getPendingAmount());
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    void testAccountsSurviveSnapshotAndReplay() throws Exception {
+        properties.getSnapshot().setDirectory(directory.resolve("snapshots").toString());
+        MatchingEngineHelper engine = new MatchingEngineHelper(properties, new IdGenerator());
+        OrderDto resting = order(0L, "BTC", OrderDirectionEnum.SELL, "100", "1");
+        resting.setAccountId(7L);
+        engine.matchOrder(resting);
+        assertNotNull(engine.takeSnapshot().get(10, TimeUnit.SECONDS));
+
+        // Journaled after the snapshot, it only cancels the resting order if that kept its account
+        OrderDto oldest = order(1L, "BTC", OrderDirectionEnum.BUY, "100", "1");
+        oldest.setAccountId(7L);
+        oldest.setSelfTradePrevention(SelfTradePreventionEnum.CANCEL_OLDEST.name());
+        engine.matchOrder(oldest);
+        engine.shutdown();
+
+        MatchingEngineHelper restarted = new MatchingEngineHelper(properties, new IdGenerator());
+        try {
+            assertTrue(restarted.getOrderById(0L).isCanceled());
+            OrderResponse replayed = restarted.getOrderById(1L);
+            assertEquals(7L, replayed.getOrder().getAccountId());
+            assertEquals(SelfTradePreventionEnum.CANCEL_OLDEST.name(), replayed.getOrder().getSelfTradePrevention());
+            assertEquals(BigDecimal.ONE, replayed.getOrder().getPendingAmount());
+
+            OrderDto newest = order(2L, "BTC", OrderDirectionEnum.SELL, "100", "1");
+            newest.setAccountId(7L);
+            assertTrue(restarted.matchOrder(newest).isCanceled());
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    void testTornTailIsTruncated() throws IOException {
+        MatchingEngineHelper engine = new MatchingEngineHelper(properties, new IdGenerator());
+        engine.matchOrder(order(0L, "BTC", OrderDirectionEnum.SELL, "100", "1"));
+        engine.matchOrder(order(1L, "BTC", OrderDirectionEnum.SELL, "101", "1"));
+        engine.shutdown();
+
+        Path file = OrderJournal.segments(directory).get(0);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        List<Long> replayed = new ArrayList<>();
+        try (OrderJournal journal = OrderJournal.open(directory, 4096, 1, false)) {
+            journal.replay(0, new OrderJournal.Visitor() {
+                @Override
+                public void onPlace(long sequence, OrderDto order) {
+                    replayed.add(order.getId());
+                }
+
+                @Override
+                public void onCancel(long sequence, String asset, long orderId) {
+                    fail("No cancel was journaled");
+                }
+
+                @Override
+                public void onAmend(long sequence, String asset, long orderId, BigDecimal price, BigDecimal amount) {
+                    fail("No amend was journaled");
+                }
+            });
+            assertEquals(1L, journal.getSequence());
+        }
+        assertEquals(List.of(0L), replayed);
+    }
+
+    @Test
+    void testRestartFromSnapshotReplaysOnlyTheTail() throws Exception {
+        properties.getSnapshot().setDirectory(directory.resolve("snapshots").toString());
+        IdGenerator ids = new IdGenerator();
+        MatchingEngineHelper engine = new MatchingEngineHelper(properties, ids);
+        engine.matchOrder(order(ids.nextId(), "BTC", OrderDirectionEnum.SELL, "100", "2"));
+        engine.matchOrder(order(ids.nextId(), "BTC", OrderDirectionEnum.SELL, "100", "1"));
+        engine.matchOrder(order(ids.nextId(), "BTC", OrderDirectionEnum.BUY, "100", "0.5"));
+        engine.matchOrder(order(ids.nextId(), "ETH", OrderDirectionEnum.BUY, "10", "1"));
+
+        assertNotNull(engine.takeSnapshot().get(10, TimeUnit.SECONDS));
+
+        // Tail after the snapshot
+        engine.matchOrder(order(ids.nextId(), "BTC", OrderDirectionEnum.BUY, "100", "2"));
+        engine.cancelOrder(3L);
+        engine.matchOrder(order(ids.nextId(), "SOL", OrderDirectionEnum.SELL, "5", "1"));
+        engine.shutdown();
+
+        // Old segments are skipped on restart, so dropping them must not matter
+        List<Path> segments = OrderJournal.segments(directory);
+        assertTrue(segments.size() >= 2);
+        Files.delete(segments.get(0));
+
+        IdGenerator restartedIds = new IdGenerator();
+        MatchingEngineHelper restarted = new MatchingEngineHelper(properties, restartedIds);
+        try {
+            assertEquals(6L, restartedIds.nextId());
+
+            // First sell order was filled before and after the snapshot
+            assertEquals(0, restarted.getOrderById(0L).getOrder().getPendingAmount().signum());
+            assertEquals(2, restarted.getOrderById(0L).getOrder().getTrades().size());
+            assertEquals(new BigDecimal("0.5"), restarted.getOrderById(1L).getOrder().getPendingAmount());
+            assertTrue(restarted.getOrderById(3L).isCanceled());
+            assertNotNull(restarted.getOrderById(5L));
+
+            // Time priority at the level survived the snapshot
+            OrderResponse buy = restarted.matchOrder(order(6L, "BTC", OrderDirectionEnum.BUY, "100", "0.5"));
+            assertEquals(1L, buy.getOrder().getTrades().get(0).getOrderId());
+        } finally {
+            restarted.shutdown();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.poc.baraka.marketdata;
+
+/**
+ * @author Waqas Ahmed
+ */
+
+import com.poc.baraka.common.IdGenerator;
+import com.poc.baraka.config.MatchingEngineProperties;
+import com.poc.baraka.dto.DepthSnapshotDto;
+import com.poc.baraka.dto.LevelUpdateDto;
+import com.poc.baraka.dto.OrderDto;
+import com.poc.baraka.dto.TradePrintDto;
+import com.poc.baraka.enums.OrderDirectionEnum;
+import com.poc.baraka.helper.MatchingEngineHelper;
+import com.poc.baraka.metrics.EngineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarketDataPublisherTest {
+
+    private MarketDataPublisher publisher;
+    private MatchingEngineHelper engine;
+
+    @BeforeEach
+    void setUp() {
+        publisher = new MarketDataPublisher(0, 100);
+        engine = new MatchingEngineHelper(new MatchingEngineProperties(), new IdGenerator(),
+                new EngineMetrics(new SimpleMeterRegistry()), List.of(publisher));
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+        publisher.shutdown();
+    }
+
+    private record Message(String event, long sequence, Object data) {
+    }
+
+    private static OrderDto order(long id, OrderDirectionEnum direction, String price, String amount) {
+        return OrderDto.builder()
+                .id(id)
+                .asset("BTC")
+                .amount(new BigDecimal(amount))
+                .price(new BigDecimal(price))
+                .direction(direction.name())
+                .build();
+    }
+
+    private static Message next(BlockingQueue<Message> messages) throws InterruptedException {
+        Message message = messages.poll(5, TimeUnit.SECONDS);
+        assertNotNull(message, "no market data message");
+        return message;
+    }
+
+    @Test
+    void testSnapshotThenLevelUpdatesAndTrades() throws Exception {
+        engine.matchOrder(order(0L, OrderDirectionEnum.SELL, "100", "2"));
+
+        BlockingQueue<Message> messages = new LinkedBlockingQueue<>();
+        publisher.subscribe("BTC", (event, sequence, data) -> messages.add(new Message(event, sequence, data)));
+
+        Message first = next(messages);
+        assertEquals("snapshot", first.event());
+        DepthSnapshotDto snapshot = (DepthSnapshotDto) first.data();
+        assertEquals(1, snapshot.getAsks().size());
+        assertEquals(new BigDecimal("100"), snapshot.getAsks().get(0).getPrice());
+        assertEquals(new BigDecimal("2"), snapshot.getAsks().get(0).getAmount());
+        assertTrue(snapshot.getBids().isEmpty());
+
+        engine.matchOrder(order(1L, OrderDirectionEnum.BUY, "100", "0.5"));
+
+        Message trade = next(messages);
+        assertEquals("trade", trade.event());
+        TradePrintDto print = (TradePrintDto) trade.data();
+        assertEquals(new BigDecimal("0.5"), print.getAmount());
+        assertEquals(1L, print.getBuyOrderId());
+        assertEquals(0L, print.getSellOrderId());
+        assertEquals("BUY", print.getAggressorSide());
+        assertEquals(snapshot.getSequence() + 1, trade.sequence());
+
+        Message level = next(messages);
+        assertEquals("level", level.event());
+        LevelUpdateDto update = (LevelUpdateDto) level.data();
+        assertEquals("SELL", update.getSide());
+        assertEquals(new BigDecimal("1.5"), update.getAmount());
+        assertEquals(trade.sequence() + 1, level.sequence());
+    }
+
+    @Test
+    void testSlowSubscriberGetsConflatedLevels() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Message> messages = new ArrayList<>();
+        CountDownLatch settled = new CountDownLatch(1);
+        publisher.subscribe("BTC", (event, sequence, data) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            synchronized (messages) {
+                messages.add(new Message(event, sequence, data));
+                if (data instanceof LevelUpdateDto update && update.getAmount().compareTo(new BigDecimal("50")) == 0) {
+                    settled.countDown();
+                }
+            }
+        });
+
+        // The subscriber is stuck sending its snapshot while the level changes 50 times
+        for (long id = 0; id < 50; id++) {
+            engine.matchOrder(order(id, OrderDirectionEnum.BUY, "99", "1"));
+        }
+        Thread.sleep(200);
+        release.countDown();
+        assertTrue(settled.await(5, TimeUnit.SECONDS));
+
+        synchronized (messages) {
+            long levelUpdates = messages.stream().filter(message -> message.event().equals("level")).count();
+            assertTrue(levelUpdates < 50, "expected conflated updates, got " + levelUpdates);
+            for (int i = 1; i < messages.size(); i++) {
+                assertTrue(messages.get(i).sequence() > messages.get(i - 1).sequence());
+            }
+        }
+    }
+}
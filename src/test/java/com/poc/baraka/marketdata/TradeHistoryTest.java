@@ -0,0 +1,106 @@
+package com.poc.baraka.marketdata;
+
+/**
+ * @author Waqas Ahmed
+ */
+
+import com.poc.baraka.common.IdGenerator;
+import com.poc.baraka.config.MatchingEngineProperties;
+import com.poc.baraka.dto.CandleDto;
+import com.poc.baraka.dto.ExecutedTradeDto;
+import com.poc.baraka.dto.OrderDto;
+import com.poc.baraka.enums.OrderDirectionEnum;
+import com.poc.baraka.helper.MatchingEngineHelper;
+import com.poc.baraka.metrics.EngineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TradeHistoryTest {
+
+    private static final Instant MINUTE = Instant.parse("2025-10-17T00:46:00Z");
+
+    private TradeHistory history;
+    private MatchingEngineHelper engine;
+
+    @BeforeEach
+    void setUp() {
+        history = new TradeHistory(3, List.of(Duration.ofMinutes(1), Duration.ofMinutes(5)), 2);
+        engine = new MatchingEngineHelper(new MatchingEngineProperties(), new IdGenerator(),
+                new EngineMetrics(new SimpleMeterRegistry()), List.of(history));
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    private static OrderDto order(long id, OrderDirectionEnum direction, String price, String amount, long seconds) {
+        return OrderDto.builder()
+                .id(id)
+                .timestamp(MINUTE.plusSeconds(seconds).toString())
+                .asset("BTC")
+                .amount(new BigDecimal(amount))
+                .price(new BigDecimal(price))
+                .direction(direction.name())
+                .build();
+    }
+
+    @Test
+    void testLatestTradesAreKeptNewestFirst() {
+        engine.matchOrder(order(1L, OrderDirectionEnum.SELL, "100", "10", 0));
+        for (int i = 0; i < 4; i++) {
+            engine.matchOrder(order(2L + i, OrderDirectionEnum.BUY, "100", "1", i));
+        }
+
+        List<ExecutedTradeDto> trades = history.getTrades("BTC", 10);
+
+        // Only the latest three are kept
+        assertEquals(3, trades.size());
+        assertEquals(4L, trades.get(0).getTradeId());
+        assertEquals(5L, trades.get(0).getBuyOrderId());
+        assertEquals(1L, trades.get(0).getSellOrderId());
+        assertEquals("BUY", trades.get(0).getAggressorSide());
+        assertEquals(MINUTE.plusSeconds(3).toEpochMilli(), trades.get(0).getTimestamp());
+        assertEquals(2L, trades.get(2).getTradeId());
+        assertEquals(1, history.getTrades("BTC", 1).size());
+        assertNull(history.getTrades("ETH", 10));
+    }
+
+    @Test
+    void testCandlesAreBuiltFromTheFills() {
+        engine.matchOrder(order(1L, OrderDirectionEnum.BUY, "90", "10", 0));
+        engine.matchOrder(order(2L, OrderDirectionEnum.SELL, "90", "1", 5));
+        engine.matchOrder(order(3L, OrderDirectionEnum.BUY, "95", "10", 6));
+        engine.matchOrder(order(4L, OrderDirectionEnum.SELL, "80", "3", 10));
+        engine.matchOrder(order(5L, OrderDirectionEnum.SELL, "90", "2", 70));
+
+        List<CandleDto> minutes = history.getCandles("BTC", Duration.ofMinutes(1), 10);
+        assertEquals(2, minutes.size());
+        CandleDto first = minutes.get(0);
+        assertEquals(MINUTE.toEpochMilli(), first.getStart());
+        assertEquals(0, new BigDecimal("90").compareTo(first.getOpen()));
+        assertEquals(0, new BigDecimal("95").compareTo(first.getHigh()));
+        assertEquals(0, new BigDecimal("90").compareTo(first.getLow()));
+        assertEquals(0, new BigDecimal("95").compareTo(first.getClose()));
+        assertEquals(0, new BigDecimal("4").compareTo(first.getVolume()));
+        assertEquals(2, first.getTrades());
+        assertEquals(MINUTE.plusSeconds(60).toEpochMilli(), minutes.get(1).getStart());
+        assertEquals(0, new BigDecimal("2").compareTo(minutes.get(1).getVolume()));
+
+        List<CandleDto> fiveMinutes = history.getCandles("BTC", Duration.ofMinutes(5), 10);
+        assertEquals(1, fiveMinutes.size());
+        assertEquals(3, fiveMinutes.get(0).getTrades());
+        assertEquals(0, new BigDecimal("6").compareTo(fiveMinutes.get(0).getVolume()));
+
+        assertThrows(IllegalArgumentException.class, () -> history.getCandles("BTC", Duration.ofMinutes(15), 10));
+    }
+}
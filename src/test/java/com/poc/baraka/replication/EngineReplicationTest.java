@@ -0,0 +1,140 @@
+package com.poc.baraka.replication;
+
+import com.poc.baraka.common.IdGenerator;
+import com.poc.baraka.config.MatchingEngineProperties;
+import com.poc.baraka.dto.BatchItemResponse;
+import com.poc.baraka.dto.OrderDto;
+import com.poc.baraka.dto.OrderResponse;
+import com.poc.baraka.enums.OrderDirectionEnum;
+import com.poc.baraka.exception.NotPrimaryException;
+import com.poc.baraka.helper.MatchingEngineHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Waqas Ahmed
+ */
+class EngineReplicationTest {
+
+    @TempDir
+    Path directory;
+
+    private final LoopbackReplicationTransport transport = new LoopbackReplicationTransport();
+    private final IdGenerator replicaIds = new IdGenerator();
+    private MatchingEngineHelper primary;
+    private MatchingEngineHelper replica;
+    private EngineReplication primaryReplication;
+    private EngineReplication replicaReplication;
+
+    @BeforeEach
+    void setUp() {
+        primary = new MatchingEngineHelper(properties("primary", ReplicationRole.PRIMARY), new IdGenerator());
+        replica = new MatchingEngineHelper(properties("replica", ReplicationRole.REPLICA), replicaIds);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (replicaReplication != null) {
+            replicaReplication.shutdown();
+        }
+        if (primaryReplication != null) {
+            primaryReplication.shutdown();
+        }
+        replica.shutdown();
+        primary.shutdown();
+    }
+
+    private MatchingEngineProperties properties(String node, ReplicationRole role) {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.setShards(2);
+        properties.getJournal().setEnabled(true);
+        properties.getJournal().setDirectory(directory.resolve(node).resolve("journal").toString());
+        properties.getJournal().setFsync(false);
+        properties.getSnapshot().setDirectory(directory.resolve(node).resolve("snapshots").toString());
+        properties.getReplication().setRole(role);
+        properties.getReplication().setPolicy(ReplicationPolicy.SYNC);
+        properties.getReplication().setSyncTimeoutMs(5_000);
+        return properties;
+    }
+
+    private static OrderDto order(long id, String asset, OrderDirectionEnum direction, String price, String amount) {
+        return OrderDto.builder()
+                .id(id)
+                .timestamp("2025-10-17T00:49:02.137585600Z")
+                .asset(asset)
+                .amount(new BigDecimal(amount))
+                .price(new BigDecimal(price))
+                .direction(direction.name())
+                .build();
+    }
+
+    @Test
+    void testPromotedReplicaTakesOverWhereThePrimaryStopped() {
+        // Placed before the replica connects, it gets them with the snapshot
+        primary.matchOrder(order(0L, "BTC", OrderDirectionEnum.SELL, "100.50", "2.0"));
+        primary.matchOrder(order(1L, "ETH", OrderDirectionEnum.BUY, "10", "3"));
+
+        primaryReplication = new EngineReplication(properties("primary", ReplicationRole.PRIMARY), primary, transport);
+        replicaReplication = new EngineReplication(properties("replica", ReplicationRole.REPLICA), replica, transport);
+        await(() -> primaryReplication.getStatus().isInStep());
+
+        // Streamed, each only acknowledged by the primary once the replica has it
+        primary.matchOrder(order(2L, "BTC", OrderDirectionEnum.BUY, "101", "0.5"));
+        primary.matchOrder(order(3L, "ETH", OrderDirectionEnum.BUY, "9", "1"));
+        primary.cancelOrder(3L);
+        primary.amendOrder(1L, new BigDecimal("10.5"), null);
+        // A batch and a cancel-all wait once for their last record
+        List<BatchItemResponse> batch = primary.matchOrders(List.of(
+                order(4L, "SOL", OrderDirectionEnum.SELL, "20", "1"),
+                order(5L, "SOL", OrderDirectionEnum.SELL, "21", "1")));
+        assertEquals(2, batch.size());
+        assertEquals(primary.getSequence(), primaryReplication.getStatus().getAcknowledgedSequence());
+        assertEquals(2, primary.cancelAllOrders("SOL").size());
+        long sequence = primary.getSequence();
+        assertEquals(sequence, primaryReplication.getStatus().getAcknowledgedSequence());
+
+        assertThrows(NotPrimaryException.class,
+                () -> replica.matchOrder(order(6L, "BTC", OrderDirectionEnum.BUY, "100.50", "1")));
+        assertFalse(replicaReplication.getStatus().isPrimary());
+
+        primaryReplication.shutdown();
+        assertTrue(replicaReplication.promote().isPrimary());
+        assertEquals(sequence, replica.getSequence());
+        assertEquals(6L, replicaIds.peek());
+
+        OrderResponse sell = replica.getOrderById(0L);
+        assertEquals(new BigDecimal("1.5"), sell.getOrder().getPendingAmount());
+        assertEquals(1, sell.getOrder().getTrades().size());
+        assertTrue(replica.getOrderById(3L).isCanceled());
+        assertTrue(replica.getOrderById(5L).isCanceled());
+        assertEquals(new BigDecimal("10.5"), replica.getOrderById(1L).getOrder().getPrice());
+
+        // The promoted replica matches against the books it followed
+        OrderResponse buy = replica.matchOrder(order(replicaIds.nextId(), "BTC", OrderDirectionEnum.BUY, "100.50", "1.5"));
+        assertEquals(0, buy.getOrder().getPendingAmount().signum());
+        assertEquals(0L, buy.getOrder().getTrades().get(0).getOrderId());
+        assertEquals(sequence + 1, replica.getSequence());
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+            try {
+                Thread.sleep(5L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
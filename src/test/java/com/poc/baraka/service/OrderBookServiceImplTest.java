@@ -8,7 +8,10 @@ import com.poc.baraka.common.IdGenerator;
 import com.poc.baraka.dto.OrderDto;
 import com.poc.baraka.dto.OrderRequest;
 import com.poc.baraka.dto.OrderResponse;
+import com.poc.baraka.execution.ExecutionReports;
 import com.poc.baraka.helper.MatchingEngineHelper;
+import com.poc.baraka.marketdata.TradeHistory;
+import com.poc.baraka.replication.EngineReplication;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -28,7 +31,8 @@ class OrderBookServiceImplTest {
     void setUp() {
         idGenerator = mock(IdGenerator.class);
         matchingEngineHelper = mock(MatchingEngineHelper.class);
-        orderBookService = new OrderBookServiceImpl(idGenerator, matchingEngineHelper);
+        orderBookService = new OrderBookServiceImpl(idGenerator, matchingEngineHelper, mock(TradeHistory.class),
+                mock(EngineReplication.class), mock(ExecutionReports.class));
     }
 
     @Test
@@ -0,0 +1,92 @@
+package com.poc.baraka.store;
+
+/**
+ * @author Waqas Ahmed
+ */
+
+import com.poc.baraka.dto.OrderDto;
+import com.poc.baraka.dto.OrderResponse;
+import com.poc.baraka.dto.TradeDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private OrderStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = new OrderStore(2, 0, new OrderArchive(directory, false));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+    }
+
+    private static OrderResponse response(long id) {
+        List<TradeDto> trades = new ArrayList<>();
+        trades.add(TradeDto.builder().orderId(id + 100).amount(new BigDecimal("1.0")).price(new BigDecimal("10.5")).build());
+        return OrderResponse.builder()
+                .order(OrderDto.builder()
+                        .id(id)
+                        .asset("BTC")
+                        .direction("BUY")
+                        .price(new BigDecimal("10.5"))
+                        .amount(new BigDecimal("1.0"))
+                        .pendingAmount(new BigDecimal("0.0"))
+                        .trades(trades)
+                        .build())
+                .build();
+    }
+
+    @Test
+    void testFinishedOrdersSpillToArchiveAndStayReadable() throws IOException {
+        for (long id = 0; id < 10; id++) {
+            store.putLive(response(id));
+            store.finish(id);
+        }
+        assertEquals(0, store.liveCount());
+        assertEquals(2, store.finishedCount());
+
+        for (long id = 0; id < 10; id++) {
+            assertEquals(id, store.get(id).getOrder().getId());
+        }
+
+        // Closing writes out the queued spills, a reopened archive serves them from disk
+        store.close();
+        store = new OrderStore(2, 0, new OrderArchive(directory, true));
+        for (long id = 0; id < 8; id++) {
+            OrderResponse response = store.get(id);
+            assertEquals(id, response.getOrder().getId());
+            assertEquals(new BigDecimal("10.5"), response.getOrder().getPrice());
+            assertEquals(new BigDecimal("0.0"), response.getOrder().getPendingAmount());
+            assertEquals(id + 100, response.getOrder().getTrades().get(0).getOrderId());
+        }
+        assertNull(store.get(9L));
+        assertNull(store.get(42L));
+    }
+
+    @Test
+    void testLiveOrdersAreNeverEvicted() {
+        for (long id = 0; id < 10; id++) {
+            store.putLive(response(id));
+        }
+        assertEquals(10, store.liveCount());
+        assertEquals(0, store.finishedCount());
+        assertSame(store.getLive(7L), store.get(7L));
+    }
+}